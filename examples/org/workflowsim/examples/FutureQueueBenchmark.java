@@ -0,0 +1,325 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim.examples;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.AbstractFutureQueue;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.FutureQueue;
+import org.cloudbus.cloudsim.core.HeapFutureQueue;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.workflowsim.CondorVM;
+import org.workflowsim.WorkflowDatacenter;
+import org.workflowsim.WorkflowEngine;
+import org.workflowsim.WorkflowPlanner;
+import org.workflowsim.utils.ClusteringParameters;
+import org.workflowsim.utils.OverheadParameters;
+import org.workflowsim.utils.Parameters;
+import org.workflowsim.utils.ReplicaCatalog;
+
+/**
+ * This FutureQueueBenchmark runs a workflow once with a future event queue
+ * that records every operation of the simulation on it, then replays this
+ * trace on the sorted set based FutureQueue and on the HeapFutureQueue,
+ * checks that both deliver the events in the order of the simulation and
+ * prints the time taken by each. A cancel is replayed as a scan of the whole
+ * queue that removes the events it removed.
+ *
+ * Usage: FutureQueueBenchmark [dax path] [vms]
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class FutureQueueBenchmark extends WorkflowSimBasicExample1 {
+
+    /**
+     * The number of times the trace is replayed on each queue, the first run
+     * is a warm up and is not timed.
+     */
+    private static final int RUNS = 6;
+    /**
+     * The operations of a trace.
+     */
+    private static final int ADD = 0;
+    private static final int ADD_FIRST = 1;
+    private static final int POLL = 2;
+    private static final int POLL_ALL_AT = 3;
+    private static final int SCAN = 4;
+
+    /**
+     * The operations of a simulation on its future event queue, in order.
+     * Each event added gets the index of its copy in events as its id, the
+     * operations are followed by their operands: ADD and ADD_FIRST by the id
+     * of the event, SCAN by the number of events removed and their ids.
+     */
+    private static class Trace {
+
+        private final List<SimEvent> events = new ArrayList<>();
+        private int[] ops = new int[1024];
+        private int opCount;
+        private int operationCount;
+        private int[] delivered = new int[1024];
+        private int deliveredCount;
+
+        private void addOp(int op) {
+            if (opCount == ops.length) {
+                ops = Arrays.copyOf(ops, opCount * 2);
+            }
+            ops[opCount++] = op;
+        }
+
+        private void addOperation(int op) {
+            operationCount++;
+            addOp(op);
+        }
+
+        private void addDelivered(int id) {
+            if (deliveredCount == delivered.length) {
+                delivered = Arrays.copyOf(delivered, deliveredCount * 2);
+            }
+            delivered[deliveredCount++] = id;
+        }
+
+        /**
+         * Copies the events of the trace, with their id as source, so that
+         * every replay starts from events that have never been queued
+         */
+        private SimEvent[] copyEvents() {
+            SimEvent[] copies = new SimEvent[events.size()];
+            for (int i = 0; i < copies.length; i++) {
+                copies[i] = (SimEvent) events.get(i).clone();
+                copies[i].setSource(i);
+            }
+            return copies;
+        }
+    }
+
+    /**
+     * A HeapFutureQueue that records the operations of the simulation in a
+     * trace.
+     */
+    private static class RecordingFutureQueue extends HeapFutureQueue {
+
+        private final Trace trace = new Trace();
+        private final Map<SimEvent, Integer> ids = new IdentityHashMap<>();
+
+        private void record(int op, SimEvent event) {
+            int id = trace.events.size();
+            trace.events.add((SimEvent) event.clone());
+            ids.put(event, id);
+            trace.addOperation(op);
+            trace.addOp(id);
+        }
+
+        @Override
+        public void addEvent(SimEvent newEvent) {
+            record(ADD, newEvent);
+            super.addEvent(newEvent);
+        }
+
+        @Override
+        public void addEventFirst(SimEvent newEvent) {
+            record(ADD_FIRST, newEvent);
+            super.addEventFirst(newEvent);
+        }
+
+        @Override
+        public SimEvent poll() {
+            SimEvent first = super.poll();
+            if (first != null) {
+                trace.addOperation(POLL);
+                trace.addDelivered(ids.get(first));
+            }
+            return first;
+        }
+
+        @Override
+        public int pollAllAt(double time, Collection<SimEvent> events) {
+            trace.addOperation(POLL_ALL_AT);
+            int count = 0;
+            while (size() > 0 && peek().eventTime() == time) {
+                SimEvent event = super.poll();
+                trace.addDelivered(ids.get(event));
+                events.add(event);
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public Iterator<SimEvent> iterator() {
+            trace.addOperation(SCAN);
+            trace.addOp(0);
+            final int countIndex = trace.opCount - 1;
+            final Iterator<SimEvent> iterator = super.iterator();
+            return new Iterator<SimEvent>() {
+                private SimEvent current;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public SimEvent next() {
+                    current = iterator.next();
+                    return current;
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    trace.ops[countIndex]++;
+                    trace.addOp(ids.get(current));
+                }
+            };
+        }
+    }
+
+    /**
+     * Runs a workflow with a recording future event queue
+     */
+    private static Trace record(String daxPath, int vmNum) throws Exception {
+        OverheadParameters op = new OverheadParameters(0, null, null, null, null, 0);
+        ClusteringParameters cp = new ClusteringParameters(0, 0, ClusteringParameters.ClusteringMethod.NONE, null);
+        Parameters.init(vmNum, daxPath, null, null, op, cp,
+                Parameters.SchedulingAlgorithm.MINMIN, Parameters.PlanningAlgorithm.INVALID, null, 0);
+        ReplicaCatalog.init(ReplicaCatalog.FileSystem.SHARED);
+
+        RecordingFutureQueue queue = new RecordingFutureQueue();
+        CloudSim.setFutureQueue(queue);
+        CloudSim.init(1, Calendar.getInstance(), false);
+        WorkflowDatacenter datacenter0 = createDatacenter("Datacenter_0");
+        WorkflowPlanner wfPlanner = new WorkflowPlanner("planner_0", 1);
+        WorkflowEngine wfEngine = wfPlanner.getWorkflowEngine();
+        List<CondorVM> vmlist0 = createVM(wfEngine.getSchedulerId(0), Parameters.getVmNum());
+        wfEngine.submitVmList(vmlist0, 0);
+        wfEngine.bindSchedulerDatacenter(datacenter0.getId(), 0);
+        CloudSim.startSimulation();
+        CloudSim.stopSimulation();
+        return queue.trace;
+    }
+
+    /**
+     * Replays a trace on a queue
+     *
+     * @param delivered the ids of the events in the order the queue delivers
+     * them
+     * @return the time taken in nanoseconds
+     */
+    private static long replay(Trace trace, AbstractFutureQueue queue, int[] delivered) {
+        SimEvent[] events = trace.copyEvents();
+        boolean[] removed = new boolean[events.length];
+        List<SimEvent> sameTimeEvents = new ArrayList<>();
+        int[] ops = trace.ops;
+        int count = 0;
+        double time = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < trace.opCount;) {
+            switch (ops[i++]) {
+                case ADD:
+                    queue.addEvent(events[ops[i++]]);
+                    break;
+                case ADD_FIRST:
+                    queue.addEventFirst(events[ops[i++]]);
+                    break;
+                case POLL:
+                    SimEvent first = queue.poll();
+                    time = first.eventTime();
+                    delivered[count++] = first.getSource();
+                    break;
+                case POLL_ALL_AT:
+                    queue.pollAllAt(time, sameTimeEvents);
+                    for (int j = 0; j < sameTimeEvents.size(); j++) {
+                        delivered[count++] = sameTimeEvents.get(j).getSource();
+                    }
+                    sameTimeEvents.clear();
+                    break;
+                case SCAN:
+                    int removedCount = ops[i++];
+                    for (int j = 0; j < removedCount; j++) {
+                        removed[ops[i++]] = true;
+                    }
+                    Iterator<SimEvent> iter = queue.iterator();
+                    while (iter.hasNext()) {
+                        if (removed[iter.next().getSource()]) {
+                            iter.remove();
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + ops[i - 1]);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Replays a trace RUNS times on new queues of one kind and returns the
+     * best time in milliseconds, or a negative time if the queue does not
+     * deliver the events in the recorded order
+     */
+    private static double replay(Trace trace, boolean heap) {
+        long best = Long.MAX_VALUE;
+        int[] delivered = new int[trace.deliveredCount];
+        for (int run = 0; run < RUNS; run++) {
+            AbstractFutureQueue queue = heap ? new HeapFutureQueue() : new FutureQueue();
+            long time = replay(trace, queue, delivered);
+            if (!Arrays.equals(delivered, Arrays.copyOf(trace.delivered, trace.deliveredCount))) {
+                return -1;
+            }
+            if (run > 0) {
+                best = Math.min(best, time);
+            }
+        }
+        return best / 1e6;
+    }
+
+    public static void main(String[] args) {
+        String daxPath = args.length > 0 ? args[0] : "config/dax/Montage_1000.xml";
+        int vmNum = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        if (!new File(daxPath).exists()) {
+            Log.printLine("Warning: Please replace daxPath with the physical path in your working environment!");
+            return;
+        }
+
+        Trace trace;
+        Log.disable();
+        try {
+            trace = record(daxPath, vmNum);
+        } catch (Exception e) {
+            Log.enable();
+            Log.printLine("The simulation has been terminated due to an unexpected error");
+            return;
+        }
+        double setTime = replay(trace, false);
+        double heapTime = replay(trace, true);
+        Log.enable();
+
+        Log.printLine("Workflow\tVms\tEvents\tOperations\tTreeSet(ms)\tHeap(ms)\tSame order");
+        Log.printLine(new File(daxPath).getName() + "\t" + vmNum + "\t" + trace.events.size()
+                + "\t" + trace.operationCount + "\t" + Log.formatDecimal(setTime)
+                + "\t" + Log.formatDecimal(heapTime) + "\t" + (setTime >= 0 && heapTime >= 0));
+    }
+}
@@ -54,6 +54,26 @@ public class FaultTolerantClusteringExample5 extends FaultTolerantClusteringExam
      * and one storage
      */
     public static double main2(String[] args) {
+        try {
+            List<Job> outputList0 = simulate(args);
+            if (outputList0 != null) {
+                return printJobList2(outputList0);
+            }
+        } catch (Exception e) {
+            //reported by simulate()
+        }
+        return 0.0;
+    }
+
+    /**
+     * Runs the simulation in the current simulation context
+     *
+     * @param args the options of main2
+     * @return the jobs received by the workflow engine, null if the DAX
+     * does not exist
+     * @throws Exception if the simulation fails
+     */
+    public static List<Job> simulate(String[] args) throws Exception {
 
         try {
             // First step: Initialize the WorkflowSim package. 
@@ -104,7 +124,7 @@ public class FaultTolerantClusteringExample5 extends FaultTolerantClusteringExam
             File daxFile = new File(daxPath);
             if (!daxFile.exists()) {
                 Log.printLine("Warning: Please replace daxPath with the physical path in your working environment!");
-                return 0.0;
+                return null;
             }
             /*
              *  Fault Tolerant Parameters
@@ -245,11 +265,11 @@ public class FaultTolerantClusteringExample5 extends FaultTolerantClusteringExam
             CloudSim.startSimulation();
             List<Job> outputList0 = wfEngine.getJobsReceivedList();
             CloudSim.stopSimulation();
-            return printJobList2(outputList0);
+            return outputList0;
         } catch (Exception e) {
             Log.printLine("The simulation has been terminated due to an unexpected error");
+            throw e;
         }
-        return 0.0;
     }
 
     /**
@@ -17,40 +17,90 @@
  */
 package org.workflowsim.examples.failure.clustering;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.workflowsim.Job;
+import org.workflowsim.utils.SweepRunner;
+
 /**
+ * Searches the overhead and failure parameters of FaultTolerantClusteringExample5
+ * that best fit, running 100 replicas of each point with a SweepRunner
  *
  * @author chenweiwei
  */
 public class ParameterSweep {
 
-    public static void main(String[] args) {
+    private static final String DAX = "/root/Montage_300.xml";
+
+    public static void main(String[] args) throws InterruptedException {
         String p = "10";
         if (args.length != 0) {
             p = args[0];
         }
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 1) {
+            threads = Integer.parseInt(args[1]);
+        }
 
         String clustering = "DR";
         //Search for best
-        String result = "";
+        List<Double> q_scales = new ArrayList<>();
         for (double q_scale = 10; q_scale <= 100; q_scale += 10) {
-            for (double q_weight = 10; q_weight <= 10e4; q_weight *= 10) {
-                for (double q_shape = 2; q_shape <= 10; q_shape += 2) {
-                    for (double theta_weight = 10; theta_weight <= 10e4; theta_weight *= 10) {
-                        double makespan = execute100(p, q_scale, q_weight, q_shape, theta_weight, clustering);
-                        result += q_scale + " " + q_weight + " " + q_shape + " " + theta_weight + " " + makespan;
-                        result += "\n";
-                    }
-                }
-            }
+            q_scales.add(q_scale);
+        }
+        List<Double> q_weights = new ArrayList<>();
+        for (double q_weight = 10; q_weight <= 10e4; q_weight *= 10) {
+            q_weights.add(q_weight);
+        }
+        List<Double> q_shapes = new ArrayList<>();
+        for (double q_shape = 2; q_shape <= 10; q_shape += 2) {
+            q_shapes.add(q_shape);
+        }
+        Map<String, List<?>> values = new LinkedHashMap<>();
+        values.put("q", q_scales);
+        values.put("w", q_weights);
+        values.put("s", q_shapes);
+        values.put("t", q_weights);
+        values.put("p", Arrays.asList(p));
+        values.put("c", Arrays.asList(clustering));
+
+        SweepRunner runner = new SweepRunner(threads);
+        runner.setReplicas(100);
+        String result = "";
+        for (SweepRunner.Summary summary : runner.run(SweepRunner.grid(values), new Replica())) {
+            Map<String, Object> point = summary.getPoint();
+            result += point.get("q") + " " + point.get("w") + " " + point.get("s") + " " + point.get("t")
+                    + " " + summary.getMakespan().getMean();
+            result += "\n";
         }
         System.out.println(result);
     }
 
+    /**
+     * Runs FaultTolerantClusteringExample5 with the options of a point
+     */
+    private static class Replica implements SweepRunner.Experiment {
+
+        @Override
+        public List<Job> run(Map<String, Object> point, int replica) throws Exception {
+            List<String> args = new ArrayList<>();
+            args.add("-d");
+            args.add(DAX);
+            for (Map.Entry<String, Object> entry : point.entrySet()) {
+                args.add("-" + entry.getKey());
+                args.add(entry.getValue().toString());
+            }
+            return FaultTolerantClusteringExample5.simulate(args.toArray(new String[args.size()]));
+        }
+    }
+
     public static double execute(String p, double q_scale, double q_weight, double q_shape,
             double theta_weight, String clustering) {
         //String dax = "/Users/chenweiwei/Research/balanced_clustering/generator/BharathiPaper/Montage_300.xml";
-        String dax = "/root/Montage_300.xml";
-        String[] args = {"-d", dax,
+        String[] args = {"-d", DAX,
             "-q", Double.toString(q_scale),
             "-w", Double.toString(q_weight),
             "-s", Double.toString(q_shape),
@@ -61,13 +111,18 @@ public class ParameterSweep {
     }
 
     public static double execute100(String p, double q_scale, double q_weight, double q_shape,
-            double theta_weight, String clustering) {
-        double sum = 0.0;
-        int n = 100;
-        for (int i = 0; i < n; i++) {
-            sum += execute(p, q_scale, q_weight, q_shape, theta_weight, clustering);
-        }
-        sum /= n;
-        return sum;
+            double theta_weight, String clustering) throws InterruptedException {
+        Map<String, Object> point = new LinkedHashMap<>();
+        point.put("q", q_scale);
+        point.put("w", q_weight);
+        point.put("s", q_shape);
+        point.put("t", theta_weight);
+        point.put("p", p);
+        point.put("c", clustering);
+        SweepRunner runner = new SweepRunner();
+        runner.setReplicas(100);
+        List<Map<String, Object>> points = new ArrayList<>();
+        points.add(point);
+        return runner.run(points, new Replica()).get(0).getMakespan().getMean();
     }
 }
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim.examples.planning;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import org.cloudbus.cloudsim.CloudletSchedulerSpaceShared;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.workflowsim.CondorVM;
+import org.workflowsim.Task;
+import org.workflowsim.WorkflowParser;
+import org.workflowsim.planning.HEFTPlanningAlgorithm;
+import org.workflowsim.utils.ClusteringParameters;
+import org.workflowsim.utils.OverheadParameters;
+import org.workflowsim.utils.Parameters;
+import org.workflowsim.utils.ReplicaCatalog;
+
+/**
+ * This HEFTPlanningBenchmark plans every workflow of a dax directory with the
+ * sequential HEFT planner and with the parallel one, checks that both give the
+ * same plan and prints the time taken by each. No simulation is run.
+ *
+ * Usage: HEFTPlanningBenchmark [dax directory] [parallelism] [vms...]
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class HEFTPlanningBenchmark {
+
+    /**
+     * The number of times each workflow is planned, the first run is a warm up
+     * and is not timed.
+     */
+    private static final int RUNS = 3;
+
+    protected static List<CondorVM> createVM(int vms, Random random) {
+        List<CondorVM> list = new ArrayList<>();
+        long size = 10000; //image size (MB)
+        int ram = 512; //vm memory (MB)
+        int mips = 1000;
+        long bw = 1000;
+        int pesNumber = 1; //number of cpus
+        String vmm = "Xen"; //VMM name
+        for (int i = 0; i < vms; i++) {
+            double ratio = 0.1 + random.nextDouble();
+            list.add(new CondorVM(i, 0, mips * ratio, pesNumber, ram, (long) (bw * ratio), size, vmm, new CloudletSchedulerSpaceShared()));
+        }
+        return list;
+    }
+
+    /**
+     * Parses a workflow into a fresh list of tasks
+     */
+    protected static List<Task> parse(String daxPath) {
+        OverheadParameters op = new OverheadParameters(0, null, null, null, null, 0);
+        ClusteringParameters cp = new ClusteringParameters(0, 0, ClusteringParameters.ClusteringMethod.NONE, null);
+        Parameters.init(0, daxPath, null, null, op, cp,
+                Parameters.SchedulingAlgorithm.STATIC, Parameters.PlanningAlgorithm.HEFT, null, 0);
+        ReplicaCatalog.init(ReplicaCatalog.FileSystem.LOCAL);
+        WorkflowParser parser = new WorkflowParser(0);
+        parser.parse();
+        List<Task> tasks = new ArrayList<>();
+        for (List<Task> list : parser.getArrivalTimeTaskList().values()) {
+            tasks.addAll(list);
+        }
+        return tasks;
+    }
+
+    /**
+     * Plans the tasks and returns the best time in milliseconds
+     */
+    protected static double plan(List<Task> tasks, List<CondorVM> vms, int parallelism) {
+        Parameters.setPlanningParallelism(parallelism);
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            HEFTPlanningAlgorithm planner = new HEFTPlanningAlgorithm();
+            planner.setTaskList(tasks);
+            planner.setVmList(vms);
+            long start = System.nanoTime();
+            planner.run();
+            if (run > 0) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        return best / 1e6;
+    }
+
+    public static void main(String[] args) {
+        String daxDir = args.length > 0 ? args[0] : "config/dax";
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        List<Integer> vmNums = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            vmNums.add(Integer.parseInt(args[i]));
+        }
+        if (vmNums.isEmpty()) {
+            vmNums.addAll(Arrays.asList(20, 200, 1000));
+        }
+
+        File[] daxFiles = new File(daxDir).listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".xml");
+            }
+        });
+        if (daxFiles == null) {
+            Log.printLine("Warning: Please set the dax directory, " + daxDir + " does not exist!");
+            return;
+        }
+        Arrays.sort(daxFiles);
+        CloudSim.init(1, Calendar.getInstance(), false);
+
+        Log.printLine("Workflow\tTasks\tVms\tSequential(ms)\tParallel(ms)\tSame plan");
+        for (File daxFile : daxFiles) {
+            for (int vmNum : vmNums) {
+                List<CondorVM> vms = createVM(vmNum, new Random(vmNum));
+
+                Log.disable();
+                List<Task> sequential = parse(daxFile.getPath());
+                double sequentialTime = plan(sequential, vms, 1);
+                List<Task> parallel = parse(daxFile.getPath());
+                double parallelTime = plan(parallel, vms, parallelism);
+                Log.enable();
+
+                boolean same = sequential.size() == parallel.size();
+                for (int i = 0; same && i < sequential.size(); i++) {
+                    same = sequential.get(i).getVmId() == parallel.get(i).getVmId();
+                }
+                Log.printLine(daxFile.getName() + "\t" + sequential.size() + "\t" + vmNum
+                        + "\t" + Log.formatDecimal(sequentialTime)
+                        + "\t" + Log.formatDecimal(parallelTime) + "\t" + same);
+            }
+        }
+        Parameters.setPlanningParallelism(1);
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * An output stream that buffers what is written to it and writes it to another stream in a
+ * background thread, so that the simulation does not wait for the output. It is meant to be the
+ * output of the {@link Log}:
+ *
+ * <pre>
+ * Log.setOutput(new AsyncOutputStream(System.out));
+ * </pre>
+ *
+ * The buffers are handed to the background thread when they are full and when the stream is
+ * flushed; {@link #flush()} waits until they are written. The pending output is also written when
+ * the JVM exits. Closing the stream does not close the target stream, so that System.out can be
+ * used.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class AsyncOutputStream extends OutputStream {
+
+	/** The default size of the buffers. */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/** The buffer marking the end of the output. */
+	private static final byte[] END = new byte[0];
+
+	/** The target stream. */
+	private final OutputStream target;
+
+	/** The buffers waiting to be written. */
+	private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<byte[]>();
+
+	/** The background thread. */
+	private final Thread writer;
+
+	/** The thread writing the pending output when the JVM exits. */
+	private final Thread shutdownHook;
+
+	/** The current buffer. */
+	private byte[] buffer;
+
+	/** The number of bytes in the current buffer. */
+	private int count = 0;
+
+	/** The number of buffers handed to the background thread. */
+	private long queued = 0;
+
+	/** The number of buffers written by the background thread. */
+	private long written = 0;
+
+	/** The first error of the background thread. */
+	private IOException error;
+
+	/** Whether the stream is closed. */
+	private boolean closed = false;
+
+	/**
+	 * Creates a stream with the default buffer size.
+	 *
+	 * @param target the stream written in the background
+	 */
+	public AsyncOutputStream(OutputStream target) {
+		this(target, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a stream.
+	 *
+	 * @param target the stream written in the background
+	 * @param bufferSize the size of the buffers
+	 */
+	public AsyncOutputStream(OutputStream target, int bufferSize) {
+		if (target == null) {
+			throw new IllegalArgumentException("The target stream is null");
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("The buffer size must be positive");
+		}
+		this.target = target;
+		buffer = new byte[bufferSize];
+		writer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "AsyncOutputStream");
+		writer.setDaemon(true);
+		writer.start();
+		shutdownHook = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					flush();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	@Override
+	public synchronized void write(int b) throws IOException {
+		ensureOpen();
+		if (count == buffer.length) {
+			handOff();
+		}
+		buffer[count++] = (byte) b;
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (count == buffer.length) {
+				handOff();
+			}
+			int n = Math.min(len, buffer.length - count);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Hands the current buffer to the background thread and waits until everything handed so far
+	 * has been written.
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		if (closed) {
+			return;
+		}
+		if (count > 0) {
+			handOff();
+		}
+		boolean interrupted = false;
+		while (written < queued && error == null) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		checkError();
+	}
+
+	/**
+	 * Flushes the stream and stops the background thread. The target stream is not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			flush();
+			closed = true;
+			queue.add(END);
+		}
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// the JVM is already exiting
+		}
+	}
+
+	/**
+	 * Hands the current buffer to the background thread and starts a new one.
+	 */
+	private void handOff() throws IOException {
+		checkError();
+		queue.add(count == buffer.length ? buffer : Arrays.copyOf(buffer, count));
+		queued++;
+		buffer = new byte[buffer.length];
+		count = 0;
+	}
+
+	/**
+	 * Writes the buffers to the target stream until the end of the output.
+	 */
+	private void drain() {
+		while (true) {
+			byte[] next;
+			try {
+				next = queue.take();
+			} catch (InterruptedException e) {
+				continue;
+			}
+			if (next == END) {
+				return;
+			}
+			IOException failure = null;
+			try {
+				target.write(next);
+				if (queue.isEmpty()) {
+					target.flush();
+				}
+			} catch (IOException e) {
+				failure = e;
+			}
+			synchronized (this) {
+				if (failure != null && error == null) {
+					error = failure;
+				}
+				written++;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Throws the error of the background thread, if any.
+	 */
+	private void checkError() throws IOException {
+		if (error != null) {
+			throw new IOException("The output could not be written", error);
+		}
+	}
+
+	/**
+	 * Throws an exception if the stream is closed.
+	 */
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("The stream is closed");
+		}
+	}
+
+}
@@ -202,27 +202,27 @@ public class Host {
 	 */
 	public boolean vmCreate(Vm vm) {
 		if (getStorage() < vm.getSize()) {
-			Log.printLine("[VmScheduler.vmCreate] Allocation of VM #" + vm.getId() + " to Host #" + getId()
-					+ " failed by storage");
+			Log.printLine(Log.Level.WARNING, "[VmScheduler.vmCreate] Allocation of VM #{} to Host #{} failed by storage",
+					vm.getId(), getId());
 			return false;
 		}
 
 		if (!getRamProvisioner().allocateRamForVm(vm, vm.getCurrentRequestedRam())) {
-			Log.printLine("[VmScheduler.vmCreate] Allocation of VM #" + vm.getId() + " to Host #" + getId()
-					+ " failed by RAM");
+			Log.printLine(Log.Level.WARNING, "[VmScheduler.vmCreate] Allocation of VM #{} to Host #{} failed by RAM",
+					vm.getId(), getId());
 			return false;
 		}
 
 		if (!getBwProvisioner().allocateBwForVm(vm, vm.getCurrentRequestedBw())) {
-			Log.printLine("[VmScheduler.vmCreate] Allocation of VM #" + vm.getId() + " to Host #" + getId()
-					+ " failed by BW");
+			Log.printLine(Log.Level.WARNING, "[VmScheduler.vmCreate] Allocation of VM #{} to Host #{} failed by BW",
+					vm.getId(), getId());
 			getRamProvisioner().deallocateRamForVm(vm);
 			return false;
 		}
 
 		if (!getVmScheduler().allocatePesForVm(vm, vm.getCurrentRequestedMips())) {
-			Log.printLine("[VmScheduler.vmCreate] Allocation of VM #" + vm.getId() + " to Host #" + getId()
-					+ " failed by MIPS");
+			Log.printLine(Log.Level.WARNING, "[VmScheduler.vmCreate] Allocation of VM #{} to Host #{} failed by MIPS",
+					vm.getId(), getId());
 			getRamProvisioner().deallocateRamForVm(vm);
 			getBwProvisioner().deallocateBwForVm(vm);
 			return false;
@@ -10,10 +10,19 @@ package org.cloudbus.cloudsim;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.text.DecimalFormat;
+
+import org.cloudbus.cloudsim.core.SimulationContext;
 
 /**
  * The Log class used for performing loggin of the simulation process. It provides the ability to
- * substitute the output stream by any OutputStream subclass.
+ * substitute the output stream by any OutputStream subclass. The output, the disable flag and the
+ * level are kept per {@link SimulationContext}.
+ * <p>
+ * The messages printed without a level are printed at {@link Level#INFO}. Messages that are
+ * expensive to build should be given as a pattern and its arguments, or as a {@link Message}, so
+ * that nothing is built when the level is not loggable. The output may be an
+ * {@link AsyncOutputStream}, which writes it in the background.
  * 
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 2.0
@@ -23,11 +32,84 @@ public class Log {
 	/** The Constant LINE_SEPARATOR. */
 	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
-	/** The output. */
-	private static OutputStream output;
+	/** The format of the decimals (times) in the messages. */
+	private static final String DECIMAL_PATTERN = "#.00";
+
+	/**
+	 * The decimal formats, one per thread, as DecimalFormat is not thread-safe.
+	 */
+	private static final ThreadLocal<DecimalFormat> DECIMAL_FORMAT = new ThreadLocal<DecimalFormat>() {
+
+		@Override
+		protected DecimalFormat initialValue() {
+			return new DecimalFormat(DECIMAL_PATTERN);
+		}
+	};
+
+	/**
+	 * The buffers the messages are built in, one per thread.
+	 */
+	private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+
+	/**
+	 * The levels of the messages, from the most to the least important.
+	 */
+	public enum Level {
+		ERROR, WARNING, INFO, DEBUG
+	}
+
+	/**
+	 * A message built only if it is printed.
+	 */
+	public interface Message {
 
-	/** The disable output flag. */
-	private static boolean disabled;
+		/**
+		 * Builds the message.
+		 * 
+		 * @return the message
+		 */
+		String get();
+	}
+
+	/**
+	 * The state of the log in a simulation context.
+	 */
+	private static final class State {
+
+		/** The output. */
+		private OutputStream output;
+
+		/** The disable output flag. */
+		private boolean disabled;
+
+		/** The least important level printed. */
+		private Level level = Level.INFO;
+
+	}
+
+	/** The key of the state in the simulation contexts. */
+	private static final SimulationContext.Key<State> STATE = new SimulationContext.Key<State>() {
+
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
+
+	/**
+	 * Gets the state of the log in the current simulation context.
+	 * 
+	 * @return the state
+	 */
+	private static State state() {
+		return SimulationContext.current().get(STATE);
+	}
 
 	/**
 	 * Prints the message.
@@ -35,12 +117,8 @@ public class Log {
 	 * @param message the message
 	 */
 	public static void print(String message) {
-		if (!isDisabled()) {
-			try {
-				getOutput().write(message.getBytes());
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+		if (isLoggable(Level.INFO)) {
+			write(message);
 		}
 	}
 
@@ -50,8 +128,8 @@ public class Log {
 	 * @param message the message
 	 */
 	public static void print(Object message) {
-		if (!isDisabled()) {
-			print(String.valueOf(message));
+		if (isLoggable(Level.INFO)) {
+			write(String.valueOf(message));
 		}
 	}
 
@@ -61,8 +139,8 @@ public class Log {
 	 * @param message the message
 	 */
 	public static void printLine(String message) {
-		if (!isDisabled()) {
-			print(message + LINE_SEPARATOR);
+		if (isLoggable(Level.INFO)) {
+			write(message + LINE_SEPARATOR);
 		}
 	}
 
@@ -70,8 +148,8 @@ public class Log {
 	 * Prints the empty line.
 	 */
 	public static void printLine() {
-		if (!isDisabled()) {
-			print(LINE_SEPARATOR);
+		if (isLoggable(Level.INFO)) {
+			write(LINE_SEPARATOR);
 		}
 	}
 
@@ -81,7 +159,7 @@ public class Log {
 	 * @param message the message
 	 */
 	public static void printLine(Object message) {
-		if (!isDisabled()) {
+		if (isLoggable(Level.INFO)) {
 			printLine(String.valueOf(message));
 		}
 	}
@@ -93,8 +171,8 @@ public class Log {
 	 * @param args the args
 	 */
 	public static void format(String format, Object... args) {
-		if (!isDisabled()) {
-			print(String.format(format, args));
+		if (isLoggable(Level.INFO)) {
+			write(String.format(format, args));
 		}
 	}
 
@@ -105,18 +183,216 @@ public class Log {
 	 * @param args the args
 	 */
 	public static void formatLine(String format, Object... args) {
-		if (!isDisabled()) {
+		if (isLoggable(Level.INFO)) {
 			printLine(String.format(format, args));
 		}
 	}
 
+	/**
+	 * Prints the line at a level.
+	 * 
+	 * @param level the level
+	 * @param message the message
+	 */
+	public static void printLine(Level level, String message) {
+		if (isLoggable(level)) {
+			write(message + LINE_SEPARATOR);
+		}
+	}
+
+	/**
+	 * Prints the line at a level, building it only if the level is loggable.
+	 * 
+	 * @param level the level
+	 * @param message the message
+	 */
+	public static void printLine(Level level, Message message) {
+		if (isLoggable(level)) {
+			write(message.get() + LINE_SEPARATOR);
+		}
+	}
+
+	/**
+	 * Prints a line at a level. Each <tt>{}</tt> in the pattern is replaced by the next argument,
+	 * converted as in String.valueOf(); nothing is converted if the level is not loggable.
+	 * 
+	 * @param level the level
+	 * @param pattern the pattern
+	 * @param arg the argument
+	 */
+	public static void printLine(Level level, String pattern, Object arg) {
+		if (isLoggable(level)) {
+			StringBuilder buffer = buffer();
+			int from = append(buffer, pattern, 0, arg);
+			printLine(buffer, pattern, from);
+		}
+	}
+
+	/**
+	 * Prints a line at a level, replacing each <tt>{}</tt> in the pattern by the next argument.
+	 * 
+	 * @param level the level
+	 * @param pattern the pattern
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 * @see #printLine(Level, String, Object)
+	 */
+	public static void printLine(Level level, String pattern, Object arg1, Object arg2) {
+		if (isLoggable(level)) {
+			StringBuilder buffer = buffer();
+			int from = append(buffer, pattern, 0, arg1);
+			from = append(buffer, pattern, from, arg2);
+			printLine(buffer, pattern, from);
+		}
+	}
+
+	/**
+	 * Prints a line at a level, replacing each <tt>{}</tt> in the pattern by the next argument.
+	 * 
+	 * @param level the level
+	 * @param pattern the pattern
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 * @param arg3 the third argument
+	 * @see #printLine(Level, String, Object)
+	 */
+	public static void printLine(Level level, String pattern, Object arg1, Object arg2, Object arg3) {
+		if (isLoggable(level)) {
+			StringBuilder buffer = buffer();
+			int from = append(buffer, pattern, 0, arg1);
+			from = append(buffer, pattern, from, arg2);
+			from = append(buffer, pattern, from, arg3);
+			printLine(buffer, pattern, from);
+		}
+	}
+
+	/**
+	 * Prints a line at a level, replacing each <tt>{}</tt> in the pattern by the next argument.
+	 * 
+	 * @param level the level
+	 * @param pattern the pattern
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 * @param arg3 the third argument
+	 * @param arg4 the fourth argument
+	 * @see #printLine(Level, String, Object)
+	 */
+	public static void printLine(Level level, String pattern, Object arg1, Object arg2, Object arg3,
+			Object arg4) {
+		if (isLoggable(level)) {
+			StringBuilder buffer = buffer();
+			int from = append(buffer, pattern, 0, arg1);
+			from = append(buffer, pattern, from, arg2);
+			from = append(buffer, pattern, from, arg3);
+			from = append(buffer, pattern, from, arg4);
+			printLine(buffer, pattern, from);
+		}
+	}
+
+	/**
+	 * Prints a line at a level, replacing each <tt>{}</tt> in the pattern by the next argument.
+	 * 
+	 * @param level the level
+	 * @param pattern the pattern
+	 * @param args the arguments
+	 * @see #printLine(Level, String, Object)
+	 */
+	public static void printLine(Level level, String pattern, Object... args) {
+		if (isLoggable(level)) {
+			StringBuilder buffer = buffer();
+			int from = 0;
+			for (Object arg : args) {
+				from = append(buffer, pattern, from, arg);
+			}
+			printLine(buffer, pattern, from);
+		}
+	}
+
+	/**
+	 * Prints a line formated as in String.format() at a level. Nothing is formated if the level is
+	 * not loggable.
+	 * 
+	 * @param level the level
+	 * @param format the format
+	 * @param args the args
+	 */
+	public static void formatLine(Level level, String format, Object... args) {
+		if (isLoggable(level)) {
+			write(String.format(format, args) + LINE_SEPARATOR);
+		}
+	}
+
+	/**
+	 * Formats a decimal, such as a time, with two fraction digits. The format is kept per thread.
+	 * 
+	 * @param value the value
+	 * @return the formated value
+	 */
+	public static String formatDecimal(double value) {
+		return DECIMAL_FORMAT.get().format(value);
+	}
+
+	/**
+	 * Writes a message to the output.
+	 * 
+	 * @param message the message
+	 */
+	private static void write(String message) {
+		try {
+			getOutput().write(message.getBytes());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Gets the empty message buffer of the current thread.
+	 * 
+	 * @return the buffer
+	 */
+	private static StringBuilder buffer() {
+		StringBuilder buffer = BUFFER.get();
+		buffer.setLength(0);
+		return buffer;
+	}
+
+	/**
+	 * Appends the pattern up to the next <tt>{}</tt>, then the argument.
+	 * 
+	 * @param buffer the buffer
+	 * @param pattern the pattern
+	 * @param from the start of the rest of the pattern
+	 * @param arg the argument
+	 * @return the start of the rest of the pattern
+	 */
+	private static int append(StringBuilder buffer, String pattern, int from, Object arg) {
+		int at = pattern.indexOf("{}", from);
+		if (at < 0) {
+			return from;
+		}
+		buffer.append(pattern, from, at).append(arg);
+		return at + 2;
+	}
+
+	/**
+	 * Appends the rest of the pattern and prints the buffer as a line.
+	 * 
+	 * @param buffer the buffer
+	 * @param pattern the pattern
+	 * @param from the start of the rest of the pattern
+	 */
+	private static void printLine(StringBuilder buffer, String pattern, int from) {
+		buffer.append(pattern, from, pattern.length()).append(LINE_SEPARATOR);
+		write(buffer.toString());
+	}
+
 	/**
 	 * Sets the output.
 	 * 
 	 * @param _output the new output
 	 */
 	public static void setOutput(OutputStream _output) {
-		output = _output;
+		state().output = _output;
 	}
 
 	/**
@@ -125,10 +401,11 @@ public class Log {
 	 * @return the output
 	 */
 	public static OutputStream getOutput() {
-		if (output == null) {
-			setOutput(System.out);
+		State state = state();
+		if (state.output == null) {
+			state.output = System.out;
 		}
-		return output;
+		return state.output;
 	}
 
 	/**
@@ -137,7 +414,7 @@ public class Log {
 	 * @param _disabled the new disabled
 	 */
 	public static void setDisabled(boolean _disabled) {
-		disabled = _disabled;
+		state().disabled = _disabled;
 	}
 
 	/**
@@ -146,7 +423,48 @@ public class Log {
 	 * @return true, if is disable
 	 */
 	public static boolean isDisabled() {
-		return disabled;
+		return state().disabled;
+	}
+
+	/**
+	 * Sets the least important level printed.
+	 * 
+	 * @param level the level
+	 */
+	public static void setLevel(Level level) {
+		state().level = level;
+	}
+
+	/**
+	 * Gets the least important level printed.
+	 * 
+	 * @return the level
+	 */
+	public static Level getLevel() {
+		return state().level;
+	}
+
+	/**
+	 * Checks if the messages of a level are printed, that is if the output is enabled and the level
+	 * is not less important than the level of the log.
+	 * 
+	 * @param level the level
+	 * @return true, if the messages are printed
+	 */
+	public static boolean isLoggable(Level level) {
+		State state = state();
+		return !state.disabled && level.compareTo(state.level) <= 0;
+	}
+
+	/**
+	 * Flushes the output.
+	 */
+	public static void flush() {
+		try {
+			getOutput().flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	/**
@@ -97,6 +97,21 @@ public abstract class VmAllocationPolicy {
 	 */
 	public abstract Host getHost(int vmId, int userId);
 
+	/**
+	 * Get the VM with the given vmID and userID. The default implementation looks the VM up in its
+	 * host, policies keeping a {@link VmRegistry} answer it directly.
+	 * 
+	 * @param vmId the vm id
+	 * @param userId the user id
+	 * @return the VM with the given vmID and userID; $null if not found
+	 * @pre $none
+	 * @post $none
+	 */
+	public Vm getVm(int vmId, int userId) {
+		Host host = getHost(vmId, userId);
+		return host == null ? null : host.getVm(vmId, userId);
+	}
+
 	/**
 	 * Sets the host list.
 	 * 
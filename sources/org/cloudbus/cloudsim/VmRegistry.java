@@ -0,0 +1,203 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.Arrays;
+
+/**
+ * VmRegistry maps the (user id, VM id) pair of a VM to the VM and to the host it is placed on. The
+ * pair is packed in a long key (see {@link #key(int, int)}) and the entries are kept in an open
+ * addressing hash table, so that a lookup is O(1) and allocates nothing, unlike the string uids of
+ * {@link Vm#getUid(int, int)} or a scan of {@link Host#getVmList()}.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class VmRegistry {
+
+	/** The initial capacity of the table, a power of two. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The keys of the entries. */
+	private long[] keys = new long[INITIAL_CAPACITY];
+
+	/** The VMs of the entries, null for a free slot. */
+	private Vm[] vms = new Vm[INITIAL_CAPACITY];
+
+	/** The hosts of the entries. */
+	private Host[] hosts = new Host[INITIAL_CAPACITY];
+
+	/** The number of entries. */
+	private int size = 0;
+
+	/**
+	 * Packs the user id and the VM id of a VM in a key.
+	 *
+	 * @param userId the user id
+	 * @param vmId the vm id
+	 * @return the key
+	 */
+	public static long key(int userId, int vmId) {
+		return ((long) userId << 32) | (vmId & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Adds a VM, or replaces the host of a VM already registered.
+	 *
+	 * @param vm the vm
+	 * @param host the host of the vm, may be null
+	 */
+	public void put(Vm vm, Host host) {
+		if ((size + 1) * 4 > keys.length * 3) {
+			resize(keys.length << 1);
+		}
+		long key = key(vm.getUserId(), vm.getId());
+		int i = find(key);
+		if (vms[i] == null) {
+			keys[i] = key;
+			size++;
+		}
+		vms[i] = vm;
+		hosts[i] = host;
+	}
+
+	/**
+	 * Gets a VM.
+	 *
+	 * @param vmId the vm id
+	 * @param userId the user id
+	 * @return the vm, or null if it is not registered
+	 */
+	public Vm getVm(int vmId, int userId) {
+		return vms[find(key(userId, vmId))];
+	}
+
+	/**
+	 * Gets the host of a VM.
+	 *
+	 * @param vmId the vm id
+	 * @param userId the user id
+	 * @return the host, or null if the vm is not registered
+	 */
+	public Host getHost(int vmId, int userId) {
+		int i = find(key(userId, vmId));
+		return vms[i] == null ? null : hosts[i];
+	}
+
+	/**
+	 * Checks if a VM is registered.
+	 *
+	 * @param vmId the vm id
+	 * @param userId the user id
+	 * @return true, if the vm is registered
+	 */
+	public boolean contains(int vmId, int userId) {
+		return vms[find(key(userId, vmId))] != null;
+	}
+
+	/**
+	 * Removes a VM.
+	 *
+	 * @param vmId the vm id
+	 * @param userId the user id
+	 * @return the host of the vm, or null if it was not registered
+	 */
+	public Host remove(int vmId, int userId) {
+		int i = find(key(userId, vmId));
+		if (vms[i] == null) {
+			return null;
+		}
+		Host host = hosts[i];
+		size--;
+		// shift back the entries of the probe sequence, so that no lookup stops early
+		int mask = keys.length - 1;
+		int free = i;
+		for (int j = (i + 1) & mask; vms[j] != null; j = (j + 1) & mask) {
+			int home = slot(keys[j]);
+			if (((j - home) & mask) >= ((j - free) & mask)) {
+				keys[free] = keys[j];
+				vms[free] = vms[j];
+				hosts[free] = hosts[j];
+				free = j;
+			}
+		}
+		vms[free] = null;
+		hosts[free] = null;
+		return host;
+	}
+
+	/**
+	 * Gets the number of VMs registered.
+	 *
+	 * @return the number of vms
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all the VMs.
+	 */
+	public void clear() {
+		Arrays.fill(vms, null);
+		Arrays.fill(hosts, null);
+		size = 0;
+	}
+
+	/**
+	 * Finds the slot of a key, or the free slot where it would be added.
+	 *
+	 * @param key the key
+	 * @return the slot
+	 */
+	private int find(long key) {
+		int mask = keys.length - 1;
+		int i = slot(key);
+		while (vms[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Gets the first slot of the probe sequence of a key.
+	 *
+	 * @param key the key
+	 * @return the slot
+	 */
+	private int slot(long key) {
+		// the finalizer of MurmurHash3, the ids are small and consecutive
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		return (int) key & (keys.length - 1);
+	}
+
+	/**
+	 * Rehashes the entries in a larger table.
+	 *
+	 * @param capacity the new capacity, a power of two
+	 */
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Vm[] oldVms = vms;
+		Host[] oldHosts = hosts;
+		keys = new long[capacity];
+		vms = new Vm[capacity];
+		hosts = new Host[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldVms[i] != null) {
+				int j = find(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				vms[j] = oldVms[i];
+				hosts[j] = oldHosts[i];
+			}
+		}
+	}
+
+}
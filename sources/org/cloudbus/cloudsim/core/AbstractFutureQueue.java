@@ -0,0 +1,131 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The future event queue used by {@link CloudSim}. Events are ordered by time, then by serial:
+ * {@link #addEvent(SimEvent)} gives each event the next serial and
+ * {@link #addEventFirst(SimEvent)} the serial 0. This class holds no events, its subclasses store
+ * them: {@link FutureQueue} in a sorted set and {@link HeapFutureQueue} in a binary heap.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ * @see FutureQueue
+ * @see HeapFutureQueue
+ */
+public abstract class AbstractFutureQueue {
+
+	/** The serial. */
+	private long serial = 0;
+
+	/**
+	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
+	 * the events in the queue.
+	 * 
+	 * @param newEvent The event to be put in the queue.
+	 */
+	public void addEvent(SimEvent newEvent) {
+		newEvent.setSerial(serial++);
+		offer(newEvent);
+	}
+
+	/**
+	 * Add a new event to the head of the queue.
+	 * 
+	 * @param newEvent The event to be put in the queue.
+	 */
+	public void addEventFirst(SimEvent newEvent) {
+		newEvent.setSerial(0);
+		offer(newEvent);
+	}
+
+	/**
+	 * Removes all the events at the head of the queue that occur at the given time. The events are
+	 * returned in the same order they would have been polled one by one.
+	 * 
+	 * @param time the event time
+	 * @return the list of removed events, possibly empty
+	 */
+	public List<SimEvent> pollAllAt(double time) {
+		List<SimEvent> events = new ArrayList<SimEvent>();
+		pollAllAt(time, events);
+		return events;
+	}
+
+	/**
+	 * Stores an event whose serial has been set.
+	 * 
+	 * @param event the event
+	 */
+	protected abstract void offer(SimEvent event);
+
+	/**
+	 * Returns an iterator to the queue.
+	 * 
+	 * @return the iterator
+	 */
+	public abstract Iterator<SimEvent> iterator();
+
+	/**
+	 * Returns the size of this event queue.
+	 * 
+	 * @return the size
+	 */
+	public abstract int size();
+
+	/**
+	 * Removes the event from the queue.
+	 * 
+	 * @param event the event
+	 * @return true, if successful
+	 */
+	public abstract boolean remove(SimEvent event);
+
+	/**
+	 * Removes all the events from the queue.
+	 * 
+	 * @param events the events
+	 * @return true, if successful
+	 */
+	public abstract boolean removeAll(Collection<SimEvent> events);
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 * 
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public abstract SimEvent peek();
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 * 
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public abstract SimEvent poll();
+
+	/**
+	 * Removes all the events at the head of the queue that occur at the given time and appends them
+	 * to the given collection, so that callers can reuse the same buffer on every clock tick.
+	 * 
+	 * @param time the event time
+	 * @param events the collection the removed events are appended to
+	 * @return the number of removed events
+	 */
+	public abstract int pollAllAt(double time, Collection<SimEvent> events);
+
+	/**
+	 * Clears the queue.
+	 */
+	public abstract void clear();
+
+}
@@ -8,15 +8,19 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 
 /**
- * This class implements the deferred event queue used by {@link Simulation}. The event queue uses a
- * linked list to store the events.
- * 
+ * This class implements the deferred event queue used by {@link Simulation}. The events are
+ * partitioned by destination entity, each entity having its own linked list of events sorted by
+ * time, so that an entity only ever looks at the events sent to it.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
@@ -24,25 +28,40 @@ import java.util.ListIterator;
  */
 public class DeferredQueue {
 
-	/** The list. */
-	private final List<SimEvent> list = new LinkedList<SimEvent>();
+	/** The lists of events, indexed by destination entity id. */
+	private final List<List<SimEvent>> lists = new ArrayList<List<SimEvent>>();
+
+	/** The max time of each list. */
+	private double[] maxTimes = new double[0];
 
-	/** The max time. */
-	private double maxTime = -1;
+	/** The total number of events. */
+	private int size = 0;
 
 	/**
 	 * Adds a new event to the queue. Adding a new event to the queue preserves the temporal order
 	 * of the events.
-	 * 
+	 *
 	 * @param newEvent The event to be added to the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
+		int dest = newEvent.getDestination();
+		if (dest >= lists.size()) {
+			int oldSize = lists.size();
+			while (lists.size() <= dest) {
+				lists.add(new LinkedList<SimEvent>());
+			}
+			maxTimes = Arrays.copyOf(maxTimes, lists.size());
+			Arrays.fill(maxTimes, oldSize, maxTimes.length, -1);
+		}
+		List<SimEvent> list = lists.get(dest);
+		size++;
+
 		// The event has to be inserted as the last of all events
 		// with the same event_time(). Yes, this matters.
 		double eventTime = newEvent.eventTime();
-		if (eventTime >= maxTime) {
+		if (eventTime >= maxTimes[dest]) {
 			list.add(newEvent);
-			maxTime = eventTime;
+			maxTimes[dest] = eventTime;
 			return;
 		}
 
@@ -61,28 +80,106 @@ public class DeferredQueue {
 	}
 
 	/**
-	 * Returns an iterator to the events in the queue.
-	 * 
+	 * Returns an iterator to the events sent to an entity, in temporal order. Events removed through
+	 * the iterator are removed from the queue.
+	 *
+	 * @param dest the destination entity id
+	 * @return the iterator
+	 */
+	public Iterator<SimEvent> iterator(int dest) {
+		if (dest < 0 || dest >= lists.size()) {
+			return Collections.<SimEvent> emptyList().iterator();
+		}
+		final Iterator<SimEvent> iterator = lists.get(dest).iterator();
+		return new Iterator<SimEvent>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public SimEvent next() {
+				return iterator.next();
+			}
+
+			@Override
+			public void remove() {
+				iterator.remove();
+				size--;
+			}
+		};
+	}
+
+	/**
+	 * Returns an iterator to the events in the queue, grouped by destination entity.
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return list.iterator();
+		List<SimEvent> all = new ArrayList<SimEvent>(size);
+		for (List<SimEvent> list : lists) {
+			all.addAll(list);
+		}
+		return Collections.unmodifiableList(all).iterator();
+	}
+
+	/**
+	 * Returns the first event sent to an entity without removing it.
+	 *
+	 * @param dest the destination entity id
+	 * @return the event, or <tt>null</tt> if there is none
+	 */
+	public SimEvent peek(int dest) {
+		if (size(dest) == 0) {
+			return null;
+		}
+		return lists.get(dest).get(0);
+	}
+
+	/**
+	 * Removes and returns the first event sent to an entity.
+	 *
+	 * @param dest the destination entity id
+	 * @return the event, or <tt>null</tt> if there is none
+	 */
+	public SimEvent poll(int dest) {
+		if (size(dest) == 0) {
+			return null;
+		}
+		size--;
+		return lists.get(dest).remove(0);
+	}
+
+	/**
+	 * Returns the number of events sent to an entity.
+	 *
+	 * @param dest the destination entity id
+	 * @return the number of events
+	 */
+	public int size(int dest) {
+		if (dest < 0 || dest >= lists.size()) {
+			return 0;
+		}
+		return lists.get(dest).size();
 	}
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the number of events in the queue.
 	 */
 	public int size() {
-		return list.size();
+		return size;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		list.clear();
+		lists.clear();
+		maxTimes = new double[0];
+		size = 0;
 	}
 
-}
\ No newline at end of file
+}
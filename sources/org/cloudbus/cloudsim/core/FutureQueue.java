@@ -10,45 +10,26 @@ package org.cloudbus.cloudsim.core;
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedSet;
 import java.util.TreeSet;
 
 /**
  * This class implements the future event queue used by {@link Simulation}. The event queue uses a
- * {@link TreeSet} in order to store the events.
+ * {@link TreeSet} in order to store the events. {@link HeapFutureQueue} delivers them in the same
+ * order.
  * 
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
  * @see java.util.TreeSet
  */
-public class FutureQueue {
+public class FutureQueue extends AbstractFutureQueue {
 
 	/** The sorted set. */
-	private final SortedSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+	private final TreeSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
 
-	/** The serial. */
-	private long serial = 0;
-
-	/**
-	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
-	 * the events in the queue.
-	 * 
-	 * @param newEvent The event to be put in the queue.
-	 */
-	public void addEvent(SimEvent newEvent) {
-		newEvent.setSerial(serial++);
-		sortedSet.add(newEvent);
-	}
-
-	/**
-	 * Add a new event to the head of the queue.
-	 * 
-	 * @param newEvent The event to be put in the queue.
-	 */
-	public void addEventFirst(SimEvent newEvent) {
-		newEvent.setSerial(0);
-		sortedSet.add(newEvent);
+	@Override
+	protected void offer(SimEvent event) {
+		sortedSet.add(event);
 	}
 
 	/**
@@ -56,6 +37,7 @@ public class FutureQueue {
 	 * 
 	 * @return the iterator
 	 */
+	@Override
 	public Iterator<SimEvent> iterator() {
 		return sortedSet.iterator();
 	}
@@ -65,6 +47,7 @@ public class FutureQueue {
 	 * 
 	 * @return the size
 	 */
+	@Override
 	public int size() {
 		return sortedSet.size();
 	}
@@ -75,6 +58,7 @@ public class FutureQueue {
 	 * @param event the event
 	 * @return true, if successful
 	 */
+	@Override
 	public boolean remove(SimEvent event) {
 		return sortedSet.remove(event);
 	}
@@ -85,13 +69,53 @@ public class FutureQueue {
 	 * @param events the events
 	 * @return true, if successful
 	 */
+	@Override
 	public boolean removeAll(Collection<SimEvent> events) {
 		return sortedSet.removeAll(events);
 	}
 
+	/**
+	 * Returns the first event of the queue without removing it.
+	 * 
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	@Override
+	public SimEvent peek() {
+		return sortedSet.isEmpty() ? null : sortedSet.first();
+	}
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 * 
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	@Override
+	public SimEvent poll() {
+		return sortedSet.pollFirst();
+	}
+
+	/**
+	 * Removes all the events at the head of the queue that occur at the given time and appends them
+	 * to the given collection, so that callers can reuse the same buffer on every clock tick.
+	 * 
+	 * @param time the event time
+	 * @param events the collection the removed events are appended to
+	 * @return the number of removed events
+	 */
+	@Override
+	public int pollAllAt(double time, Collection<SimEvent> events) {
+		int count = 0;
+		while (!sortedSet.isEmpty() && sortedSet.first().eventTime() == time) {
+			events.add(sortedSet.pollFirst());
+			count++;
+		}
+		return count;
+	}
+
 	/**
 	 * Clears the queue.
 	 */
+	@Override
 	public void clear() {
 		sortedSet.clear();
 	}
@@ -0,0 +1,249 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A future event queue backed by an array-based binary heap. Events are ordered by
+ * <tt>(eventTime, serial)</tt> exactly as in {@link FutureQueue}; events that compare equal under
+ * that key (e.g. several events added with {@link #addEventFirst(SimEvent)}) are kept in insertion
+ * order, which is the order the sorted set places them in.
+ * <p>
+ * Adding and polling an event is O(log n). Arbitrary removals and iteration are O(n) and
+ * O(n log n) respectively; they are only used to cancel events.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ * @see FutureQueue
+ */
+public class HeapFutureQueue extends AbstractFutureQueue {
+
+	/** The initial capacity of the heap. */
+	private static final int INITIAL_CAPACITY = 256;
+
+	/** The heap of events. */
+	private SimEvent[] heap = new SimEvent[INITIAL_CAPACITY];
+
+	/** The insertion order of each event in the heap, used to break ties. */
+	private long[] order = new long[INITIAL_CAPACITY];
+
+	/** The number of events in the heap. */
+	private int size = 0;
+
+	/** The insertion counter. */
+	private long inserted = 0;
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		final SimEvent[] snapshot = Arrays.copyOf(heap, size);
+		final long[] snapshotOrder = Arrays.copyOf(order, size);
+		sort(snapshot, snapshotOrder);
+		return new Iterator<SimEvent>() {
+
+			private int next = 0;
+
+			private SimEvent last = null;
+
+			@Override
+			public boolean hasNext() {
+				return next < snapshot.length;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (next >= snapshot.length) {
+					throw new NoSuchElementException();
+				}
+				last = snapshot[next++];
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				HeapFutureQueue.this.remove(last);
+				last = null;
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		for (int i = 0; i < size; i++) {
+			if (heap[i] == event) {
+				removeAt(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean removeAll(Collection<SimEvent> events) {
+		boolean changed = false;
+		for (SimEvent event : events) {
+			changed |= remove(event);
+		}
+		return changed;
+	}
+
+	@Override
+	public SimEvent peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	@Override
+	public SimEvent poll() {
+		if (size == 0) {
+			return null;
+		}
+		SimEvent first = heap[0];
+		removeAt(0);
+		return first;
+	}
+
+	@Override
+	public int pollAllAt(double time, Collection<SimEvent> events) {
+		int count = 0;
+		while (size > 0 && heap[0].eventTime() == time) {
+			events.add(poll());
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(heap, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Inserts an event into the heap.
+	 *
+	 * @param event the event
+	 */
+	@Override
+	protected void offer(SimEvent event) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size << 1);
+			order = Arrays.copyOf(order, size << 1);
+		}
+		siftUp(size++, event, inserted++);
+	}
+
+	/**
+	 * Removes the event at the given position of the heap.
+	 *
+	 * @param i the position
+	 */
+	private void removeAt(int i) {
+		int last = --size;
+		SimEvent moved = heap[last];
+		long movedOrder = order[last];
+		heap[last] = null;
+		if (i == last) {
+			return;
+		}
+		siftDown(i, moved, movedOrder);
+		if (heap[i] == moved) {
+			siftUp(i, moved, movedOrder);
+		}
+	}
+
+	/**
+	 * Moves an event up from position <tt>i</tt> until the heap property holds.
+	 */
+	private void siftUp(int i, SimEvent event, long eventOrder) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!less(event, eventOrder, heap[parent], order[parent])) {
+				break;
+			}
+			heap[i] = heap[parent];
+			order[i] = order[parent];
+			i = parent;
+		}
+		heap[i] = event;
+		order[i] = eventOrder;
+	}
+
+	/**
+	 * Moves an event down from position <tt>i</tt> until the heap property holds.
+	 */
+	private void siftDown(int i, SimEvent event, long eventOrder) {
+		int half = size >>> 1;
+		while (i < half) {
+			int child = (i << 1) + 1;
+			int right = child + 1;
+			if (right < size && less(heap[right], order[right], heap[child], order[child])) {
+				child = right;
+			}
+			if (!less(heap[child], order[child], event, eventOrder)) {
+				break;
+			}
+			heap[i] = heap[child];
+			order[i] = order[child];
+			i = child;
+		}
+		heap[i] = event;
+		order[i] = eventOrder;
+	}
+
+	/**
+	 * Compares two events by time, serial and finally insertion order.
+	 */
+	private static boolean less(SimEvent a, long aOrder, SimEvent b, long bOrder) {
+		if (a.eventTime() != b.eventTime()) {
+			return a.eventTime() < b.eventTime();
+		}
+		if (a.getSerial() != b.getSerial()) {
+			return a.getSerial() < b.getSerial();
+		}
+		return aOrder < bOrder;
+	}
+
+	/**
+	 * Sorts a snapshot of the heap in queue order.
+	 */
+	private static void sort(SimEvent[] events, long[] eventOrder) {
+		Integer[] index = new Integer[events.length];
+		for (int i = 0; i < index.length; i++) {
+			index[i] = i;
+		}
+		final SimEvent[] e = events.clone();
+		final long[] o = eventOrder.clone();
+		Arrays.sort(index, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer x, Integer y) {
+				if (less(e[x], o[x], e[y], o[y])) {
+					return -1;
+				}
+				return less(e[y], o[y], e[x], o[x]) ? 1 : 0;
+			}
+		});
+		for (int i = 0; i < index.length; i++) {
+			events[i] = e[index[i]];
+			eventOrder[i] = o[index[i]];
+		}
+	}
+
+}
@@ -86,6 +86,15 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		this.serial = serial;
 	}
 
+	/**
+	 * Gets the serial number assigned by the future event queue.
+	 * 
+	 * @return the serial
+	 */
+	protected long getSerial() {
+		return serial;
+	}
+
 	/**
 	 * Used to set the time at which this event finished waiting in the event
 	 * 
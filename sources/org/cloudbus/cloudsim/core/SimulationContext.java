@@ -0,0 +1,1074 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * The state of one simulation: its entities, event queues and clock, plus the state that other
+ * classes keep per simulation through {@link Key}s (the log output, the WorkflowSim parameters,
+ * the replica catalog, the failure monitor, ...).
+ * <p>
+ * The static API of {@link CloudSim} and of those classes is a facade over the <i>current</i>
+ * context of the calling thread, which is the {@link #getDefault() default context} unless another
+ * one has been bound with {@link #bind(SimulationContext)} or {@link #call(Callable)}. Entities
+ * keep the context they have been created in (see {@link SimEntity#getContext()}), and
+ * {@link #run()} binds the context to the thread that runs the simulation, so independent
+ * simulations can run concurrently on different threads as long as each of them is set up and run
+ * inside its own context:
+ *
+ * <pre>
+ * new SimulationContext().call(new Callable&lt;Double&gt;() {
+ *     public Double call() {
+ *         CloudSim.init(1, null, false);
+ *         // create the entities
+ *         return CloudSim.startSimulation();
+ *     }
+ * });
+ * </pre>
+ *
+ * A context must not be used by several threads at the same time.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ * @see CloudSim
+ */
+public class SimulationContext {
+
+	/** The Constant CLOUDSIM_VERSION_STRING. */
+	private static final String CLOUDSIM_VERSION_STRING = "3.0";
+
+	/** The Constant NOT_FOUND. */
+	private static final int NOT_FOUND = -1;
+
+	/** The context used by the threads that have not bound one. */
+	private static final SimulationContext DEFAULT = new SimulationContext();
+
+	/** The context bound to each thread. */
+	private static final ThreadLocal<SimulationContext> CURRENT = new ThreadLocal<SimulationContext>();
+
+	/**
+	 * A key of the state kept per simulation, in the manner of a {@link ThreadLocal}: each context
+	 * holds its own value, created by {@link #initialValue()} the first time it is read.
+	 *
+	 * @param <T> the type of the value
+	 */
+	public abstract static class Key<T> {
+
+		/** The next free slot. */
+		private static final AtomicInteger NEXT_INDEX = new AtomicInteger();
+
+		/** The slot of this key in the contexts. */
+		private final int index = NEXT_INDEX.getAndIncrement();
+
+		/**
+		 * Creates the value of this key in a new context.
+		 *
+		 * @return the initial value
+		 */
+		protected abstract T initialValue();
+
+	}
+
+	/** The values of the keys, indexed by {@link Key#index}. */
+	private Object[] values = new Object[8];
+
+	/** The id of CIS entity. */
+	private int cisId = -1;
+
+	/** The id of CloudSimShutdown entity. */
+	@SuppressWarnings("unused")
+	private int shutdownId = -1;
+
+	/** The CIS object. */
+	private CloudInformationService cis = null;
+
+	/** The trace flag. */
+	@SuppressWarnings("unused")
+	private boolean traceFlag = false;
+
+	/** The calendar. */
+	private Calendar calendar = null;
+
+	/** The termination time. */
+	private double terminateAt = -1;
+
+	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
+	private double minTimeBetweenEvents = 0.1;
+
+	/** The entities. */
+	private List<SimEntity> entities;
+
+	/** The future event queue. */
+	private AbstractFutureQueue future;
+
+	/** The deferred event queue. */
+	private DeferredQueue deferred;
+
+	/** Whether the future event queue is a binary heap or the original sorted set. */
+	private boolean heapFutureQueue = true;
+
+	/** The future event queue set for the next simulation, if any. */
+	private AbstractFutureQueue nextFuture;
+
+	/** The buffer of events dequeued together in one clock tick. */
+	private final List<SimEvent> sameTimeEvents = new ArrayList<SimEvent>();
+
+	/** The simulation clock. */
+	private double clock;
+
+	/** Flag for checking if the simulation is running. */
+	private boolean running;
+
+	/** The entities by name. */
+	private Map<String, SimEntity> entitiesByName;
+
+	// The predicates used in entity wait methods
+	/** The wait predicates. */
+	private Map<Integer, Predicate> waitPredicates;
+
+	/** The paused. */
+	private boolean paused = false;
+
+	/** The pause at. */
+	private long pauseAt = -1;
+
+	/** The abrupt terminate. */
+	private boolean abruptTerminate = false;
+
+	/**
+	 * Gets the context of the calling thread.
+	 *
+	 * @return the context bound to the thread, or the default context
+	 */
+	public static SimulationContext current() {
+		SimulationContext context = CURRENT.get();
+		if (context == null) {
+			return DEFAULT;
+		}
+		return context;
+	}
+
+	/**
+	 * Gets the context used by the threads that have not bound one.
+	 *
+	 * @return the default context
+	 */
+	public static SimulationContext getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Binds a context to the calling thread.
+	 *
+	 * @param context the context, or <tt>null</tt> to go back to the default context
+	 * @return the context previously bound to the thread, <tt>null</tt> if there was none; pass it
+	 *         to this method again to restore it
+	 */
+	public static SimulationContext bind(SimulationContext context) {
+		SimulationContext previous = CURRENT.get();
+		if (context == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(context);
+		}
+		return previous;
+	}
+
+	/**
+	 * Runs a task with this context bound to the calling thread, so that the static API of
+	 * {@link CloudSim} and of the other facades refers to this context.
+	 *
+	 * @param task the task
+	 * @return the result of the task
+	 * @throws Exception if the task throws an exception
+	 */
+	public <T> T call(Callable<T> task) throws Exception {
+		SimulationContext previous = bind(this);
+		try {
+			return task.call();
+		} finally {
+			bind(previous);
+		}
+	}
+
+	/**
+	 * Gets the value of a key in this context, creating it if needed.
+	 *
+	 * @param key the key
+	 * @return the value
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Key<T> key) {
+		if (key.index >= values.length) {
+			values = Arrays.copyOf(values, Math.max(values.length << 1, key.index + 1));
+		}
+		Object value = values[key.index];
+		if (value == null) {
+			value = key.initialValue();
+			values[key.index] = value;
+		}
+		return (T) value;
+	}
+
+	/**
+	 * Sets the value of a key in this context.
+	 *
+	 * @param key the key
+	 * @param value the value, <tt>null</tt> to reset it to its initial value
+	 */
+	public <T> void set(Key<T> key, T value) {
+		if (key.index >= values.length) {
+			values = Arrays.copyOf(values, Math.max(values.length << 1, key.index + 1));
+		}
+		values[key.index] = value;
+	}
+
+	/**
+	 * Initialises all the common attributes.
+	 *
+	 * @param _calendar the _calendar
+	 * @param _traceFlag the _trace flag
+	 * @param numUser number of users
+	 * @throws Exception This happens when creating this entity before initialising CloudSim package
+	 *             or this entity name is <tt>null</tt> or empty
+	 */
+	private void initCommonVariable(Calendar _calendar, boolean _traceFlag, int numUser)
+			throws Exception {
+		initialize();
+		// NOTE: the order for the below 3 lines are important
+		traceFlag = _traceFlag;
+
+		// Set the current Wall clock time as the starting time of
+		// simulation
+		if (_calendar == null) {
+			calendar = Calendar.getInstance();
+		} else {
+			calendar = _calendar;
+		}
+
+		// creates a CloudSimShutdown object
+		CloudSimShutdown shutdown = new CloudSimShutdown("CloudSimShutdown", numUser);
+		shutdownId = shutdown.getId();
+	}
+
+	/**
+	 * Initialises the simulation. See {@link CloudSim#init(int, Calendar, boolean)}.
+	 *
+	 * @param numUser the number of User Entities created
+	 * @param cal starting time for this simulation
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 */
+	public void init(int numUser, Calendar cal, boolean traceFlag) {
+		// the entities created here have to belong to this context
+		SimulationContext previous = bind(this);
+		try {
+			initCommonVariable(cal, traceFlag, numUser);
+
+			// create a GIS object
+			cis = new CloudInformationService("CloudInformationService");
+
+			// set all the above entity IDs
+			cisId = cis.getId();
+		} catch (IllegalArgumentException s) {
+			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
+			Log.printLine(s.getMessage());
+		} catch (Exception e) {
+			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
+			Log.printLine(e.getMessage());
+		} finally {
+			bind(previous);
+		}
+	}
+
+	/**
+	 * Initialises the simulation. See {@link CloudSim#init(int, Calendar, boolean, double)}.
+	 *
+	 * @param numUser the number of User Entities created
+	 * @param cal starting time for this simulation
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @param periodBetweenEvents the minimal period between events
+	 */
+	public void init(int numUser, Calendar cal, boolean traceFlag, double periodBetweenEvents) {
+		if (periodBetweenEvents <= 0) {
+			throw new IllegalArgumentException("The minimal time between events should be positive, but is:" + periodBetweenEvents);
+		}
+
+		init(numUser, cal, traceFlag);
+		minTimeBetweenEvents = periodBetweenEvents;
+	}
+
+	/**
+	 * Starts the execution of the simulation. See {@link CloudSim#startSimulation()}.
+	 *
+	 * @return the last clock value
+	 * @throws NullPointerException if the simulation has not been initialised
+	 */
+	public double startSimulation() throws NullPointerException {
+		Log.printLine("Starting CloudSim version " + CLOUDSIM_VERSION_STRING);
+		try {
+			double clock = run();
+
+			// reset all the simulation variables
+			cisId = -1;
+			shutdownId = -1;
+			cis = null;
+			calendar = null;
+			traceFlag = false;
+
+			return clock;
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			throw new NullPointerException("CloudSim.startCloudSimulation() :"
+					+ " Error - you haven't initialized CloudSim.");
+		}
+	}
+
+	/**
+	 * Stops the simulation. See {@link CloudSim#stopSimulation()}.
+	 *
+	 * @throws NullPointerException if the simulation can't be stopped
+	 */
+	public void stopSimulation() throws NullPointerException {
+		try {
+			runStop();
+		} catch (IllegalArgumentException e) {
+			throw new NullPointerException("CloudSim.stopCloudSimulation() : "
+					+ "Error - can't stop Cloud Simulation.");
+		}
+	}
+
+	/**
+	 * This method is called if one wants to terminate the simulation.
+	 *
+	 * @return true, if successful; false otherwise.
+	 */
+	public boolean terminateSimulation() {
+		running = false;
+		printMessage("Simulation: Reached termination time.");
+		return true;
+	}
+
+	/**
+	 * This method is called if one wants to terminate the simulation at a given time.
+	 *
+	 * @param time the time at which the simulation has to be terminated
+	 * @return true, if successful otherwise.
+	 */
+	public boolean terminateSimulation(double time) {
+		if (time <= clock) {
+			return false;
+		} else {
+			terminateAt = time;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the minimum time between events. Events within shorter periods after the last event are discarded.
+	 *
+	 * @return the minimum time between events.
+	 */
+	public double getMinTimeBetweenEvents() {
+		return minTimeBetweenEvents;
+	}
+
+	/**
+	 * Gets a new copy of initial simulation Calendar.
+	 *
+	 * @return a new copy of Calendar object or if CloudSim hasn't been initialized
+	 */
+	public Calendar getSimulationCalendar() {
+		// make a new copy
+		Calendar clone = calendar;
+		if (calendar != null) {
+			clone = (Calendar) calendar.clone();
+		}
+
+		return clone;
+	}
+
+	/**
+	 * Gets the entity ID of <tt>CloudInformationService</tt>.
+	 *
+	 * @return the Entity ID or if it is not found
+	 */
+	public int getCloudInfoServiceEntityId() {
+		return cisId;
+	}
+
+	/**
+	 * Gets the list of all the resources registered to the <tt>CloudInformationService</tt>.
+	 *
+	 * @return A List containing CloudResource ID (as an Integer object) or if a CIS entity hasn't
+	 *         been created before
+	 */
+	public List<Integer> getCloudResourceList() {
+		if (cis == null) {
+			return null;
+		}
+
+		return cis.getList();
+	}
+
+	// ======== SIMULATION METHODS ===============//
+
+	/**
+	 * Initialise the simulation for stand alone simulations. This function should be called at the
+	 * start of the simulation.
+	 */
+	void initialize() {
+		Log.printLine("Initialising...");
+		entities = new ArrayList<SimEntity>();
+		entitiesByName = new LinkedHashMap<String, SimEntity>();
+		if (nextFuture != null) {
+			future = nextFuture;
+			nextFuture = null;
+		} else {
+			future = heapFutureQueue ? new HeapFutureQueue() : new FutureQueue();
+		}
+		deferred = new DeferredQueue();
+		waitPredicates = new HashMap<Integer, Predicate>();
+		clock = 0;
+		running = false;
+	}
+
+	/**
+	 * Selects the implementation of the future event queue used by the next simulation of this
+	 * context. See {@link CloudSim#setHeapFutureQueue(boolean)}.
+	 *
+	 * @param enabled <tt>true</tt> to use {@link HeapFutureQueue} (the default), <tt>false</tt> to
+	 *            use the sorted set based {@link FutureQueue}
+	 */
+	public void setHeapFutureQueue(boolean enabled) {
+		heapFutureQueue = enabled;
+	}
+
+	/**
+	 * Checks whether the future event queue is a binary heap.
+	 *
+	 * @return true, if {@link HeapFutureQueue} is used
+	 */
+	public boolean isHeapFutureQueue() {
+		return heapFutureQueue;
+	}
+
+	/**
+	 * Sets the future event queue used by the next simulation of this context, instead of the one
+	 * selected with {@link #setHeapFutureQueue(boolean)}. See
+	 * {@link CloudSim#setFutureQueue(AbstractFutureQueue)}.
+	 *
+	 * @param queue the empty queue, or <tt>null</tt> to select it with
+	 *            {@link #setHeapFutureQueue(boolean)}
+	 */
+	public void setFutureQueue(AbstractFutureQueue queue) {
+		nextFuture = queue;
+	}
+
+	// Public access methods
+
+	/**
+	 * Get the current simulation time.
+	 *
+	 * @return the simulation time
+	 */
+	public double clock() {
+		return clock;
+	}
+
+	/**
+	 * Get the current number of entities in the simulation.
+	 *
+	 * @return The number of entities
+	 */
+	public int getNumEntities() {
+		return entities.size();
+	}
+
+	/**
+	 * Get the entity with a given id.
+	 *
+	 * @param id the entity's unique id number
+	 * @return The entity, or if it could not be found
+	 */
+	public SimEntity getEntity(int id) {
+		return entities.get(id);
+	}
+
+	/**
+	 * Get the entity with a given name.
+	 *
+	 * @param name The entity's name
+	 * @return The entity
+	 */
+	public SimEntity getEntity(String name) {
+		return entitiesByName.get(name);
+	}
+
+	/**
+	 * Get the id of an entity with a given name.
+	 *
+	 * @param name The entity's name
+	 * @return The entity's unique id number
+	 */
+	public int getEntityId(String name) {
+		SimEntity obj = entitiesByName.get(name);
+		if (obj == null) {
+			return NOT_FOUND;
+		} else {
+			return obj.getId();
+		}
+	}
+
+	/**
+	 * Gets name of the entity given its entity ID.
+	 *
+	 * @param entityID the entity ID
+	 * @return the Entity name or if this object does not have one
+	 */
+	public String getEntityName(int entityID) {
+		try {
+			return getEntity(entityID).getName();
+		} catch (IllegalArgumentException e) {
+			return null;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns a list of entities created for the simulation.
+	 *
+	 * @return the entity iterator
+	 */
+	public List<SimEntity> getEntityList() {
+		// create a new list to prevent the user from changing
+		// the list of entities used by Simulation
+		List<SimEntity> list = new LinkedList<SimEntity>();
+		list.addAll(entities);
+		return list;
+	}
+
+	// Public update methods
+
+	/**
+	 * Add a new entity to the simulation.
+	 *
+	 * @param e The new entity
+	 */
+	public void addEntity(SimEntity e) {
+		SimEvent evt;
+		if (running) {
+			// Post an event to make this entity
+			evt = new SimEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
+			future.addEvent(evt);
+		}
+		if (e.getId() == -1) { // Only add once!
+			int id = entities.size();
+			e.setId(id);
+			entities.add(e);
+			entitiesByName.put(e.getName(), e);
+		}
+	}
+
+	/**
+	 * Internal method used to add a new entity to the simulation when the simulation is running.
+	 *
+	 * @param e The new entity
+	 */
+	void addEntityDynamically(SimEntity e) {
+		if (e == null) {
+			throw new IllegalArgumentException("Adding null entity.");
+		} else {
+			printMessage("Adding: " + e.getName());
+		}
+		e.startEntity();
+	}
+
+	/**
+	 * Internal method used to run one tick of the simulation. This method should <b>not</b> be
+	 * called in simulations.
+	 *
+	 * @return true, if successful otherwise
+	 */
+	public boolean runClockTick() {
+		SimEntity ent;
+		boolean queue_empty;
+
+		int entities_size = entities.size();
+
+		for (int i = 0; i < entities_size; i++) {
+			ent = entities.get(i);
+			if (ent.getState() == SimEntity.RUNNABLE) {
+				ent.run();
+			}
+		}
+
+		// If there are more future events then deal with them
+		if (future.size() > 0) {
+			queue_empty = false;
+			SimEvent first = future.poll();
+			processEvent(first);
+
+			// Check if next events are at same time...
+			future.pollAllAt(first.eventTime(), sameTimeEvents);
+			for (int i = 0; i < sameTimeEvents.size(); i++) {
+				processEvent(sameTimeEvents.get(i));
+			}
+			sameTimeEvents.clear();
+
+		} else {
+			queue_empty = true;
+			running = false;
+			printMessage(Log.formatDecimal(clock()) +"Simulation: No more future events");
+		}
+
+		return queue_empty;
+	}
+
+	/**
+	 * Internal method used to stop the simulation. This method should <b>not</b> be used directly.
+	 */
+	public void runStop() {
+		printMessage("Simulation completed.");
+	}
+
+	/**
+	 * Used to hold an entity for some time.
+	 *
+	 * @param src the src
+	 * @param delay the delay
+	 */
+	public void hold(int src, long delay) {
+		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
+		future.addEvent(e);
+		entities.get(src).setState(SimEntity.HOLDING);
+	}
+
+	/**
+	 * Used to pause an entity for some time.
+	 *
+	 * @param src the src
+	 * @param delay the delay
+	 */
+	public void pause(int src, double delay) {
+		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
+		future.addEvent(e);
+		entities.get(src).setState(SimEntity.HOLDING);
+	}
+
+	/**
+	 * Used to send an event from one entity to another.
+	 *
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 */
+	public void send(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+
+		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
+		future.addEvent(e);
+	}
+
+	/**
+	 * Used to send an event from one entity to another, with priority in the queue.
+	 *
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 */
+	public void sendFirst(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+
+		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
+		future.addEventFirst(e);
+	}
+
+	/**
+	 * Sets an entity's state to be waiting. Only events that satisfy the predicate will be passed
+	 * to the entity.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 */
+	public void wait(int src, Predicate p) {
+		entities.get(src).setState(SimEntity.WAITING);
+		if (p != CloudSim.SIM_ANY) {
+			// If a predicate has been used store it in order to check it
+			waitPredicates.put(src, p);
+		}
+	}
+
+	/**
+	 * Checks if events for a specific entity are present in the deferred event queue.
+	 *
+	 * @param d the d
+	 * @param p the p
+	 * @return the int
+	 */
+	public int waiting(int d, Predicate p) {
+		if (p == CloudSim.SIM_ANY) {
+			return deferred.size(d);
+		}
+		int count = 0;
+		Iterator<SimEvent> iterator = deferred.iterator(d);
+		while (iterator.hasNext()) {
+			if (p.match(iterator.next())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Selects an event matching a predicate.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent select(int src, Predicate p) {
+		if (p == CloudSim.SIM_ANY) {
+			return deferred.poll(src);
+		}
+		Iterator<SimEvent> iterator = deferred.iterator(src);
+		while (iterator.hasNext()) {
+			SimEvent ev = iterator.next();
+			if (p.match(ev)) {
+				iterator.remove();
+				return ev;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find first deferred event matching a predicate.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent findFirstDeferred(int src, Predicate p) {
+		if (p == CloudSim.SIM_ANY) {
+			return deferred.peek(src);
+		}
+		Iterator<SimEvent> iterator = deferred.iterator(src);
+		while (iterator.hasNext()) {
+			SimEvent ev = iterator.next();
+			if (p.match(ev)) {
+				return ev;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes an event from the event queue.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event
+	 */
+	public SimEvent cancel(int src, Predicate p) {
+		SimEvent ev = null;
+		Iterator<SimEvent> iter = future.iterator();
+		while (iter.hasNext()) {
+			ev = iter.next();
+			if (ev.getSource() == src && p.match(ev)) {
+				iter.remove();
+				break;
+			}
+		}
+
+		return ev;
+	}
+
+	/**
+	 * Removes all events that match a given predicate from the future event queue returns true if
+	 * at least one event has been cancelled; false otherwise.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return true, if successful
+	 */
+	public boolean cancelAll(int src, Predicate p) {
+		SimEvent ev = null;
+		int previousSize = future.size();
+		Iterator<SimEvent> iter = future.iterator();
+		while (iter.hasNext()) {
+			ev = iter.next();
+			if (ev.getSource() == src && p.match(ev)) {
+				iter.remove();
+			}
+		}
+		return previousSize < future.size();
+	}
+
+	//
+	// Private internal methods
+	//
+
+	/**
+	 * Processes an event.
+	 *
+	 * @param e the e
+	 */
+	private void processEvent(SimEvent e) {
+		int dest, src;
+		SimEntity dest_ent;
+		// Update the system's clock
+		if (e.eventTime() < clock) {
+			throw new IllegalArgumentException("Past event detected.");
+		}
+		clock = e.eventTime();
+
+		// Ok now process it
+		switch (e.getType()) {
+			case SimEvent.ENULL:
+				throw new IllegalArgumentException("Event has a null type.");
+
+			case SimEvent.CREATE:
+				SimEntity newe = (SimEntity) e.getData();
+				addEntityDynamically(newe);
+				break;
+
+			case SimEvent.SEND:
+				// Check for matching wait
+				dest = e.getDestination();
+				if (dest < 0) {
+					throw new IllegalArgumentException("Attempt to send to a null entity detected.");
+				} else {
+					int tag = e.getTag();
+					dest_ent = entities.get(dest);
+					if (dest_ent.getState() == SimEntity.WAITING) {
+						Integer destObj = Integer.valueOf(dest);
+						Predicate p = waitPredicates.get(destObj);
+						if ((p == null) || (tag == 9999) || (p.match(e))) {
+							dest_ent.setEventBuffer((SimEvent) e.clone());
+							dest_ent.setState(SimEntity.RUNNABLE);
+							waitPredicates.remove(destObj);
+						} else {
+							deferred.addEvent(e);
+						}
+					} else {
+						deferred.addEvent(e);
+					}
+				}
+				break;
+
+			case SimEvent.HOLD_DONE:
+				src = e.getSource();
+				if (src < 0) {
+					throw new IllegalArgumentException("Null entity holding.");
+				} else {
+					entities.get(src).setState(SimEntity.RUNNABLE);
+				}
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Internal method used to start the simulation. This method should <b>not</b> be used by user
+	 * simulations.
+	 */
+	public void runStart() {
+		running = true;
+		// Start all the entities
+		for (SimEntity ent : entities) {
+			ent.startEntity();
+		}
+
+		printMessage("Entities started.");
+	}
+
+	/**
+	 * Check if the simulation is still running. This method should be used by entities to check if
+	 * they should continue executing.
+	 *
+	 * @return if the simulation is still running, otherwise
+	 */
+	public boolean running() {
+		return running;
+	}
+
+	/**
+	 * This method is called if one wants to pause the simulation.
+	 *
+	 * @return true, if successful otherwise.
+	 */
+	public boolean pauseSimulation() {
+		paused = true;
+		return paused;
+	}
+
+	/**
+	 * This method is called if one wants to pause the simulation at a given time.
+	 *
+	 * @param time the time at which the simulation has to be paused
+	 * @return true, if successful otherwise.
+	 */
+	public boolean pauseSimulation(long time) {
+		if (time <= clock) {
+			return false;
+		} else {
+			pauseAt = time;
+		}
+		return true;
+	}
+
+	/**
+	 * This method is called if one wants to resume the simulation that has previously been paused.
+	 *
+	 * @return if the simulation has been restarted or or otherwise.
+	 */
+	public boolean resumeSimulation() {
+		paused = false;
+
+		if (pauseAt <= clock) {
+			pauseAt = -1;
+		}
+
+		return !paused;
+	}
+
+	/**
+	 * Start the simulation running. This should be called after all the entities have been setup
+	 * and added, and their ports linked. The context is bound to the calling thread until the
+	 * simulation finishes.
+	 *
+	 * @return the double last clock value
+	 */
+	public double run() {
+		SimulationContext previous = bind(this);
+		try {
+			if (!running) {
+				runStart();
+			}
+			while (true) {
+				if (runClockTick() || abruptTerminate) {
+					break;
+				}
+
+				// this block allows termination of simulation at a specific time
+				if (terminateAt > 0.0 && clock >= terminateAt) {
+					terminateSimulation();
+					clock = terminateAt;
+					break;
+				}
+
+				if (pauseAt != -1
+						&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.peek().eventTime()) || future.size() == 0 && pauseAt <= clock)) {
+					pauseSimulation();
+					clock = pauseAt;
+				}
+
+				while (paused) {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+
+			double clock = clock();
+
+			finishSimulation();
+			runStop();
+
+			return clock;
+		} finally {
+			bind(previous);
+		}
+	}
+
+	/**
+	 * Internal method that allows the entities to terminate. This method should <b>not</b> be used
+	 * in user simulations.
+	 */
+	public void finishSimulation() {
+		// Allow all entities to exit their body method
+		if (!abruptTerminate) {
+			for (SimEntity ent : entities) {
+				if (ent.getState() != SimEntity.FINISHED) {
+					ent.run();
+				}
+			}
+		}
+
+		for (SimEntity ent : entities) {
+			ent.shutdownEntity();
+		}
+
+		// reset all the simulation variables
+		// Private data members
+		entities = null;
+		entitiesByName = null;
+		future = null;
+		deferred = null;
+		clock = 0L;
+		running = false;
+
+		waitPredicates = null;
+		paused = false;
+		pauseAt = -1;
+		abruptTerminate = false;
+	}
+
+	/**
+	 * Abruptally terminate.
+	 */
+	public void abruptallyTerminate() {
+		abruptTerminate = true;
+	}
+
+	/**
+	 * Prints a message about the progress of the simulation.
+	 *
+	 * @param message the message
+	 */
+	private void printMessage(String message) {
+		Log.printLine(message);
+	}
+
+	/**
+	 * Checks if is paused.
+	 *
+	 * @return true, if is paused
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+
+}
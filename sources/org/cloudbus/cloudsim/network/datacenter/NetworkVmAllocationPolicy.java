@@ -17,6 +17,7 @@ import org.cloudbus.cloudsim.Host;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmAllocationPolicy;
+import org.cloudbus.cloudsim.VmRegistry;
 import org.cloudbus.cloudsim.core.CloudSim;
 
 /**
@@ -33,6 +34,9 @@ public class NetworkVmAllocationPolicy extends VmAllocationPolicy {
 	/** The vm table. */
 	private Map<String, Host> vmTable;
 
+	/** The VMs and their hosts, by user id and vm id. */
+	private final VmRegistry vmRegistry = new VmRegistry();
+
 	/** The used pes. */
 	private Map<String, Integer> usedPes;
 
@@ -81,7 +85,7 @@ public class NetworkVmAllocationPolicy extends VmAllocationPolicy {
 			freePesTmp.add(freePes);
 		}
 
-		if (!getVmTable().containsKey(vm.getUid())) { // if this vm was not created
+		if (!vmRegistry.contains(vm.getId(), vm.getUserId())) { // if this vm was not created
 			do {// we still trying until we find a host or until we try all of them
 				int moreFree = Integer.MIN_VALUE;
 				int idx = -1;
@@ -99,6 +103,7 @@ public class NetworkVmAllocationPolicy extends VmAllocationPolicy {
 
 				if (result) { // if vm were succesfully created in the host
 					getVmTable().put(vm.getUid(), host);
+					vmRegistry.put(vm, host);
 					getUsedPes().put(vm.getUid(), requiredPes);
 					getFreePes().set(idx, getFreePes().get(idx) - requiredPes);
 					result = true;
@@ -148,6 +153,7 @@ public class NetworkVmAllocationPolicy extends VmAllocationPolicy {
 	@Override
 	public void deallocateHostForVm(Vm vm) {
 		Host host = getVmTable().remove(vm.getUid());
+		vmRegistry.remove(vm.getId(), vm.getUserId());
 		int idx = getHostList().indexOf(host);
 		int pes = getUsedPes().remove(vm.getUid());
 		if (host != null) {
@@ -168,7 +174,7 @@ public class NetworkVmAllocationPolicy extends VmAllocationPolicy {
 	 */
 	@Override
 	public Host getHost(Vm vm) {
-		return getVmTable().get(vm.getUid());
+		return vmRegistry.getHost(vm.getId(), vm.getUserId());
 	}
 
 	/**
@@ -184,7 +190,21 @@ public class NetworkVmAllocationPolicy extends VmAllocationPolicy {
 	 */
 	@Override
 	public Host getHost(int vmId, int userId) {
-		return getVmTable().get(Vm.getUid(userId, vmId));
+		return vmRegistry.getHost(vmId, userId);
+	}
+
+	/**
+	 * Gets the VM with the given vmID and userID.
+	 * 
+	 * @param vmId the vm id
+	 * @param userId the user id
+	 * @return the VM with the given vmID and userID; $null if not found
+	 * @pre $none
+	 * @post $none
+	 */
+	@Override
+	public Vm getVm(int vmId, int userId) {
+		return vmRegistry.getVm(vmId, userId);
 	}
 
 	/**
@@ -260,6 +280,7 @@ public class NetworkVmAllocationPolicy extends VmAllocationPolicy {
 	public boolean allocateHostForVm(Vm vm, Host host) {
 		if (host.vmCreate(vm)) { // if vm has been succesfully created in the host
 			getVmTable().put(vm.getUid(), host);
+			vmRegistry.put(vm, host);
 
 			int requiredPes = vm.getNumberOfPes();
 			int idx = getHostList().indexOf(host);
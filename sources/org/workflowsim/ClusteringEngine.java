@@ -187,18 +187,54 @@ public final class ClusteringEngine extends SimEntity {
      * Adds data stage-in jobs to the job list
      */
     protected void processDatastaging() {
+        /**
+         * The reason why we set the id of this job to be getJobList().size()
+         * is so that the job id is the next available id
+         */
+        processDatastaging(getJobList().size());
+    }
+
+    /**
+     * Adds a data stage-in job to the job list
+     *
+     * @param id the id of the stage-in job
+     */
+    protected void processDatastaging(int id) {
 
         /**
          * All the files of this workflow, it is saved in the workflow engine
          */
         List<FileItem> list = this.engine.getTaskFiles();
+        Job job = createStageInJob(id, new FileIndex(list).getInputFiles());
+
+        /**
+         * add stage-in job
+         */
+        for (Job cJob : getJobList()) {
+            /**
+             * first level jobs
+             */
+            if (cJob.getParentList().isEmpty()) {
+                cJob.addParent(job);
+                job.addChild(cJob);
+            }
+        }
+        getJobList().add(job);
+    }
+
+    /**
+     * Creates a stage-in job
+     *
+     * @param id the job id
+     * @param inputFiles the input files of the workflow
+     * @return the stage-in job
+     */
+    private Job createStageInJob(int id, List<FileItem> inputFiles) {
         /**
          * A bug of cloudsim, you cannot set the length of a cloudlet to be
-         * smaller than 110 otherwise it will fail The reason why we set the id
-         * of this job to be getJobList().size() is so that the job id is the
-         * next available id
+         * smaller than 110 otherwise it will fail
          */
-        Job job = new Job(getJobList().size(), 110);
+        Job job = new Job(id, 110);
 
         /**
          * This is a very simple implementation of stage-in job, in which we Add
@@ -206,14 +242,12 @@ public final class ClusteringEngine extends SimEntity {
          * WorkflowSim will transfers them when this job is executed
          */
         List<FileItem> fileList = new ArrayList<>();
-        for (FileItem file : list) {
+        for (FileItem file : inputFiles) {
             /**
              * To avoid duplicate files
              */
-            if (file.isRealInputFile(list)) {
-                ReplicaCatalog.addFileToStorage(file.getName(), Parameters.SOURCE);
-                fileList.add(file);
-            }
+            ReplicaCatalog.addFileToStorage(file.getName(), Parameters.SOURCE);
+            fileList.add(file);
         }
         job.setFileList(fileList);
         job.setClassType(ClassType.STAGE_IN.value);
@@ -229,20 +263,7 @@ public final class ClusteringEngine extends SimEntity {
          * sub-workflows just use the first scheduler
          */
         job.setUserId(getWorkflowEngine().getSchedulerId(0));
-
-        /**
-         * add stage-in job
-         */
-        for (Job cJob : getJobList()) {
-            /**
-             * first level jobs
-             */
-            if (cJob.getParentList().isEmpty()) {
-                cJob.addParent(job);
-                job.addChild(cJob);
-            }
-        }
-        getJobList().add(job);
+        return job;
     }
 
     /**
@@ -277,6 +298,24 @@ public final class ClusteringEngine extends SimEntity {
                 processDatastaging();
                 sendNow(this.workflowEngineId, WorkflowSimTags.JOB_SUBMIT, getJobList());
                 break;
+            case WorkflowSimTags.WORKFLOW_SUBMIT:
+                processWorkflowSubmit(ev);
+                break;
+            case WorkflowSimTags.ARRIVALS_PENDING:
+                //after the jobs of the workflows submitted before
+                sendNow(this.workflowEngineId, WorkflowSimTags.ARRIVALS_PENDING, ev.getData());
+                break;
+            case WorkflowSimTags.GRAPH_SUBMIT:
+                /**
+                 * A workflow kept as a WorkflowGraph is not clustered, its
+                 * stage-in job is created here and its other jobs by the
+                 * WorkflowEngine once their parents have completed
+                 */
+                WorkflowGraph graph = (WorkflowGraph) ev.getData();
+                Job stageIn = createStageInJob(graph.getStageInId(), graph.createInputFiles());
+                sendNow(this.workflowEngineId, WorkflowSimTags.GRAPH_SUBMIT,
+                        new WorkflowEngine.GraphRun(graph, stageIn));
+                break;
             case CloudSimTags.END_OF_SIMULATION:
                 shutdownEntity();
                 break;
@@ -286,6 +325,30 @@ public final class ClusteringEngine extends SimEntity {
         }
     }
 
+    /**
+     * Clusters the tasks of a single workflow and submits its jobs. Its
+     * stage-in job takes the id after its last task, which WorkflowParser
+     * leaves free, and its tasks and jobs are released once submitted.
+     *
+     * @param ev a SimEvent object whose data is the tasks of the workflow
+     */
+    private void processWorkflowSubmit(SimEvent ev) {
+        //the WorkflowPlanner only sends the task list of a workflow with WORKFLOW_SUBMIT
+        @SuppressWarnings("unchecked")
+        List<Task> list = (List<Task>) ev.getData();
+        int stageInId = 0;
+        for (Task task : list) {
+            stageInId = Math.max(stageInId, task.getCloudletId() + 1);
+        }
+        setTaskList(list);
+        processClustering();
+        processDatastaging(stageInId);
+        sendNow(this.workflowEngineId, WorkflowSimTags.JOB_SUBMIT, getJobList());
+        this.engine = null;
+        setTaskList(new ArrayList<Task>());
+        setJobList(new ArrayList<Job>());
+    }
+
     /**
      * Overrides this method when making a new and different type of Broker.
      * This method is called by {@link } for incoming unknown tags.
@@ -329,7 +392,7 @@ public final class ClusteringEngine extends SimEntity {
      */
     @Override
     public void startEntity() {
-        Log.printLine(Parameters.df.format(CloudSim.clock())+getName() + " is starting...");
+        Log.printLine(Log.formatDecimal(CloudSim.clock())+getName() + " is starting...");
         schedule(getId(), 0, WorkflowSimTags.START_SIMULATION);
     }
 
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.workflowsim.utils.Parameters.FileType;
+import org.workflowsim.utils.ReplicaCatalog;
+
+/**
+ * FileIndex sorts the files of a file list once: the real input files, the
+ * inputs that are not also produced in the list (see
+ * FileItem.isRealInputFile()), the output files and the size of the real
+ * inputs. Both lists keep the order of the file list. The files are also
+ * interned in the ReplicaCatalog of the simulation context the index is built
+ * in, so that their replicas are looked up by id.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class FileIndex {
+
+    /**
+     * The list indexed
+     */
+    private final List<FileItem> fileList;
+    /**
+     * The size of the list when it was indexed
+     */
+    private final int fileCount;
+    /**
+     * The real input files
+     */
+    private final List<FileItem> inputFiles;
+    /**
+     * The output files
+     */
+    private final List<FileItem> outputFiles;
+    /**
+     * The catalog ids of the real input files, in the same order
+     */
+    private final int[] inputFileIds;
+    /**
+     * The catalog ids of the output files, in the same order
+     */
+    private final int[] outputFileIds;
+    /**
+     * The size of the real input files
+     */
+    private final double inputSize;
+
+    /**
+     * Indexes a file list, in O(n)
+     *
+     * @param fileList the file list
+     */
+    public FileIndex(List<FileItem> fileList) {
+        this.fileList = fileList;
+        this.fileCount = fileList.size();
+
+        Set<String> outputNames = new HashSet<>();
+        List<FileItem> outputs = new ArrayList<>();
+        for (FileItem file : fileList) {
+            if (file.getType() == FileType.OUTPUT) {
+                outputNames.add(file.getName());
+                outputs.add(file);
+            }
+        }
+        List<FileItem> inputs = new ArrayList<>();
+        double size = 0.0;
+        for (FileItem file : fileList) {
+            if (file.getType() == FileType.INPUT && !outputNames.contains(file.getName())) {
+                inputs.add(file);
+                size += file.getSize();
+            }
+        }
+        this.inputFiles = Collections.unmodifiableList(inputs);
+        this.outputFiles = Collections.unmodifiableList(outputs);
+        this.inputFileIds = internFiles(inputs);
+        this.outputFileIds = internFiles(outputs);
+        this.inputSize = size;
+    }
+
+    /**
+     * Gets the catalog ids of files
+     */
+    private static int[] internFiles(List<FileItem> files) {
+        int[] ids = new int[files.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ReplicaCatalog.getFileId(files.get(i).getName());
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the input files that have to be staged in, in the order of the
+     * file list
+     *
+     * @return the real input files
+     */
+    public List<FileItem> getInputFiles() {
+        return inputFiles;
+    }
+
+    /**
+     * Gets the output files, in the order of the file list
+     *
+     * @return the output files
+     */
+    public List<FileItem> getOutputFiles() {
+        return outputFiles;
+    }
+
+    /**
+     * Gets the catalog id of a real input file
+     *
+     * @param index the index of the file in getInputFiles()
+     * @return the file id
+     */
+    public int getInputFileId(int index) {
+        return inputFileIds[index];
+    }
+
+    /**
+     * Gets the catalog id of an output file
+     *
+     * @param index the index of the file in getOutputFiles()
+     * @return the file id
+     */
+    public int getOutputFileId(int index) {
+        return outputFileIds[index];
+    }
+
+    /**
+     * Gets the total size of the real input files
+     *
+     * @return the size in bytes
+     */
+    public double getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * Checks whether this index is up to date for a list. Files added to the
+     * list after it was indexed are noticed, other changes are not.
+     *
+     * @param list the list
+     * @return whether the list is the one indexed, with the same size
+     */
+    boolean isIndexOf(List<FileItem> list) {
+        return list == fileList && list.size() == fileCount;
+    }
+}
@@ -71,9 +71,13 @@ public class FileItem {
      * workflows, we have a rule that a file is written once and read many
      * times, thus if a file is an output file it means it is generated within
      * this job and then used by another task within the same job (or other jobs
-     * maybe) This is useful when we perform horizontal clustering     
+     * maybe) This is useful when we perform horizontal clustering
+     *
+     * It scans the list, use FileIndex to sort a whole list.
+     *
      * @param list
      * @return 
+     * @see FileIndex
      */
     public boolean isRealInputFile(List<FileItem> list) {
         if (this.getType() == FileType.INPUT)//input file
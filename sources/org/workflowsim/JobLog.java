@@ -0,0 +1,424 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * JobLog is a results sink that keeps a compact record of each job returned
+ * to the WorkflowEngine in a file, rather than the job itself: its id, the ids
+ * of its tasks, its class type, its status, the datacenter and the VM it ran
+ * on, its start time, finish time, CPU time and cost and its depth. It is
+ * enabled with Parameters.setJobLog(), so that the WorkflowEngine and the
+ * schedulers do not keep the jobs that have run.
+ *
+ * The memory of a simulation only grows with the jobs in flight when the
+ * workflows are streamed or their jobs created lazily (see
+ * Parameters.setLazyJobs()). Otherwise the tasks of all the workflows are
+ * created upfront and stay reachable after their jobs are logged, from the
+ * task list of the WorkflowPlanner and through the parent and child links of
+ * the tasks, so only the job records are saved.
+ *
+ * The records are buffered in columns and written by blocks of BLOCK_SIZE
+ * records, each block starting with its number of records and holding one
+ * column after the other. A JobLog.Reader reads the file back a block at a
+ * time.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public final class JobLog {
+
+    /**
+     * The number of records of a block.
+     */
+    public static final int BLOCK_SIZE = 4096;
+    private static final int MAGIC = 0x57464a4c;
+    private static final int VERSION = 1;
+
+    /**
+     * The file written.
+     */
+    private final File file;
+    private DataOutputStream out;
+    /**
+     * The columns of the block being buffered.
+     */
+    private final Block block;
+    /**
+     * The number of records added.
+     */
+    private long size;
+
+    /**
+     * Creates a job log, replacing the file if it exists
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be created
+     */
+    public JobLog(File file) throws IOException {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        this.block = new Block();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * Gets the file written
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of records added
+     *
+     * @return the number of jobs
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Adds the record of a job that has returned. The job is not referenced
+     * afterwards.
+     *
+     * @param job the job
+     * @throws IOException if a block cannot be written
+     * @throws IllegalStateException if the log is closed
+     */
+    public void add(Job job) throws IOException {
+        if (out == null) {
+            throw new IllegalStateException("The job log " + file + " is closed");
+        }
+        block.add(job);
+        size++;
+        if (block.count == BLOCK_SIZE) {
+            block.write(out);
+        }
+    }
+
+    /**
+     * Writes the records buffered and flushes the file, so that it can be
+     * read while jobs are still added
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void flush() throws IOException {
+        if (out != null) {
+            block.write(out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes the records buffered and closes the file. Closing a closed log
+     * does nothing.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void close() throws IOException {
+        if (out != null) {
+            try {
+                block.write(out);
+            } finally {
+                out.close();
+                out = null;
+            }
+        }
+    }
+
+    /**
+     * The columns of a block of records
+     */
+    private static final class Block {
+
+        private int count;
+        private int[] jobIds = new int[16];
+        private int[] taskCounts = new int[16];
+        private int[] taskIds = new int[16];
+        private int taskIdCount;
+        private byte[] classTypes = new byte[16];
+        private byte[] statuses = new byte[16];
+        private int[] datacenterIds = new int[16];
+        private int[] vmIds = new int[16];
+        private double[] startTimes = new double[16];
+        private double[] finishTimes = new double[16];
+        private double[] cpuTimes = new double[16];
+        private double[] costs = new double[16];
+        private int[] depths = new int[16];
+
+        /**
+         * Makes room for a number of records
+         *
+         * @param length the number of records
+         */
+        private void ensureCapacity(int length) {
+            if (jobIds.length < length) {
+                jobIds = Arrays.copyOf(jobIds, length);
+                taskCounts = Arrays.copyOf(taskCounts, length);
+                classTypes = Arrays.copyOf(classTypes, length);
+                statuses = Arrays.copyOf(statuses, length);
+                datacenterIds = Arrays.copyOf(datacenterIds, length);
+                vmIds = Arrays.copyOf(vmIds, length);
+                startTimes = Arrays.copyOf(startTimes, length);
+                finishTimes = Arrays.copyOf(finishTimes, length);
+                cpuTimes = Arrays.copyOf(cpuTimes, length);
+                costs = Arrays.copyOf(costs, length);
+                depths = Arrays.copyOf(depths, length);
+            }
+        }
+
+        private void add(Job job) {
+            if (count == jobIds.length) {
+                ensureCapacity(Math.min(count * 2, BLOCK_SIZE));
+            }
+            int i = count++;
+            jobIds[i] = job.getCloudletId();
+            taskCounts[i] = job.getTaskList().size();
+            if (taskIds.length < taskIdCount + taskCounts[i]) {
+                taskIds = Arrays.copyOf(taskIds, Math.max(taskIds.length * 2, taskIdCount + taskCounts[i]));
+            }
+            for (Task task : job.getTaskList()) {
+                taskIds[taskIdCount++] = task.getCloudletId();
+            }
+            classTypes[i] = (byte) job.getClassType();
+            statuses[i] = (byte) job.getCloudletStatus();
+            datacenterIds[i] = job.getResourceId();
+            vmIds[i] = job.getVmId();
+            startTimes[i] = job.getExecStartTime();
+            finishTimes[i] = job.getFinishTime();
+            cpuTimes[i] = job.getActualCPUTime();
+            costs[i] = job.getProcessingCost();
+            depths[i] = job.getDepth();
+        }
+
+        /**
+         * Writes the records buffered as a block, if any, and empties the
+         * block
+         */
+        private void write(DataOutputStream out) throws IOException {
+            if (count == 0) {
+                return;
+            }
+            out.writeInt(count);
+            out.writeInt(taskIdCount);
+            writeInts(out, jobIds, count);
+            writeInts(out, taskCounts, count);
+            writeInts(out, taskIds, taskIdCount);
+            out.write(classTypes, 0, count);
+            out.write(statuses, 0, count);
+            writeInts(out, datacenterIds, count);
+            writeInts(out, vmIds, count);
+            writeDoubles(out, startTimes, count);
+            writeDoubles(out, finishTimes, count);
+            writeDoubles(out, cpuTimes, count);
+            writeDoubles(out, costs, count);
+            writeInts(out, depths, count);
+            count = 0;
+            taskIdCount = 0;
+        }
+
+        /**
+         * Reads the next block of a file
+         *
+         * @return false if the file has no block left
+         */
+        private boolean read(DataInputStream in) throws IOException {
+            int blockCount;
+            try {
+                blockCount = in.readInt();
+            } catch (EOFException eof) {
+                count = 0;
+                return false;
+            }
+            int blockTaskIdCount = in.readInt();
+            ensureCapacity(blockCount);
+            count = blockCount;
+            taskIdCount = blockTaskIdCount;
+            if (taskIds.length < taskIdCount) {
+                taskIds = new int[taskIdCount];
+            }
+            readInts(in, jobIds, count);
+            readInts(in, taskCounts, count);
+            readInts(in, taskIds, taskIdCount);
+            in.readFully(classTypes, 0, count);
+            in.readFully(statuses, 0, count);
+            readInts(in, datacenterIds, count);
+            readInts(in, vmIds, count);
+            readDoubles(in, startTimes, count);
+            readDoubles(in, finishTimes, count);
+            readDoubles(in, cpuTimes, count);
+            readDoubles(in, costs, count);
+            readInts(in, depths, count);
+            return true;
+        }
+
+        private static void writeInts(DataOutputStream out, int[] column, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                out.writeInt(column[i]);
+            }
+        }
+
+        private static void writeDoubles(DataOutputStream out, double[] column, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                out.writeDouble(column[i]);
+            }
+        }
+
+        private static void readInts(DataInputStream in, int[] column, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                column[i] = in.readInt();
+            }
+        }
+
+        private static void readDoubles(DataInputStream in, double[] column, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                column[i] = in.readDouble();
+            }
+        }
+    }
+
+    /**
+     * Reader reads the records of a job log a block at a time. The records
+     * of the current block are accessed by their index in the block, from 0
+     * to getBlockSize() - 1.
+     */
+    public static final class Reader implements AutoCloseable {
+
+        private final DataInputStream in;
+        private final Block block;
+        /**
+         * The first task id of each record of the current block.
+         */
+        private int[] taskStarts;
+
+        /**
+         * Opens a job log
+         *
+         * @param file the file
+         * @throws IOException if the file cannot be read or is not a job log
+         */
+        public Reader(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            this.block = new Block();
+            this.taskStarts = new int[1];
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                in.close();
+                throw new IOException(file + " is not a job log");
+            }
+        }
+
+        /**
+         * Reads the next block
+         *
+         * @return false if there is no block left
+         * @throws IOException if the file cannot be read
+         */
+        public boolean nextBlock() throws IOException {
+            if (!block.read(in)) {
+                return false;
+            }
+            if (taskStarts.length < block.count + 1) {
+                taskStarts = new int[block.count + 1];
+            }
+            for (int i = 0; i < block.count; i++) {
+                taskStarts[i + 1] = taskStarts[i] + block.taskCounts[i];
+            }
+            return true;
+        }
+
+        /**
+         * Gets the number of records of the current block
+         *
+         * @return the number of records
+         */
+        public int getBlockSize() {
+            return block.count;
+        }
+
+        public int getJobId(int i) {
+            return block.jobIds[i];
+        }
+
+        public int getTaskCount(int i) {
+            return block.taskCounts[i];
+        }
+
+        /**
+         * Gets the id of a task of a job
+         *
+         * @param i the record
+         * @param j the index of the task, from 0 to getTaskCount(i) - 1
+         * @return the task id
+         */
+        public int getTaskId(int i, int j) {
+            return block.taskIds[taskStarts[i] + j];
+        }
+
+        public int getClassType(int i) {
+            return block.classTypes[i];
+        }
+
+        public int getStatus(int i) {
+            return block.statuses[i];
+        }
+
+        public int getDatacenterId(int i) {
+            return block.datacenterIds[i];
+        }
+
+        public int getVmId(int i) {
+            return block.vmIds[i];
+        }
+
+        public double getStartTime(int i) {
+            return block.startTimes[i];
+        }
+
+        public double getFinishTime(int i) {
+            return block.finishTimes[i];
+        }
+
+        public double getCpuTime(int i) {
+            return block.cpuTimes[i];
+        }
+
+        public double getCost(int i) {
+            return block.costs[i];
+        }
+
+        public int getDepth(int i) {
+            return block.depths[i];
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -46,6 +46,10 @@ public class Task extends Cloudlet {
      * The list of all files (input data and ouput data)
      */
     private List<FileItem> fileList;
+    /**
+     * The index of the file list, built when first needed
+     */
+    private FileIndex fileIndex;
     /*
      * The priority used for research. Not used in current version. 
      */
@@ -259,6 +263,20 @@ public class Task extends Cloudlet {
         this.fileList = list;
     }
 
+    /**
+     * Gets the index of the file list: its real input files, output files and
+     * input size. It is built once and rebuilt if files were added or the list
+     * was replaced since.
+     *
+     * @return the file index
+     */
+    public FileIndex getFileIndex() {
+        if (fileIndex == null || !fileIndex.isIndexOf(fileList)) {
+            fileIndex = new FileIndex(fileList);
+        }
+        return fileIndex;
+    }
+
     /**
      * Sets the impact factor
      *
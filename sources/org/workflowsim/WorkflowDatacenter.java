@@ -15,8 +15,12 @@
  */
 package org.workflowsim;
 
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.CloudletScheduler;
 import org.cloudbus.cloudsim.Consts;
@@ -33,12 +37,16 @@ import org.cloudbus.cloudsim.core.SimEvent;
 import org.workflowsim.utils.ReplicaCatalog;
 import org.workflowsim.utils.Parameters;
 import org.workflowsim.utils.Parameters.ClassType;
-import org.workflowsim.utils.Parameters.FileType;
 
 /**
  * WorkflowDatacenter extends Datacenter so as we can use CondorVM and other
  * components
  *
+ * The datacenter only updates the VMs that have cloudlets and only looks for
+ * finished cloudlets in the VMs updated, instead of visiting every VM of every
+ * host at each event. An idle VM is brought up to the last update when a
+ * cloudlet is submitted to it, so that the cloudlets finish at the same times.
+ *
  * @author Weiwei Chen
  * @since WorkflowSim Toolkit 1.0
  * @date Apr 9, 2013
@@ -53,6 +61,140 @@ public class WorkflowDatacenter extends Datacenter {
         super(name, characteristics, vmAllocationPolicy, storageList, schedulingInterval);
     }
 
+    /**
+     * The position of each VM, the index of its host in the host list then
+     * the order of its creation. VMs are visited in this order, the order of
+     * the host list and of the VM list of each host.
+     */
+    private final Map<Vm, Long> vmOrder = new HashMap<>();
+
+    /**
+     * The number of VMs created in this datacenter.
+     */
+    private int vmCount = 0;
+
+    private final Comparator<Vm> vmComparator = new Comparator<Vm>() {
+        @Override
+        public int compare(Vm vm1, Vm vm2) {
+            return Long.compare(vmOrder.get(vm1), vmOrder.get(vm2));
+        }
+    };
+
+    /**
+     * The VMs that have cloudlets, updated at each processing.
+     */
+    private final TreeSet<Vm> busyVms = new TreeSet<>(vmComparator);
+
+    /**
+     * The VMs that may have finished cloudlets not yet returned.
+     */
+    private final TreeSet<Vm> finishedVms = new TreeSet<>(vmComparator);
+
+    @Override
+    protected void processVmCreate(SimEvent ev, boolean ack) {
+        super.processVmCreate(ev, ack);
+        Vm vm = (Vm) ev.getData();
+        if (vm.getHost() != null && !vmOrder.containsKey(vm)) {
+            addVm(vm);
+        }
+    }
+
+    @Override
+    protected void processVmDestroy(SimEvent ev, boolean ack) {
+        removeVm((Vm) ev.getData());
+        super.processVmDestroy(ev, ack);
+    }
+
+    @Override
+    protected void processVmMigrate(SimEvent ev, boolean ack) {
+        Object tmp = ev.getData();
+        if (tmp instanceof Map<?, ?>) {
+            Vm vm = (Vm) ((Map<?, ?>) tmp).get("vm");
+            boolean busy = busyVms.contains(vm);
+            boolean finished = finishedVms.contains(vm);
+            removeVm(vm);
+            super.processVmMigrate(ev, ack);
+            addVm(vm);
+            if (busy) {
+                busyVms.add(vm);
+            }
+            if (finished) {
+                finishedVms.add(vm);
+            }
+        } else {
+            super.processVmMigrate(ev, ack);
+        }
+    }
+
+    @Override
+    protected void processCloudletMove(int[] receivedData, int type) {
+        // the destination VM of a move inside this datacenter
+        if (receivedData[4] == getId()) {
+            activate(receivedData[3], receivedData[1]);
+        }
+        super.processCloudletMove(receivedData, type);
+    }
+
+    @Override
+    protected void processCloudletResume(int cloudletId, int userId, int vmId, boolean ack) {
+        activate(vmId, userId);
+        super.processCloudletResume(cloudletId, userId, vmId, ack);
+    }
+
+    /**
+     * Gives a position to a VM placed on a host of this datacenter.
+     *
+     * @param vm the vm
+     */
+    private void addVm(Vm vm) {
+        int hostIndex = getVmAllocationPolicy().getHostList().indexOf(vm.getHost());
+        vmOrder.put(vm, ((long) hostIndex << 32) | vmCount++);
+    }
+
+    /**
+     * Forgets a VM leaving its host.
+     *
+     * @param vm the vm
+     */
+    private void removeVm(Vm vm) {
+        if (vmOrder.containsKey(vm)) {
+            busyVms.remove(vm);
+            finishedVms.remove(vm);
+            vmOrder.remove(vm);
+        }
+    }
+
+    /**
+     * Activates a VM by id, if it exists.
+     *
+     * @param vmId the vm id
+     * @param userId the user id
+     */
+    private void activate(int vmId, int userId) {
+        Vm vm = getVmAllocationPolicy().getVm(vmId, userId);
+        if (vm != null) {
+            activate(vm);
+        }
+    }
+
+    /**
+     * Marks a VM as having cloudlets, before a cloudlet is given to it. An
+     * idle VM has not been updated since it became idle, it is updated as
+     * if it had been at the last processing.
+     *
+     * @param vm the vm
+     */
+    private void activate(Vm vm) {
+        if (!vmOrder.containsKey(vm)) {
+            addVm(vm);
+        }
+        if (busyVms.add(vm)
+                && vm.getCloudletScheduler().getPreviousTime() < getLastProcessTime()) {
+            vm.updateVmProcessing(getLastProcessTime(),
+                    vm.getHost().getVmScheduler().getAllocatedMipsForVm(vm));
+        }
+    }
+
     /**
      * Processes a Cloudlet submission. The cloudlet is actually a job which can
      * be cast to org.workflowsim.Job
@@ -74,10 +216,10 @@ public class WorkflowDatacenter extends Datacenter {
 
             if (job.isFinished()) {
                 String name = CloudSim.getEntityName(job.getUserId());
-                Log.printLine(getName() + ": Warning - Cloudlet #" + job.getCloudletId() + " owned by " + name
-                        + " is already completed/finished.");
-                Log.printLine("Therefore, it is not being executed again");
-                Log.printLine();
+                Log.printLine(Log.Level.WARNING, "{}: Warning - Cloudlet #{} owned by {} is already completed/finished.",
+                        getName(), job.getCloudletId(), name);
+                Log.printLine(Log.Level.WARNING, "Therefore, it is not being executed again");
+                Log.printLine(Log.Level.WARNING, "");
 
                 // NOTE: If a Cloudlet has finished, then it won't be processed.
                 // So, if ack is required, this method sends back a result.
@@ -102,8 +244,7 @@ public class WorkflowDatacenter extends Datacenter {
 
             int userId = job.getUserId();
             int vmId = job.getVmId();
-            Host host = getVmAllocationPolicy().getHost(vmId, userId);
-            CondorVM vm = (CondorVM) host.getVm(vmId, userId);
+            CondorVM vm = (CondorVM) getVmAllocationPolicy().getVm(vmId, userId);
 
             switch (Parameters.getCostModel()) {
                 case DATACENTER:
@@ -133,6 +274,7 @@ public class WorkflowDatacenter extends Datacenter {
                 fileTransferTime = processDataStageInForComputeJob(job.getFileList(), job);
             }
 
+            activate(vm);
             CloudletScheduler scheduler = vm.getCloudletScheduler();
             double estimatedFinishTime = scheduler.cloudletSubmit(job, fileTransferTime);
             updateTaskExecTime(job, vm);
@@ -141,7 +283,7 @@ public class WorkflowDatacenter extends Datacenter {
             if (estimatedFinishTime > 0.0 && !Double.isInfinite(estimatedFinishTime)) {
                 send(getId(), estimatedFinishTime, CloudSimTags.VM_DATACENTER_EVENT);
             } else {
-                Log.printLine("Warning: You schedule cloudlet to a busy VM");
+                Log.printLine(Log.Level.WARNING, "Warning: You schedule cloudlet to a busy VM");
             }
 
             if (ack) {
@@ -154,9 +296,9 @@ public class WorkflowDatacenter extends Datacenter {
                 sendNow(job.getUserId(), tag, data);
             }
         } catch (ClassCastException c) {
-            Log.printLine(getName() + ".processCloudletSubmit(): " + "ClassCastException error.");
+            Log.printLine(Log.Level.ERROR, "{}.processCloudletSubmit(): ClassCastException error.", getName());
         } catch (Exception e) {
-            Log.printLine(getName() + ".processCloudletSubmit(): " + "Exception error.");
+            Log.printLine(Log.Level.ERROR, "{}.processCloudletSubmit(): Exception error.", getName());
             e.printStackTrace();
         }
         checkCloudletCompletion();
@@ -227,79 +369,81 @@ public class WorkflowDatacenter extends Datacenter {
      */
     protected double processDataStageInForComputeJob(List<FileItem> requiredFiles, Job job) throws Exception {
         double time = 0.0;
-        for (FileItem file : requiredFiles) {
-            //The input file is not an output File 
-            if (file.isRealInputFile(requiredFiles)) {
-                double maxBwth = 0.0;
-                List siteList = ReplicaCatalog.getStorageList(file.getName());
-                if (siteList.isEmpty()) {
-                    throw new Exception(file.getName() + " does not exist");
-                }
-                switch (ReplicaCatalog.getFileSystem()) {
-                    case SHARED:
-                        //stage-in job
-                        /**
-                         * Picks up the site that is closest
-                         */
-                        double maxRate = Double.MIN_VALUE;
-                        for (Storage storage : getStorageList()) {
-                            double rate = storage.getMaxTransferRate();
-                            if (rate > maxRate) {
-                                maxRate = rate;
-                            }
+        FileIndex index = requiredFiles == job.getFileList() ? job.getFileIndex() : new FileIndex(requiredFiles);
+        //The input file is not an output File 
+        List<FileItem> inputFiles = index.getInputFiles();
+        for (int f = 0; f < inputFiles.size(); f++) {
+            FileItem file = inputFiles.get(f);
+            double maxBwth = 0.0;
+            int fileId = index.getInputFileId(f);
+            int replicaCount = ReplicaCatalog.getReplicaCount(fileId);
+            if (replicaCount == 0) {
+                throw new Exception(file.getName() + " does not exist");
+            }
+            switch (ReplicaCatalog.getFileSystem()) {
+                case SHARED:
+                    //stage-in job
+                    /**
+                     * Picks up the site that is closest
+                     */
+                    double maxRate = Double.MIN_VALUE;
+                    for (Storage storage : getStorageList()) {
+                        double rate = storage.getMaxTransferRate();
+                        if (rate > maxRate) {
+                            maxRate = rate;
                         }
-                        //Storage storage = getStorageList().get(0);
-                        time += file.getSize() / (double) Consts.MILLION / maxRate;
-                        break;
-                    case LOCAL:
-                        int vmId = job.getVmId();
-                        int userId = job.getUserId();
-                        Host host = getVmAllocationPolicy().getHost(vmId, userId);
-                        Vm vm = host.getVm(vmId, userId);
-
-                        boolean requiredFileStagein = true;
-                        for (Iterator it = siteList.iterator(); it.hasNext();) {
+                    }
+                    //Storage storage = getStorageList().get(0);
+                    time += file.getSize() / (double) Consts.MILLION / maxRate;
+                    break;
+                case LOCAL:
+                    int vmId = job.getVmId();
+                    int userId = job.getUserId();
+                    Vm vm = getVmAllocationPolicy().getVm(vmId, userId);
+                    int vmSite = ReplicaCatalog.getVmSiteId(vmId);
+
+                    /**
+                     * If the file is already in the local vm there is no
+                     * need to transfer
+                     */
+                    boolean requiredFileStagein = !ReplicaCatalog.hasReplica(fileId, vmSite);
+                    if (requiredFileStagein) {
+                        int localSite = ReplicaCatalog.getSiteId(this.getName());
+                        for (int i = 0; i < replicaCount; i++) {
                             //site is where one replica of this data is located at
-                            String site = (String) it.next();
-                            if (site.equals(this.getName())) {
+                            int site = ReplicaCatalog.getReplicaSite(fileId, i);
+                            if (site == localSite) {
                                 continue;
                             }
-                            /**
-                             * This file is already in the local vm and thus it
-                             * is no need to transfer
-                             */
-                            if (site.equals(Integer.toString(vmId))) {
-                                requiredFileStagein = false;
-                                break;
-                            }
                             double bwth;
-                            if (site.equals(Parameters.SOURCE)) {
-                                //transfers from the source to the VM is limited to the VM bw only
+                            int siteVm = ReplicaCatalog.getSiteVm(site);
+                            if (siteVm < 0) {
+                                //transfers from the source (or another storage) to the VM is limited to the VM bw only
                                 bwth = vm.getBw();
                                 //bwth = dcStorage.getBaseBandwidth();
                             } else {
                                 //transfers between two VMs is limited to both VMs
-                                bwth = Math.min(vm.getBw(), getVmAllocationPolicy().getHost(Integer.parseInt(site), userId).getVm(Integer.parseInt(site), userId).getBw());
-                                //bwth = dcStorage.getBandwidth(Integer.parseInt(site), vmId);
+                                bwth = Math.min(vm.getBw(), getVmAllocationPolicy().getVm(siteVm, userId).getBw());
+                                //bwth = dcStorage.getBandwidth(siteVm, vmId);
                             }
                             if (bwth > maxBwth) {
                                 maxBwth = bwth;
                             }
                         }
-                        if (requiredFileStagein && maxBwth > 0.0) {
-                            time += file.getSize() / (double) Consts.MILLION / maxBwth;
-                        }
+                    }
+                    if (requiredFileStagein && maxBwth > 0.0) {
+                        time += file.getSize() / (double) Consts.MILLION / maxBwth;
+                    }
 
-                        /**
-                         * For the case when storage is too small it is not
-                         * handled here
-                         */
-                        //We should add but since CondorVm has a small capability it often fails
-                        //We currently don't use this storage to do anything meaningful. It is left for future. 
-                        //condorVm.addLocalFile(file);
-                        ReplicaCatalog.addFileToStorage(file.getName(), Integer.toString(vmId));
-                        break;
-                }
+                    /**
+                     * For the case when storage is too small it is not
+                     * handled here
+                     */
+                    //We should add but since CondorVm has a small capability it often fails
+                    //We currently don't use this storage to do anything meaningful. It is left for future. 
+                    //condorVm.addLocalFile(file);
+                    ReplicaCatalog.addFileToVm(fileId, vmId);
+                    break;
             }
         }
         return time;
@@ -312,15 +456,24 @@ public class WorkflowDatacenter extends Datacenter {
         // simulation step is skipped and schedulers are not properly initialized
         //this is a bug of CloudSim if the runtime is smaller than 0.1 (now is 0.01) it doesn't work at all
         if (CloudSim.clock() < 0.111 || CloudSim.clock() > getLastProcessTime() + 0.01) {
-            List<? extends Host> list = getVmAllocationPolicy().getHostList();
             double smallerTime = Double.MAX_VALUE;
-            // for each host...
-            for (Host host : list) {
-                // inform VMs to update processing
-                double time = host.updateVmsProcessing(CloudSim.clock());
+            // for each vm with cloudlets...
+            for (Iterator<Vm> it = busyVms.iterator(); it.hasNext();) {
+                Vm vm = it.next();
+                // inform the VM to update processing
+                double time = vm.updateVmProcessing(CloudSim.clock(),
+                        vm.getHost().getVmScheduler().getAllocatedMipsForVm(vm));
+                if (vm.getCloudletScheduler().isFinishedCloudlets()) {
+                    finishedVms.add(vm);
+                }
                 // what time do we expect that the next cloudlet will finish?
-                if (time < smallerTime) {
-                    smallerTime = time;
+                if (time > 0.0) {
+                    if (time < smallerTime) {
+                        smallerTime = time;
+                    }
+                } else {
+                    // idle until a cloudlet is submitted again
+                    it.remove();
                 }
             }
             // gurantees a minimal interval before scheduling the event
@@ -343,15 +496,13 @@ public class WorkflowDatacenter extends Datacenter {
      */
     @Override
     protected void checkCloudletCompletion() {
-        List<? extends Host> list = getVmAllocationPolicy().getHostList();
-        for (Host host : list) {
-            for (Vm vm : host.getVmList()) {
-                while (vm.getCloudletScheduler().isFinishedCloudlets()) {
-                    Cloudlet cl = vm.getCloudletScheduler().getNextFinishedCloudlet();
-                    if (cl != null) {
-                        sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
-                        register(cl);
-                    }
+        while (!finishedVms.isEmpty()) {
+            Vm vm = finishedVms.pollFirst();
+            while (vm.getCloudletScheduler().isFinishedCloudlets()) {
+                Cloudlet cl = vm.getCloudletScheduler().getNextFinishedCloudlet();
+                if (cl != null) {
+                    sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
+                    register(cl);
                 }
             }
         }
@@ -366,29 +517,26 @@ public class WorkflowDatacenter extends Datacenter {
 
     private void register(Cloudlet cl) {
         Task tl = (Task) cl;
-        List<FileItem> fList = tl.getFileList();
-        for (FileItem file : fList) {
-            if (file.getType() == FileType.OUTPUT)//output file
-            {
-                switch (ReplicaCatalog.getFileSystem()) {
-                    case SHARED:
-                        ReplicaCatalog.addFileToStorage(file.getName(), this.getName());
-                        break;
-                    case LOCAL:
-                        int vmId = cl.getVmId();
-                        int userId = cl.getUserId();
-                        Host host = getVmAllocationPolicy().getHost(vmId, userId);
-                        /**
-                         * Left here for future work
-                         */
-                        CondorVM vm = (CondorVM) host.getVm(vmId, userId);
-                        ReplicaCatalog.addFileToStorage(file.getName(), Integer.toString(vmId));
-                        break;
-                }
+        FileIndex index = tl.getFileIndex();
+        for (int f = 0; f < index.getOutputFiles().size(); f++) {
+            int fileId = index.getOutputFileId(f);
+            switch (ReplicaCatalog.getFileSystem()) {
+                case SHARED:
+                    ReplicaCatalog.addFileToStorage(fileId, this.getName());
+                    break;
+                case LOCAL:
+                    int vmId = cl.getVmId();
+                    int userId = cl.getUserId();
+                    /**
+                     * Left here for future work
+                     */
+                    CondorVM vm = (CondorVM) getVmAllocationPolicy().getVm(vmId, userId);
+                    ReplicaCatalog.addFileToVm(fileId, vmId);
+                    break;
             }
         }
     }
     public void shutdownEntity() {
-        Log.printLine(Parameters.df.format(CloudSim.clock())+getName() + " is shutting down...");
+        Log.printLine(Log.formatDecimal(CloudSim.clock())+getName() + " is shutting down...");
     }
 }
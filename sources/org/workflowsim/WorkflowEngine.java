@@ -15,11 +15,16 @@
  */
 package org.workflowsim;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.Vm;
@@ -57,6 +62,68 @@ public final class WorkflowEngine extends SimEntity {
      * The job submitted.
      */
     protected int jobsSubmitted;
+    /**
+     * The number of jobs ever submitted, the size of the job submitted list
+     * when the jobs are kept in memory.
+     */
+    private int jobsSubmittedTotal;
+    /**
+     * Whether more workflows are going to arrive, the simulation does not end
+     * before their jobs have been added. It is set by ARRIVALS_PENDING
+     * events, which follow the jobs of the workflows submitted before them.
+     */
+    private boolean arrivalsPending;
+    /**
+     * Whether the schedulers have created their VMs and asked for jobs.
+     */
+    private boolean vmsReady;
+    /**
+     * The log the jobs returned are written to if Parameters.getJobLog() is
+     * set, null until the first job returns.
+     */
+    private JobLog jobLog;
+    /**
+     * Whether the job log could not be written, the jobs returned are then
+     * kept in memory.
+     */
+    private boolean jobLogFailed;
+    /**
+     * The ids of the jobs received so far.
+     */
+    private final Set<Integer> jobsReceivedIds;
+    /**
+     * The number of parents that have not returned yet of each job of the
+     * job list that is waiting for some.
+     */
+    private final Map<Job, Integer> remainingParents;
+    /**
+     * The jobs of the job list whose parents have all returned, by their
+     * position in the job list.
+     */
+    private final TreeMap<Long, Job> readyJobs;
+    /**
+     * The jobs added by id, until a job with their id returns. A job is a
+     * parent that has returned as soon as a job with its id has, so they
+     * release their children together.
+     */
+    private final Map<Integer, List<Job>> jobsById;
+    /**
+     * The position of each job in the job list, used to release ready jobs
+     * in the order they have been added.
+     */
+    private final Map<Job, Long> jobsListOrder;
+    private long jobsListCounter;
+    /**
+     * The number of jobs still in the job list that have been submitted or
+     * have returned. They are removed once they make up half of the list, or
+     * when the list is read, so that releasing a job does not copy the list.
+     */
+    private int jobsListStale;
+    /**
+     * The graph node run by each job created from a WorkflowGraph that has
+     * not returned yet.
+     */
+    private final Map<Job, GraphNode> graphNodes;
     protected List<? extends Vm> vmList;
     /**
      * The associated scheduler id*
@@ -85,6 +152,13 @@ public final class WorkflowEngine extends SimEntity {
         setJobsReceivedList(new ArrayList<Job>());
 
         jobsSubmitted = 0;
+        jobsReceivedIds = new HashSet<>();
+        jobsListOrder = new HashMap<>();
+        jobsListCounter = 0;
+        remainingParents = new HashMap<>();
+        readyJobs = new TreeMap<>();
+        jobsById = new HashMap<>();
+        graphNodes = new HashMap<>();
 
         setSchedulers(new ArrayList<>());
         setSchedulerIds(new ArrayList<>());
@@ -133,7 +207,42 @@ public final class WorkflowEngine extends SimEntity {
      * @param list the list
      */
     public void submitCloudletList(List<? extends Cloudlet> list) {
+        addJobs(list);
+    }
+
+    /**
+     * Appends jobs to the job list. The parents of each job that have not
+     * returned yet are counted once, a job without any is ready.
+     *
+     * @param list the jobs
+     */
+    private void addJobs(List<? extends Cloudlet> list) {
+        compactJobsList(false);
         getJobsList().addAll(list);
+        for (Cloudlet cloudlet : list) {
+            Job job = (Job) cloudlet;
+            long order = jobsListCounter++;
+            jobsListOrder.put(job, order);
+            if (!jobsReceivedIds.contains(job.getCloudletId())) {
+                List<Job> jobs = jobsById.get(job.getCloudletId());
+                if (jobs == null) {
+                    jobs = new ArrayList<>(1);
+                    jobsById.put(job.getCloudletId(), jobs);
+                }
+                jobs.add(job);
+            }
+            int count = 0;
+            for (Object parent : job.getParentList()) {
+                if (!jobsReceivedIds.contains(((Task) parent).getCloudletId())) {
+                    count++;
+                }
+            }
+            if (count == 0) {
+                readyJobs.put(order, job);
+            } else {
+                remainingParents.put(job, count);
+            }
+        }
     }
 
     /**
@@ -150,6 +259,7 @@ public final class WorkflowEngine extends SimEntity {
                 break;
             //this call is from workflow scheduler when all vms are created
             case CloudSimTags.CLOUDLET_SUBMIT:
+                vmsReady = true;
                 submitJobs();
                 break;
             case CloudSimTags.CLOUDLET_RETURN:
@@ -161,6 +271,12 @@ public final class WorkflowEngine extends SimEntity {
             case WorkflowSimTags.JOB_SUBMIT:
                 processJobSubmit(ev);
                 break;
+            case WorkflowSimTags.GRAPH_SUBMIT:
+                processGraphSubmit(ev);
+                break;
+            case WorkflowSimTags.ARRIVALS_PENDING:
+                processArrivalsPending(ev);
+                break;
             default:
                 processOtherEvent(ev);
                 break;
@@ -204,7 +320,91 @@ public final class WorkflowEngine extends SimEntity {
      */
     protected void processJobSubmit(SimEvent ev) {
         List<? extends Cloudlet> list = (List) ev.getData();
-        getJobsList().addAll(list);
+        addJobs(list);
+        submitArrivedJobs();
+    }
+
+    /**
+     * Submits the jobs of a workflow that arrives while no job is running,
+     * since no job return is going to submit them
+     */
+    private void submitArrivedJobs() {
+        if (vmsReady && jobsSubmitted == 0) {
+            sendNow(this.getId(), CloudSimTags.CLOUDLET_SUBMIT, null);
+        }
+    }
+
+    /**
+     * Process the submission of a WorkflowGraph. Only its stage-in job is
+     * added, the jobs of its nodes are created once their parents have
+     * completed.
+     *
+     * @param ev a SimEvent object
+     */
+    protected void processGraphSubmit(SimEvent ev) {
+        GraphRun run = (GraphRun) ev.getData();
+        int stageIn = run.graph.size();
+        run.pending[stageIn] = 1;
+        graphNodes.put(run.stageIn, new GraphNode(run, stageIn));
+        List<Job> list = new ArrayList<>();
+        list.add(run.stageIn);
+        addJobs(list);
+        submitArrivedJobs();
+    }
+
+    /**
+     * Completes the graph node of a job returned once all its jobs have
+     * returned, and adds the jobs of the children that have no parent left.
+     *
+     * @param job the job returned
+     * @param retryJobs the jobs retrying a failed job, run for the same node
+     */
+    private void processGraphJobReturn(Job job, List<Job> retryJobs) {
+        GraphNode graphNode = graphNodes.remove(job);
+        if (graphNode == null) {
+            return;
+        }
+        GraphRun run = graphNode.run;
+        int node = graphNode.node;
+        for (Job retryJob : retryJobs) {
+            graphNodes.put(retryJob, graphNode);
+            run.pending[node]++;
+        }
+        if (--run.pending[node] > 0) {
+            return;
+        }
+        WorkflowGraph graph = run.graph;
+        List<Job> released = new ArrayList<>();
+        if (node == graph.size()) {
+            //the stage-in job releases the roots
+            for (int i = 0; i < graph.size(); i++) {
+                if (run.waiting[i] == 0) {
+                    released.add(createGraphJob(run, i));
+                }
+            }
+        } else {
+            for (int i = 0; i < graph.getChildCount(node); i++) {
+                int child = graph.getChild(node, i);
+                if (--run.waiting[child] == 0) {
+                    released.add(createGraphJob(run, child));
+                }
+            }
+        }
+        addJobs(released);
+    }
+
+    /**
+     * Creates the job of a graph node whose parents have all completed
+     *
+     * @param run the graph run
+     * @param node the node
+     * @return the job
+     */
+    private Job createGraphJob(GraphRun run, int node) {
+        Job job = run.graph.createJob(node);
+        run.pending[node] = 1;
+        graphNodes.put(job, new GraphNode(run, node));
+        return job;
     }
 
     /**
@@ -218,23 +418,137 @@ public final class WorkflowEngine extends SimEntity {
 
         Job job = (Job) ev.getData();
 
+        List<Job> retryJobs = Collections.emptyList();
         if (job.getCloudletStatus() == Cloudlet.FAILED) {
             // Reclusteringengine will add retry job to jobList
-            int newId = getJobsList().size() + getJobsSubmittedList().size();
-            getJobsList().addAll(ReclusteringEngine.process(job, newId));
+            List<Task> children = job.getChildList();
+            int[] parentCounts = new int[children.size()];
+            for (int i = 0; i < parentCounts.length; i++) {
+                parentCounts[i] = children.get(i).getParentList().size();
+            }
+            int newId = jobsListOrder.size() + jobsSubmittedTotal;
+            retryJobs = ReclusteringEngine.process(job, newId);
+            addJobs(retryJobs);
+            //the retry jobs become parents of the children of the failed job
+            for (int i = 0; i < parentCounts.length; i++) {
+                Task child = children.get(i);
+                Integer count = remainingParents.get(child);
+                if (count == null) {
+                    continue;
+                }
+                List<Task> parents = child.getParentList();
+                for (int j = parentCounts[i]; j < parents.size(); j++) {
+                    if (!jobsReceivedIds.contains(parents.get(j).getCloudletId())) {
+                        count++;
+                    }
+                }
+                remainingParents.put((Job) child, count);
+            }
         }
-        getJobsReceivedList().add(job);
+        processGraphJobReturn(job, retryJobs);
+        jobsReceivedIds.add(job.getCloudletId());
         jobsSubmitted--;
-        getJobsList().remove(job);
-        if (getJobsList().isEmpty() && jobsSubmitted == 0) {
+        removeFromJobsList(job);
+        addReceivedJob(job);
+        if (!finishIfCompleted()) {
+            sendNow(this.getId(), CloudSimTags.CLOUDLET_SUBMIT, null);
+        }
+    }
+
+    /**
+     * Process the end of the arrivals of a stream of workflows. The event
+     * follows the jobs of the last workflow, so they have all been added.
+     *
+     * @param ev a SimEvent object whose data is whether more workflows are
+     * going to arrive
+     */
+    protected void processArrivalsPending(SimEvent ev) {
+        arrivalsPending = (Boolean) ev.getData();
+        finishIfCompleted();
+    }
+
+    /**
+     * Tells the schedulers that the simulation has ended if all the jobs have
+     * completed and no workflow is going to arrive
+     *
+     * @return whether the simulation has ended
+     */
+    private boolean finishIfCompleted() {
+        if (jobsListOrder.isEmpty() && jobsSubmitted == 0 && !arrivalsPending) {
             //send msg to all the schedulers
-            Log.printLine(Parameters.df.format(CloudSim.clock())+"all jobs has completed");
+            Log.printLine(Log.formatDecimal(CloudSim.clock())+"all jobs has completed");
             for (int i = 0; i < getSchedulerIds().size(); i++) {
                 sendNow(getSchedulerId(i), CloudSimTags.END_OF_SIMULATION, null);
             }
-        } else {
-            sendNow(this.getId(), CloudSimTags.CLOUDLET_SUBMIT, null);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a job returned to the results: to the job log if one is set and to
+     * the job received list otherwise. A job written to the log is not
+     * referenced by the engine any more, nor are its parents through it,
+     * which have all returned before it. Its tasks may still be, see JobLog.
+     *
+     * @param job the job
+     */
+    private void addReceivedJob(Job job) {
+        releaseChildren(job);
+        String path = Parameters.getJobLog();
+        if (path != null && !jobLogFailed) {
+            try {
+                if (jobLog == null) {
+                    jobLog = new JobLog(new File(path));
+                }
+                jobLog.add(job);
+                //a retry job may share the parent list, it is replaced, not cleared
+                job.setParentList(new ArrayList<Task>());
+                return;
+            } catch (IOException ioe) {
+                Log.printLine("IO Exception;Cannot write " + path + ", the jobs returned are kept in memory");
+                jobLogFailed = true;
+            }
+        }
+        getJobsReceivedList().add(job);
+    }
+
+    /**
+     * Counts the jobs with the id of a job returned off the remaining parents
+     * of their children, the children that have no parent left become ready.
+     * Nothing is done if a job with this id has already returned.
+     *
+     * @param job the job
+     */
+    private void releaseChildren(Job job) {
+        List<Job> jobs = jobsById.remove(job.getCloudletId());
+        if (jobs == null) {
+            return;
         }
+        for (Job parent : jobs) {
+            for (Task child : parent.getChildList()) {
+                Integer count = remainingParents.get(child);
+                if (count == null) {
+                    continue;
+                }
+                if (count > 1) {
+                    remainingParents.put((Job) child, count - 1);
+                } else {
+                    remainingParents.remove(child);
+                    readyJobs.put(jobsListOrder.get(child), (Job) child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the job log the jobs returned are written to
+     *
+     * @return the job log, null if Parameters.getJobLog() is not set or no
+     * job has returned yet
+     */
+    public JobLog getJobLog() {
+        return jobLog;
     }
 
     /**
@@ -253,66 +567,37 @@ public final class WorkflowEngine extends SimEntity {
     }
 
     /**
-     * Checks whether a job list contains a id
-     *
-     * @param jobList the job list
-     * @param id the job id
-     * @return
-     */
-    private boolean hasJobListContainsID(List jobList, int id) {
-        for (Iterator it = jobList.iterator(); it.hasNext();) {
-            Job job = (Job) it.next();
-            if (job.getCloudletId() == id) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Submit jobs to the created VMs.
+     * Submit jobs to the created VMs. Only the ready jobs are submitted, in
+     * the order of the job list; no parent is checked here.
      *
      * @pre $none
      * @post $none
      */
     protected void submitJobs() {
 
-        List<Job> list = getJobsList();
         Map<Integer, List> allocationList = new HashMap<>();
         for (int i = 0; i < getSchedulers().size(); i++) {
             List<Job> submittedList = new ArrayList<>();
             allocationList.put(getSchedulerId(i), submittedList);
         }
-        int num = list.size();
-        for (int i = 0; i < num; i++) {
-            //at the beginning
-            Job job = list.get(i);
+        while (!readyJobs.isEmpty()) {
+            Job job = readyJobs.pollFirstEntry().getValue();
             //Dont use job.isFinished() it is not right
-            if (!hasJobListContainsID(this.getJobsReceivedList(), job.getCloudletId())) {
-                List<Job> parentList = job.getParentList();
-                boolean flag = true;
-                for (Job parent : parentList) {
-                    if (!hasJobListContainsID(this.getJobsReceivedList(), parent.getCloudletId())) {
-                        flag = false;
-                        break;
-                    }
-                }
-                /**
-                 * This job's parents have all completed successfully. Should
-                 * submit.
-                 */
-                if (flag) {
-                    List submittedList = allocationList.get(job.getUserId());
-                    submittedList.add(job);
-                    jobsSubmitted++;
-                    getJobsSubmittedList().add(job);
-                    list.remove(job);
-                    i--;
-                    num--;
-                }
+            if (jobsReceivedIds.contains(job.getCloudletId())) {
+                //a job with the id of a job received is left in the job list
+                continue;
             }
-
+            List submittedList = allocationList.get(job.getUserId());
+            submittedList.add(job);
+            jobsSubmitted++;
+            jobsSubmittedTotal++;
+            //the jobs submitted are only kept if there is no job log
+            if (Parameters.getJobLog() == null) {
+                getJobsSubmittedList().add(job);
+            }
+            removeFromJobsList(job);
         }
+        compactJobsList(false);
         /**
          * If we have multiple schedulers. Divide them equally.
          */
@@ -351,13 +636,64 @@ public final class WorkflowEngine extends SimEntity {
         }
     }
 
+    /**
+     * GraphRun is the progress of a WorkflowGraph in the engine: the number
+     * of parents of each node that have not completed and the number of jobs
+     * of each node that have not returned. The stage-in job is the node after
+     * the last one.
+     */
+    static final class GraphRun {
+
+        private final WorkflowGraph graph;
+        private final Job stageIn;
+        private final int[] waiting;
+        private final int[] pending;
+
+        /**
+         * Creates the run of a graph
+         *
+         * @param graph the graph
+         * @param stageIn the stage-in job of the graph
+         */
+        GraphRun(WorkflowGraph graph, Job stageIn) {
+            this.graph = graph;
+            this.stageIn = stageIn;
+            this.waiting = new int[graph.size()];
+            for (int i = 0; i < graph.size(); i++) {
+                waiting[i] = graph.getParentCount(i);
+            }
+            this.pending = new int[graph.size() + 1];
+        }
+    }
+
+    /**
+     * A node of a graph run, the one run by a job.
+     */
+    private static final class GraphNode {
+
+        private final GraphRun run;
+        private final int node;
+
+        GraphNode(GraphRun run, int node) {
+            this.run = run;
+            this.node = node;
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see cloudsim.core.SimEntity#shutdownEntity()
      */
     @Override
     public void shutdownEntity() {
-        Log.printLine(Parameters.df.format(CloudSim.clock())+getName() + " is shutting down...");
+        if (jobLog != null) {
+            try {
+                jobLog.close();
+            } catch (IOException ioe) {
+                Log.printLine("IO Exception;Cannot write " + jobLog.getFile());
+            }
+        }
+        Log.printLine(Log.formatDecimal(CloudSim.clock())+getName() + " is shutting down...");
     }
 
     /*
@@ -372,13 +708,50 @@ public final class WorkflowEngine extends SimEntity {
     }
 
     /**
-     * Gets the job list.
+     * Removes a job from the job list. It is only marked as removed, see
+     * compactJobsList().
+     *
+     * @param job the job
+     */
+    private void removeFromJobsList(Job job) {
+        Long order = jobsListOrder.remove(job);
+        if (order != null) {
+            jobsListStale++;
+            remainingParents.remove(job);
+            readyJobs.remove(order);
+        }
+    }
+
+    /**
+     * Drops the jobs removed from the job list, in place and keeping the
+     * order of the others. Unless forced, it is only done once they make up
+     * half of the list, so that each removal costs O(1) amortized.
+     *
+     * @param force whether to drop them whatever their number
+     */
+    private void compactJobsList(boolean force) {
+        if (jobsListStale == 0 || (!force && jobsListStale * 2 < jobsList.size())) {
+            return;
+        }
+        int size = 0;
+        for (int i = 0; i < jobsList.size(); i++) {
+            if (jobsListOrder.containsKey(jobsList.get(i))) {
+                Collections.swap(jobsList, size++, i);
+            }
+        }
+        jobsList.subList(size, jobsList.size()).clear();
+        jobsListStale = 0;
+    }
+
+    /**
+     * Gets the job list, the jobs that have not been submitted yet.
      *
      * @param <T> the generic type
      * @return the job list
      */
     @SuppressWarnings("unchecked")
     public <T extends Cloudlet> List<T> getJobsList() {
+        compactJobsList(true);
         return (List<T>) jobsList;
     }
 
@@ -0,0 +1,487 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.workflowsim.dag.DagAnalysis;
+import org.workflowsim.utils.Parameters.ClassType;
+import org.workflowsim.utils.Parameters.FileType;
+import org.workflowsim.utils.ReplicaCatalog;
+
+/**
+ * WorkflowGraph keeps a workflow in columns rather than in Task objects: the
+ * length, the type and the depth of each node in primitive arrays, the
+ * dependencies as parent and child adjacency arrays (CSR) and the files used
+ * by each node as indexes into a table of names. A node takes a few dozen
+ * bytes instead of the one or two KB of a Task, so a workflow of a million
+ * tasks fits in memory.
+ *
+ * The Task and the Job of a node are only created by WorkflowEngine when all
+ * the parents of the node have completed (see Parameters.setLazyJobs()). They
+ * are the ones WorkflowParser and BasicClustering would have created: the
+ * task id is the id of the first node plus the index of the node, the input
+ * files are shared through the ReplicaCatalog and each job runs one task. The
+ * jobs are not linked to each other, WorkflowEngine tracks the dependencies
+ * on the graph.
+ *
+ * A graph is built by WorkflowParser, from a DAX, or from a Builder filled by
+ * the user for a synthetic workflow (see WorkflowParser.addWorkflowGraph()).
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public final class WorkflowGraph {
+
+    private static final FileType[] FILE_TYPES = FileType.values();
+    /**
+     * The number of nodes.
+     */
+    private final int size;
+    private final long[] lengths;
+    private final int[] depths;
+    /**
+     * The type of each node, by index in typeNames.
+     */
+    private final int[] types;
+    private final String[] typeNames;
+    /**
+     * The children of node i are childIndex[childStart[i]] to
+     * childIndex[childStart[i + 1] - 1], and the same for the parents.
+     */
+    private final int[] childStart;
+    private final int[] childIndex;
+    private final int[] parentStart;
+    private final int[] parentIndex;
+    /**
+     * The files used by node i are the uses useStart[i] to useStart[i + 1] -
+     * 1. A use has the index of the file in fileNames, the size and the
+     * FileType ordinal of the file.
+     */
+    private final int[] useStart;
+    private final int[] useFile;
+    private final double[] useSize;
+    private final byte[] useType;
+    private final String[] fileNames;
+    /**
+     * The task id of the first node.
+     */
+    private final int firstId;
+    private final int userId;
+    private final double arrivalTime;
+
+    /**
+     * Builds a graph from a builder
+     */
+    private WorkflowGraph(Builder builder, int firstId, int userId, double arrivalTime) {
+        this.size = builder.size;
+        this.lengths = Arrays.copyOf(builder.lengths, size);
+        this.types = Arrays.copyOf(builder.types, size);
+        this.typeNames = builder.typeNames.toArray(new String[builder.typeNames.size()]);
+        this.useStart = Arrays.copyOf(builder.useStart, size + 1);
+        this.useStart[size] = builder.useNum;
+        this.useFile = Arrays.copyOf(builder.useFile, builder.useNum);
+        this.useSize = Arrays.copyOf(builder.useSize, builder.useNum);
+        this.useType = Arrays.copyOf(builder.useType, builder.useNum);
+        this.fileNames = builder.fileNames.toArray(new String[builder.fileNames.size()]);
+
+        this.childStart = new int[size + 1];
+        for (int e = 0; e < builder.edgeNum; e++) {
+            childStart[builder.edgeParent[e] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            childStart[i + 1] += childStart[i];
+        }
+        this.childIndex = new int[builder.edgeNum];
+        int[] next = Arrays.copyOf(childStart, size);
+        for (int e = 0; e < builder.edgeNum; e++) {
+            childIndex[next[builder.edgeParent[e]]++] = builder.edgeChild[e];
+        }
+        DagAnalysis<Object> dag = new DagAnalysis<>(size, childStart, childIndex);
+        this.parentStart = dag.getParentStart();
+        this.parentIndex = dag.getParentIndex();
+        this.depths = dag.getLevels();
+
+        this.firstId = firstId;
+        this.userId = userId;
+        this.arrivalTime = arrivalTime;
+    }
+
+    /**
+     * Gets the number of nodes
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the length of a node
+     *
+     * @param node the node
+     * @return the length
+     */
+    public long getLength(int node) {
+        return lengths[node];
+    }
+
+    /**
+     * Gets the depth of a node, a root has depth 1
+     *
+     * @param node the node
+     * @return the depth
+     */
+    public int getDepth(int node) {
+        return depths[node];
+    }
+
+    /**
+     * Gets the type of a node
+     *
+     * @param node the node
+     * @return the type, the job name in a DAX
+     */
+    public String getType(int node) {
+        return typeNames[types[node]];
+    }
+
+    /**
+     * Gets the number of parents of a node
+     *
+     * @param node the node
+     * @return the number of parents
+     */
+    public int getParentCount(int node) {
+        return parentStart[node + 1] - parentStart[node];
+    }
+
+    /**
+     * Gets the number of children of a node
+     *
+     * @param node the node
+     * @return the number of children
+     */
+    public int getChildCount(int node) {
+        return childStart[node + 1] - childStart[node];
+    }
+
+    /**
+     * Gets a child of a node
+     *
+     * @param node the node
+     * @param i the index of the child, from 0 to getChildCount(node) - 1
+     * @return the child
+     */
+    public int getChild(int node, int i) {
+        return childIndex[childStart[node] + i];
+    }
+
+    /**
+     * Gets a parent of a node
+     *
+     * @param node the node
+     * @param i the index of the parent, from 0 to getParentCount(node) - 1
+     * @return the parent
+     */
+    public int getParent(int node, int i) {
+        return parentIndex[parentStart[node] + i];
+    }
+
+    /**
+     * Gets the task id of the first node, the task id of node i is
+     * getFirstId() + i
+     *
+     * @return the task id of the first node
+     */
+    public int getFirstId() {
+        return firstId;
+    }
+
+    /**
+     * Gets the id of the stage-in job of the graph, the id after the last
+     * node
+     *
+     * @return the job id
+     */
+    public int getStageInId() {
+        return firstId + size;
+    }
+
+    /**
+     * Gets the user id of the tasks
+     *
+     * @return the user id
+     */
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * Gets the arrival time of the workflow
+     *
+     * @return the arrival time
+     */
+    public double getArrivalTime() {
+        return arrivalTime;
+    }
+
+    /**
+     * Gets the input files of the workflow, the files used as input that no
+     * node produces, in the order of their first use. The files are shared
+     * through the ReplicaCatalog with the tasks created afterwards.
+     *
+     * @return the files to stage in
+     */
+    List<FileItem> createInputFiles() {
+        boolean[] produced = new boolean[fileNames.length];
+        for (int u = 0; u < useType.length; u++) {
+            if (FILE_TYPES[useType[u]] == FileType.OUTPUT) {
+                produced[useFile[u]] = true;
+            }
+        }
+        boolean[] added = new boolean[fileNames.length];
+        List<FileItem> list = new ArrayList<>();
+        for (int u = 0; u < useType.length; u++) {
+            int file = useFile[u];
+            if (FILE_TYPES[useType[u]] == FileType.INPUT && !produced[file] && !added[file]) {
+                added[file] = true;
+                list.add(createFile(u));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Creates the task of a node, as WorkflowParser would
+     *
+     * @param node the node
+     * @return the task, without parents nor children
+     */
+    Task createTask(int node) {
+        Task task = new Task(firstId + node, lengths[node]);
+        task.setType(getType(node));
+        task.setUserId(userId);
+        List<FileItem> fileList = new ArrayList<>(useStart[node + 1] - useStart[node]);
+        Set<String> requiredFiles = new LinkedHashSet<>();
+        for (int u = useStart[node]; u < useStart[node + 1]; u++) {
+            fileList.add(createFile(u));
+            requiredFiles.add(fileNames[useFile[u]]);
+        }
+        task.getRequiredFiles().addAll(requiredFiles);
+        task.setFileList(fileList);
+        task.setArrivalTime(arrivalTime);
+        task.setDepth(depths[node]);
+        return task;
+    }
+
+    /**
+     * Creates the tasks of all the nodes with their dependencies, as
+     * WorkflowParser would
+     *
+     * @return the tasks, in the order of the nodes
+     */
+    List<Task> createTasks() {
+        List<Task> tasks = new ArrayList<>(size());
+        for (int node = 0; node < size(); node++) {
+            tasks.add(createTask(node));
+        }
+        for (int node = 0; node < size(); node++) {
+            Task parent = tasks.get(node);
+            for (int i = 0; i < getChildCount(node); i++) {
+                Task child = tasks.get(getChild(node, i));
+                parent.addChild(child);
+                child.addParent(parent);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Creates the job running the task of a node, as BasicClustering would
+     *
+     * @param node the node
+     * @return the job, without parents nor children
+     */
+    Job createJob(int node) {
+        Task task = createTask(node);
+        Job job = new Job(task.getCloudletId(), 0);
+        job.setClassType(ClassType.COMPUTE.value);
+        Set<FileItem> jobFiles = Collections.newSetFromMap(new IdentityHashMap<FileItem, Boolean>());
+        for (FileItem file : task.getFileList()) {
+            if (jobFiles.add(file)) {
+                job.getFileList().add(file);
+            }
+        }
+        job.getRequiredFiles().addAll(task.getRequiredFiles());
+        job.getTaskList().add(task);
+        job.setCloudletLength((int) task.getCloudletLength());
+        job.setUserId(task.getUserId());
+        job.setDepth(task.getDepth());
+        job.setPriority(task.getPriority());
+        job.setArrivalTime(task.getArrivalTime());
+        job.setVmId(task.getVmId());
+        return job;
+    }
+
+    /**
+     * Creates the file item of a use, input files are shared through the
+     * ReplicaCatalog
+     *
+     * @param use the use
+     * @return the file item
+     */
+    private FileItem createFile(int use) {
+        String name = fileNames[useFile[use]];
+        FileType type = FILE_TYPES[useType[use]];
+        FileItem file;
+        if (type == FileType.OUTPUT) {
+            file = new FileItem(name, useSize[use]);
+        } else if (ReplicaCatalog.containsFile(name)) {
+            file = ReplicaCatalog.getFile(name);
+        } else {
+            file = new FileItem(name, useSize[use]);
+            ReplicaCatalog.setFile(name, file);
+        }
+        file.setType(type);
+        return file;
+    }
+
+    /**
+     * Builder collects the nodes, the files and the dependencies of a
+     * workflow. The strings are interned, so a file used by many nodes is
+     * only kept once.
+     */
+    public static final class Builder {
+
+        private int size;
+        private long[] lengths = new long[16];
+        private int[] types = new int[16];
+        private final List<String> typeNames = new ArrayList<>();
+        private final Map<String, Integer> typeIndex = new HashMap<>();
+        private int[] useStart = new int[17];
+        private int useNum;
+        private int[] useFile = new int[16];
+        private double[] useSize = new double[16];
+        private byte[] useType = new byte[16];
+        private final List<String> fileNames = new ArrayList<>();
+        private final Map<String, Integer> fileIndex = new HashMap<>();
+        private int edgeNum;
+        private int[] edgeParent = new int[16];
+        private int[] edgeChild = new int[16];
+
+        /**
+         * Adds a node, the files added afterwards are used by it
+         *
+         * @param type the type of the task
+         * @param length the length of the task
+         * @return the index of the node
+         */
+        public int addTask(String type, long length) {
+            if (size == lengths.length) {
+                lengths = Arrays.copyOf(lengths, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+                useStart = Arrays.copyOf(useStart, size * 2 + 1);
+            }
+            lengths[size] = length;
+            types[size] = intern(type, typeNames, typeIndex);
+            useStart[size] = useNum;
+            return size++;
+        }
+
+        /**
+         * Adds a file used by the last node added
+         *
+         * @param name the file name
+         * @param fileSize the size of the file
+         * @param type the type of the file
+         */
+        public void addFile(String name, double fileSize, FileType type) {
+            if (size == 0) {
+                throw new IllegalStateException("A file is added before any task");
+            }
+            if (useNum == useFile.length) {
+                useFile = Arrays.copyOf(useFile, useNum * 2);
+                useSize = Arrays.copyOf(useSize, useNum * 2);
+                useType = Arrays.copyOf(useType, useNum * 2);
+            }
+            useFile[useNum] = intern(name, fileNames, fileIndex);
+            useSize[useNum] = fileSize;
+            useType[useNum] = (byte) type.ordinal();
+            useNum++;
+        }
+
+        /**
+         * Makes a node depend on another one
+         *
+         * @param parent the index of the parent
+         * @param child the index of the child
+         */
+        public void addDependency(int parent, int child) {
+            if (parent < 0 || parent >= size || child < 0 || child >= size) {
+                throw new IllegalArgumentException("No such task: " + parent + " -> " + child);
+            }
+            if (edgeNum == edgeParent.length) {
+                edgeParent = Arrays.copyOf(edgeParent, edgeNum * 2);
+                edgeChild = Arrays.copyOf(edgeChild, edgeNum * 2);
+            }
+            edgeParent[edgeNum] = parent;
+            edgeChild[edgeNum] = child;
+            edgeNum++;
+        }
+
+        /**
+         * Gets the number of nodes added
+         *
+         * @return the number of nodes
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Builds the graph
+         *
+         * @param firstId the task id of the first node
+         * @param userId the user id of the tasks
+         * @param arrivalTime the arrival time of the workflow
+         * @return the graph
+         * @throws IllegalArgumentException if the dependencies contain a cycle
+         */
+        WorkflowGraph build(int firstId, int userId, double arrivalTime) {
+            return new WorkflowGraph(this, firstId, userId, arrivalTime);
+        }
+
+        /**
+         * Gets the index of a string, adding it to the table if needed
+         */
+        private static int intern(String name, List<String> names, Map<String, Integer> index) {
+            Integer i = index.get(name);
+            if (i == null) {
+                i = names.size();
+                names.add(name);
+                index.put(name, i);
+            }
+            return i;
+        }
+    }
+}
@@ -15,9 +15,18 @@
  */
 package org.workflowsim;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.core.CloudSim;
@@ -25,6 +34,7 @@ import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
+import org.workflowsim.dag.DagAnalysis;
 import org.workflowsim.utils.DistributionGenerator;
 import org.workflowsim.utils.Parameters;
 import org.workflowsim.utils.Parameters.FileType;
@@ -41,6 +51,13 @@ import org.workflowsim.utils.ReplicaCatalog;
  */
 public final class WorkflowParser {
 
+    /**
+     * The snapshots of the DAX files already parsed, shared by the parsers of
+     * all the simulations that enable the DAX cache. The key is the absolute
+     * path, the length and the modification time of the DAX.
+     */
+    private static final ConcurrentMap<String, WorkflowSnapshot> CACHE = new ConcurrentHashMap<>();
+
     /**
      * The path to DAX file.
      */
@@ -66,10 +83,41 @@ public final class WorkflowParser {
      * Map from task name to task.
      */
     protected Map<String, Task> mName2Task;
+    /**
+     * The strings shared by the tasks parsed, such as file names.
+     */
+    private final Map<String, String> mNames;
+    /**
+     * The snapshot recording the DAX being parsed, null if snapshots are not
+     * used.
+     */
+    private WorkflowSnapshot snapshot;
+    /**
+     * Whether the tasks parsed are only recorded in the snapshot, to build a
+     * WorkflowGraph.
+     */
+    private boolean recordOnly;
     /**
      * All tasks.
      */
     private Map<Double, List<Task>> arrivalTimeTaskList;
+    /**
+     * All workflow graphs.
+     */
+    private final Map<Double, List<WorkflowGraph>> arrivalTimeGraphList;
+    /**
+     * The DAX files of the stream of arrivals, by arrival time. The paths
+     * already parsed are set to null.
+     */
+    private List<Arrival> daxArrivals;
+    /**
+     * The index of the next DAX file to parse in daxArrivals.
+     */
+    private int nextDaxArrival;
+    /**
+     * The sources of generated workflows.
+     */
+    private final List<WorkflowSource> workflowSources;
 
     /**
      * Initialize a WorkflowParser
@@ -80,55 +128,423 @@ public final class WorkflowParser {
     public WorkflowParser(int userId) {
         this.userId = userId;
         this.mName2Task = new HashMap<>();
+        this.mNames = new HashMap<>();
         this.daxPath = Parameters.getDaxPath();
         this.daxPaths = Parameters.getDAXPaths();
         this.jobIdStartsFrom = 1;
         setArrivalTimeTaskList(new LinkedHashMap<Double, List<Task>>());
+        this.arrivalTimeGraphList = new LinkedHashMap<>();
+        this.workflowSources = new ArrayList<>();
     }
 
     /**
      * Start to parse a workflow which is a xml file(s).
      */
     public void parse() {
+        parse(false);
+    }
+
+    /**
+     * Parse the workflows into WorkflowGraphs rather than into tasks. The
+     * graphs are added to getArrivalTimeGraphList().
+     */
+    public void parseGraphs() {
+        parse(true);
+    }
+
+    /**
+     * Parse the DAX files
+     *
+     * @param graphs whether they are parsed into WorkflowGraphs
+     */
+    private void parse(boolean graphs) {
+        for (Arrival arrival : getDaxArrivals()) {
+            parseXmlFile(arrival.time, arrival.path, graphs);
+        }
+    }
+
+    /**
+     * Gets the arrival time of each DAX file, in the order of the paths. The
+     * first workflow arrives now and the next ones at the times drawn from
+     * the arrival time model, if any.
+     *
+     * @return the arrivals
+     */
+    private List<Arrival> getDaxArrivals() {
+        List<Arrival> arrivals = new ArrayList<>();
         Double arrivalTime = CloudSim.clock();
         if (this.daxPath != null) {
-            parseXmlFile(arrivalTime, this.daxPath);
+            arrivals.add(new Arrival(arrivalTime, this.daxPath));
         } else if (this.daxPaths != null) {
             int i = 0;
             for (String path : this.daxPaths) {
                 if( i == 0){
-                    parseXmlFile(arrivalTime, path);
+                    arrivals.add(new Arrival(arrivalTime, path));
                     i++;
                 }else {
                     DistributionGenerator tempPeriodicalSignal = Parameters.getArrivalTimeModel();
                     if (tempPeriodicalSignal != null) {
                         arrivalTime = tempPeriodicalSignal.getNextSample()*10;
                     }
-                    parseXmlFile(arrivalTime, path);
+                    arrivals.add(new Arrival(arrivalTime, path));
                 }
             }
         }
+        return arrivals;
+    }
+
+    /**
+     * Starts the stream of arrivals: the arrival times of the DAX files are
+     * drawn as parse() does, but no DAX is parsed until parseNextArrival()
+     * reaches it. The DAX files and the workflow sources are then parsed and
+     * generated in the order of their arrival times.
+     */
+    public void startArrivals() {
+        this.daxArrivals = getDaxArrivals();
+        //a stable sort, the workflows arriving at the same time keep their order
+        Collections.sort(this.daxArrivals, new Comparator<Arrival>() {
+            @Override
+            public int compare(Arrival a1, Arrival a2) {
+                return Double.compare(a1.time, a2.time);
+            }
+        });
+        this.nextDaxArrival = 0;
+    }
+
+    /**
+     * Adds a source of generated workflows to the stream of arrivals
+     *
+     * @param source the source
+     */
+    public void addWorkflowSource(WorkflowSource source) {
+        this.workflowSources.add(source);
+    }
+
+    /**
+     * Checks whether workflow sources have been added
+     *
+     * @return whether there is a workflow source
+     */
+    public boolean hasWorkflowSources() {
+        return !this.workflowSources.isEmpty();
+    }
+
+    /**
+     * Gets the arrival time of the next workflow of the stream started by
+     * startArrivals()
+     *
+     * @return the arrival time, or a negative value if there is no workflow
+     * left
+     */
+    public double getNextArrivalTime() {
+        double time = -1;
+        if (this.daxArrivals != null && this.nextDaxArrival < this.daxArrivals.size()) {
+            time = this.daxArrivals.get(this.nextDaxArrival).time;
+        }
+        for (WorkflowSource source : this.workflowSources) {
+            double sourceTime = source.getNextArrivalTime();
+            if (sourceTime >= 0 && (time < 0 || sourceTime < time)) {
+                time = sourceTime;
+            }
+        }
+        return time;
     }
 
     /**
-     * Sets the depth of a task
+     * Parses or generates the next workflow of the stream started by
+     * startArrivals(). Its tasks are added to getArrivalTimeTaskList(), or
+     * its graph to getArrivalTimeGraphList(), and the id after its tasks is
+     * left for its stage-in job. The caller is expected to remove them once
+     * submitted.
      *
-     * @param task the task
-     * @param depth the depth
+     * @param graph whether the workflow is kept as a WorkflowGraph
+     * @return false if there is no workflow left
      */
-    private void setDepth(Task task, int depth) {
-        if (depth > task.getDepth()) {
-            task.setDepth(depth);
+    public boolean parseNextArrival(boolean graph) {
+        double time = getNextArrivalTime();
+        if (time < 0) {
+            return false;
+        }
+        if (this.daxArrivals != null && this.nextDaxArrival < this.daxArrivals.size()
+                && this.daxArrivals.get(this.nextDaxArrival).time == time) {
+            //the DAX files go first at a time shared with a source
+            Arrival arrival = this.daxArrivals.get(this.nextDaxArrival);
+            //the path is not needed any more
+            this.daxArrivals.set(this.nextDaxArrival, null);
+            this.nextDaxArrival++;
+            parseXmlFile(arrival.time, arrival.path, graph);
+            if (!graph) {
+                this.jobIdStartsFrom++;
+            }
+            return true;
         }
-        for (Task cTask : task.getChildList()) {
-            setDepth(cTask, task.getDepth() + 1);
+        for (WorkflowSource source : this.workflowSources) {
+            if (source.getNextArrivalTime() == time) {
+                WorkflowGraph.Builder builder = source.next();
+                if (graph) {
+                    addWorkflowGraph(builder, time);
+                } else {
+                    addWorkflowTasks(builder, time);
+                }
+                return true;
+            }
         }
+        return false;
     }
 
     /**
-     * Parse a DAX file with jdom
+     * Adds the tasks of a generated workflow, with the ids addWorkflowGraph()
+     * would give them
+     *
+     * @param builder the nodes, files and dependencies of the workflow
+     * @param arrivalTime the arrival time of the workflow
+     */
+    private void addWorkflowTasks(WorkflowGraph.Builder builder, double arrivalTime) {
+        List<Task> tasks = buildGraph(builder, arrivalTime).createTasks();
+        List<Task> list = getArrivalTimeTaskList().get(arrivalTime);
+        if (list == null) {
+            getArrivalTimeTaskList().put(arrivalTime, tasks);
+        } else {
+            list.addAll(tasks);
+        }
+    }
+
+    /**
+     * Parse a DAX file into tasks or into a WorkflowGraph
+     */
+    private void parseXmlFile(Double arrivalTime, String path, boolean graph) {
+        if (!graph) {
+            parseXmlFile(arrivalTime, path);
+            return;
+        }
+        WorkflowSnapshot saved = loadSnapshot(path);
+        if (saved == null) {
+            /**
+             * The tasks are only created to record the snapshot, they do not
+             * use any task id.
+             */
+            int firstId = this.jobIdStartsFrom;
+            recordOnly = true;
+            try {
+                saved = parseDax(arrivalTime, path, true);
+            } finally {
+                recordOnly = false;
+                this.jobIdStartsFrom = firstId;
+            }
+        }
+        if (saved != null) {
+            addWorkflowGraph(createGraphBuilder(saved), arrivalTime);
+        }
+    }
+
+    /**
+     * Parse a DAX file with the parser set in Parameters. If the DAX cache is
+     * enabled and the DAX has already been parsed, its snapshot in memory is
+     * replayed instead. If snapshots are enabled, the snapshot of the DAX is
+     * loaded instead when it is up to date, and written after parsing
+     * otherwise.
      */
     private void parseXmlFile(Double arrivalTime, String path) {
+        WorkflowSnapshot saved = loadSnapshot(path);
+        if (saved != null) {
+            parseSnapshot(arrivalTime, saved);
+            return;
+        }
+        parseDax(arrivalTime, path, Parameters.isDaxSnapshot() || Parameters.isDaxCache());
+    }
+
+    /**
+     * Gets the snapshot of a DAX, from the DAX cache or from the snapshot
+     * file, if they are enabled
+     *
+     * @param path the path to the DAX
+     * @return the snapshot, or null if the DAX has to be parsed
+     */
+    private WorkflowSnapshot loadSnapshot(String path) {
+        File daxFile = new File(path);
+        String cacheKey = getCacheKey(daxFile);
+        if (cacheKey != null) {
+            WorkflowSnapshot cached = CACHE.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (Parameters.isDaxSnapshot()) {
+            File snapshotFile = new File(path + WorkflowSnapshot.EXTENSION);
+            if (snapshotFile.exists()) {
+                try {
+                    WorkflowSnapshot saved = WorkflowSnapshot.read(snapshotFile, daxFile);
+                    if (saved != null) {
+                        if (cacheKey != null) {
+                            CACHE.putIfAbsent(cacheKey, saved);
+                        }
+                        return saved;
+                    }
+                } catch (IOException ioe) {
+                    Log.printLine("IO Exception;Cannot read " + snapshotFile + ", parsing " + path + " instead");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the key of a DAX in the DAX cache
+     *
+     * @param daxFile the DAX
+     * @return the key, or null if the DAX cache is not enabled
+     */
+    private static String getCacheKey(File daxFile) {
+        if (!Parameters.isDaxCache()) {
+            return null;
+        }
+        return daxFile.getAbsolutePath() + "@" + daxFile.length() + ":" + daxFile.lastModified();
+    }
+
+    /**
+     * Parse a DAX file with the parser set in Parameters, recording its
+     * snapshot if asked to. The snapshot is written if snapshots are enabled
+     * and kept in memory if the DAX cache is enabled.
+     *
+     * @param record whether the snapshot is recorded
+     * @return the snapshot, or null if it is not recorded or the DAX could not
+     * be parsed
+     */
+    private WorkflowSnapshot parseDax(Double arrivalTime, String path, boolean record) {
+        File daxFile = new File(path);
+        File snapshotFile = new File(path + WorkflowSnapshot.EXTENSION);
+        String cacheKey = getCacheKey(daxFile);
+        if (record) {
+            snapshot = new WorkflowSnapshot();
+        }
+
+        boolean parsed;
+        if (Parameters.getDaxParser() == Parameters.DaxParser.JDOM) {
+            parsed = parseXmlFileWithJdom(arrivalTime, path);
+        } else {
+            parsed = parseXmlFileWithStax(arrivalTime, path);
+        }
+
+        WorkflowSnapshot recorded = null;
+        if (snapshot != null) {
+            if (parsed) {
+                snapshot.complete();
+                if (Parameters.isDaxSnapshot()) {
+                    try {
+                        snapshot.write(snapshotFile, daxFile);
+                    } catch (IOException ioe) {
+                        Log.printLine("IO Exception;Cannot write " + snapshotFile);
+                        snapshotFile.delete();
+                    }
+                }
+                if (cacheKey != null) {
+                    CACHE.putIfAbsent(cacheKey, snapshot);
+                }
+                recorded = snapshot;
+            }
+            snapshot = null;
+        }
+        return recorded;
+    }
+
+    /**
+     * Fills a WorkflowGraph builder with the jobs of a snapshot, as parsing
+     * the DAX would create them
+     *
+     * @param saved the snapshot
+     * @return the builder
+     */
+    private WorkflowGraph.Builder createGraphBuilder(WorkflowSnapshot saved) {
+        WorkflowGraph.Builder builder = new WorkflowGraph.Builder();
+        for (int i = 0; i < saved.getJobNum(); i++) {
+            String nodeName = saved.getJobName(i);
+            builder.addTask(saved.getJobType(i), parseLength(nodeName, saved.getJobRuntime(i)));
+            for (int j = saved.getUseStart(i); j < saved.getUseEnd(i); j++) {
+                String fileName = saved.getUseName(j);
+                builder.addFile(fileName, parseSize(fileName, saved.getUseSize(j)),
+                        parseType(saved.getUseLink(j)));
+            }
+        }
+        for (int i = 0; i < saved.getDependencyNum(); i++) {
+            builder.addDependency(saved.getDependencyParent(i), saved.getDependencyChild(i));
+        }
+        return builder;
+    }
+
+    /**
+     * Adds a workflow kept as a WorkflowGraph, such as a synthetic workflow.
+     * Its nodes take the next task ids, and the id after them is used by its
+     * stage-in job. The graphs are only run if Parameters.isLazyJobs() is set.
+     *
+     * @param builder the nodes, files and dependencies of the workflow
+     * @param arrivalTime the arrival time of the workflow
+     * @return the graph
+     * @throws IllegalArgumentException if the dependencies contain a cycle
+     */
+    public WorkflowGraph addWorkflowGraph(WorkflowGraph.Builder builder, double arrivalTime) {
+        WorkflowGraph graph = buildGraph(builder, arrivalTime);
+        List<WorkflowGraph> graphs = this.arrivalTimeGraphList.get(arrivalTime);
+        if (graphs == null) {
+            graphs = new ArrayList<>();
+            this.arrivalTimeGraphList.put(arrivalTime, graphs);
+        }
+        graphs.add(graph);
+        return graph;
+    }
+
+    /**
+     * Builds a workflow graph, its nodes take the next task ids and the id
+     * after them is left for its stage-in job
+     *
+     * @param builder the nodes, files and dependencies of the workflow
+     * @param arrivalTime the arrival time of the workflow
+     * @return the graph
+     */
+    private WorkflowGraph buildGraph(WorkflowGraph.Builder builder, double arrivalTime) {
+        WorkflowGraph graph = builder.build(this.jobIdStartsFrom, userId, arrivalTime);
+        this.jobIdStartsFrom += graph.size() + 1;
+        return graph;
+    }
+
+    /**
+     * Releases the DAX files kept in memory for the simulations that enable
+     * the DAX cache.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * Rebuild the tasks of a DAX from its snapshot, as parsing the DAX would
+     */
+    private void parseSnapshot(Double arrivalTime, WorkflowSnapshot saved) {
+        List<Task> tasks = new ArrayList<>(saved.getJobNum());
+        for (int i = 0; i < saved.getJobNum(); i++) {
+            String nodeName = saved.getJobName(i);
+            double runtime = saved.getJobRuntime(i);
+            long length = parseLength(nodeName, runtime);
+            List<FileItem> mFileList = new ArrayList<>();
+            for (int j = saved.getUseStart(i); j < saved.getUseEnd(i); j++) {
+                mFileList.add(parseFile(saved.getUseName(j), saved.getUseLink(j), saved.getUseSize(j)));
+            }
+            tasks.add(addTask(nodeName, saved.getJobType(i), runtime, length, mFileList, arrivalTime));
+        }
+        for (int i = 0; i < saved.getDependencyNum(); i++) {
+            addDependency(tasks.get(saved.getDependencyParent(i)), tasks.get(saved.getDependencyChild(i)));
+        }
+        for (int i = 0; i < saved.getJobNum(); i++) {
+            tasks.get(i).setDepth(saved.getJobDepth(i));
+        }
+        this.mName2Task.clear();
+        this.mNames.clear();
+    }
+
+    /**
+     * Parse a DAX file with jdom
+     *
+     * @return true if the file is parsed
+     */
+    private boolean parseXmlFileWithJdom(Double arrivalTime, String path) {
 
         try {
 
@@ -140,26 +556,10 @@ public final class WorkflowParser {
             for (Element node : list) {
                 switch (node.getName().toLowerCase()) {
                     case "job":
-                        long length = 0;
                         String nodeName = node.getAttributeValue("id");
                         String nodeType = node.getAttributeValue("name");
-                        /**
-                         * capture runtime. If not exist, by default the runtime
-                         * is 0.1. Otherwise CloudSim would ignore this task.
-                         * BUG/#11
-                         */
-                        double runtime;
-                        if (node.getAttributeValue("runtime") != null) {
-                            String nodeTime = node.getAttributeValue("runtime");
-                            runtime = 1000 * Double.parseDouble(nodeTime);
-                            if (runtime < 100) {
-                                runtime = 100;
-                            }
-                            length = (long) runtime;
-                        } else {
-                            Log.printLine("Cannot find runtime for " + nodeName + ",set it to be 0");
-                        }   //multiple the scale, by default it is 1.0
-                        length *= Parameters.getRuntimeScale();
+                        double runtime = parseDouble(node.getAttributeValue("runtime"));
+                        long length = parseLength(nodeName, runtime);
                         List<Element> fileList = node.getChildren();
                         List<FileItem> mFileList = new ArrayList<>();
                         for (Element file : fileList) {
@@ -168,99 +568,12 @@ public final class WorkflowParser {
                                 if (fileName == null) {
                                     fileName = file.getAttributeValue("file");//DAX version 3.0
                                 }
-                                if (fileName == null) {
-                                    Log.print("Error in parsing xml");
-                                }
-
-                                String inout = file.getAttributeValue("link");
-                                double size = 0.0;
-
-                                String fileSize = file.getAttributeValue("size");
-                                if (fileSize != null) {
-                                    size = Double.parseDouble(fileSize) /*/ 1024*/;
-                                } else {
-                                    Log.printLine("File Size not found for " + fileName);
-                                }
-
-                                /**
-                                 * a bug of cloudsim, size 0 causes a problem. 1
-                                 * is ok.
-                                 */
-                                if (size == 0) {
-                                    size++;
-                                }
-                                /**
-                                 * Sets the file type 1 is input 2 is output
-                                 */
-                                FileType type = FileType.NONE;
-                                switch (inout) {
-                                    case "input":
-                                        type = FileType.INPUT;
-                                        break;
-                                    case "output":
-                                        type = FileType.OUTPUT;
-                                        break;
-                                    default:
-                                        Log.printLine("Parsing Error");
-                                        break;
-                                }
-                                FileItem tFile;
-                                /*
-                                 * Already exists an input file (forget output file)
-                                 */
-                                if (size < 0) {
-                                    /*
-                                     * Assuming it is a parsing error
-                                     */
-                                    size = 0 - size;
-                                    Log.printLine("Size is negative, I assume it is a parser error");
-                                }
-                                /*
-                                 * Note that CloudSim use size as MB, in this case we use it as Byte
-                                 */
-                                if (type == FileType.OUTPUT) {
-                                    /**
-                                     * It is good that CloudSim does tell
-                                     * whether a size is zero
-                                     */
-                                    tFile = new FileItem(fileName, size);
-                                } else if (ReplicaCatalog.containsFile(fileName)) {
-                                    tFile = ReplicaCatalog.getFile(fileName);
-                                } else {
-
-                                    tFile = new FileItem(fileName, size);
-                                    ReplicaCatalog.setFile(fileName, tFile);
-                                }
-
-                                tFile.setType(type);
-                                mFileList.add(tFile);
-
+                                mFileList.add(parseFile(fileName,
+                                        file.getAttributeValue("link"),
+                                        parseDouble(file.getAttributeValue("size"))));
                             }
                         }
-                        Task task;
-                        //In case of multiple workflow submission. Make sure the jobIdStartsFrom is consistent.
-                        synchronized (this) {
-                            task = new Task(this.jobIdStartsFrom, length);
-                            this.jobIdStartsFrom++;
-                        }
-                        task.setType(nodeType);
-                        task.setUserId(userId);
-                        mName2Task.put(nodeName, task);
-                        for (FileItem file : mFileList) {
-                            task.addRequiredFile(file.getName());
-                        }
-                        task.setFileList(mFileList);
-                        task.setArrivalTime(arrivalTime);
-                        if (arrivalTimeTaskList != null && arrivalTimeTaskList.containsKey(arrivalTime)) {
-                            this.getArrivalTimeTaskList().get(arrivalTime).add(task);
-                        } else {
-                            List<Task> tempTasks = new ArrayList<>();
-                            tempTasks.add(task);
-                            this.getArrivalTimeTaskList().put(arrivalTime, tempTasks);
-                        }
-                        /**
-                         * Add dependencies info.
-                         */
+                        addTask(nodeName, nodeType, runtime, length, mFileList, arrivalTime);
                         break;
                     case "child":
                         List<Element> pList = node.getChildren();
@@ -270,43 +583,108 @@ public final class WorkflowParser {
                             Task childTask = (Task) mName2Task.get(childName);
 
                             for (Element parent : pList) {
-                                String parentName = parent.getAttributeValue("ref");
-                                if (mName2Task.containsKey(parentName)) {
-                                    Task parentTask = (Task) mName2Task.get(parentName);
-                                    parentTask.addChild(childTask);
-                                    childTask.addParent(parentTask);
-                                }
+                                addEdge(childTask, parent.getAttributeValue("ref"));
                             }
                         }
                         break;
                 }
             }
-            /**
-             * If a task has no parent, then it is root task.
-             */
-            ArrayList roots = new ArrayList<>();
-            for (Task task : mName2Task.values()) {
-                task.setDepth(0);
-                if (task.getParentList().isEmpty()) {
-                    roots.add(task);
-                }
-            }
+            setDepths();
+            return true;
+
+        } catch (JDOMException jde) {
+            Log.printLine("JDOM Exception;Please make sure your dax file is valid");
+
+        } catch (IOException ioe) {
+            Log.printLine("IO Exception;Please make sure dax.path is correctly set in your config file");
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            Log.printLine("Parsing Exception");
+        }
+        return false;
+    }
+
+    /**
+     * Parse a DAX file with StAX. Tasks and dependencies are created as the
+     * file is read, so no document is kept in memory.
+     *
+     * @return true if the file is parsed
+     */
+    private boolean parseXmlFileWithStax(Double arrivalTime, String path) {
+        XMLStreamReader reader = null;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            reader = factory.createXMLStreamReader(in);
 
             /**
-             * Add depth from top to bottom.
+             * The root is at depth 1, jobs and children at depth 2, their
+             * files and parents at depth 3.
              */
-            for (Iterator it = roots.iterator(); it.hasNext(); ) {
-                Task task = (Task) it.next();
-                setDepth(task, 1);
+            int depth = 0;
+            boolean inJob = false;
+            String nodeName = null;
+            String nodeType = null;
+            double runtime = Double.NaN;
+            long length = 0;
+            List<FileItem> mFileList = null;
+            boolean inChild = false;
+            Task childTask = null;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        if (depth == 2) {
+                            switch (reader.getLocalName().toLowerCase()) {
+                                case "job":
+                                    inJob = true;
+                                    nodeName = reader.getAttributeValue(null, "id");
+                                    nodeType = reader.getAttributeValue(null, "name");
+                                    runtime = parseDouble(reader.getAttributeValue(null, "runtime"));
+                                    length = parseLength(nodeName, runtime);
+                                    mFileList = new ArrayList<>();
+                                    break;
+                                case "child":
+                                    inChild = true;
+                                    childTask = mName2Task.get(reader.getAttributeValue(null, "ref"));
+                                    break;
+                            }
+                        } else if (depth == 3) {
+                            if (inJob && reader.getLocalName().toLowerCase().equals("uses")) {
+                                String fileName = reader.getAttributeValue(null, "name");//DAX version 3.3
+                                if (fileName == null) {
+                                    fileName = reader.getAttributeValue(null, "file");//DAX version 3.0
+                                }
+                                mFileList.add(parseFile(fileName,
+                                        reader.getAttributeValue(null, "link"),
+                                        parseDouble(reader.getAttributeValue(null, "size"))));
+                            } else if (inChild && childTask != null) {
+                                addEdge(childTask, reader.getAttributeValue(null, "ref"));
+                            }
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth == 2) {
+                            if (inJob) {
+                                addTask(nodeName, nodeType, runtime, length, mFileList, arrivalTime);
+                                mFileList = null;
+                            }
+                            inJob = false;
+                            inChild = false;
+                            childTask = null;
+                        }
+                        depth--;
+                        break;
+                }
             }
-            /**
-             * Clean them so as to save memory. Parsing workflow may take much
-             * memory
-             */
-            this.mName2Task.clear();
+            setDepths();
+            return true;
 
-        } catch (JDOMException jde) {
-            Log.printLine("JDOM Exception;Please make sure your dax file is valid");
+        } catch (XMLStreamException xse) {
+            Log.printLine("XML Stream Exception;Please make sure your dax file is valid");
 
         } catch (IOException ioe) {
             Log.printLine("IO Exception;Please make sure dax.path is correctly set in your config file");
@@ -314,7 +692,257 @@ public final class WorkflowParser {
         } catch (Exception e) {
             e.printStackTrace();
             Log.printLine("Parsing Exception");
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException xse) {
+                    //the file itself is closed anyway
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a numeric attribute
+     *
+     * @param value the attribute, may be null
+     * @return the value, NaN if the attribute is missing
+     */
+    private static double parseDouble(String value) {
+        return value == null ? Double.NaN : Double.parseDouble(value);
+    }
+
+    /**
+     * Gets the length of a job from its runtime attribute
+     *
+     * @param nodeName the job id
+     * @param nodeTime the runtime attribute, NaN if missing
+     * @return the length
+     */
+    private long parseLength(String nodeName, double nodeTime) {
+        long length = 0;
+        /**
+         * capture runtime. If not exist, by default the runtime is 0.1.
+         * Otherwise CloudSim would ignore this task. BUG/#11
+         */
+        double runtime;
+        if (!Double.isNaN(nodeTime)) {
+            runtime = 1000 * nodeTime;
+            if (runtime < 100) {
+                runtime = 100;
+            }
+            length = (long) runtime;
+        } else {
+            Log.printLine("Cannot find runtime for " + nodeName + ",set it to be 0");
+        }   //multiple the scale, by default it is 1.0
+        length *= Parameters.getRuntimeScale();
+        return length;
+    }
+
+    /**
+     * Creates the file item used by a job. Input files are shared through the
+     * ReplicaCatalog, except for the tasks only recorded in the snapshot,
+     * whose files are registered when the WorkflowGraph creates its tasks.
+     *
+     * @param fileName the file name
+     * @param inout the link attribute, input or output
+     * @param fileSize the size attribute, NaN if missing
+     * @return the file item
+     */
+    private FileItem parseFile(String fileName, String inout, double fileSize) {
+        if (snapshot != null) {
+            snapshot.addUse(fileName, inout, fileSize);
+        }
+        if (fileName == null) {
+            Log.print("Error in parsing xml");
+        }
+        fileName = intern(fileName);
+        double size = parseSize(fileName, fileSize);
+        FileType type = parseType(inout);
+        FileItem tFile;
+        /*
+         * Note that CloudSim use size as MB, in this case we use it as Byte
+         */
+        if (type == FileType.OUTPUT || recordOnly) {
+            /**
+             * It is good that CloudSim does tell whether a size is zero
+             */
+            tFile = new FileItem(fileName, size);
+        } else if (ReplicaCatalog.containsFile(fileName)) {
+            tFile = ReplicaCatalog.getFile(fileName);
+        } else {
+
+            tFile = new FileItem(fileName, size);
+            ReplicaCatalog.setFile(fileName, tFile);
+        }
+
+        tFile.setType(type);
+        return tFile;
+    }
+
+    /**
+     * Gets the size of a file from its size attribute
+     *
+     * @param fileName the file name
+     * @param fileSize the size attribute, NaN if missing
+     * @return the size
+     */
+    private static double parseSize(String fileName, double fileSize) {
+        double size = 0.0;
+
+        if (!Double.isNaN(fileSize)) {
+            size = fileSize /*/ 1024*/;
+        } else {
+            Log.printLine("File Size not found for " + fileName);
+        }
+
+        /**
+         * a bug of cloudsim, size 0 causes a problem. 1 is ok.
+         */
+        if (size == 0) {
+            size++;
         }
+        if (size < 0) {
+            /*
+             * Assuming it is a parsing error
+             */
+            size = 0 - size;
+            Log.printLine("Size is negative, I assume it is a parser error");
+        }
+        return size;
+    }
+
+    /**
+     * Gets the type of a file from its link attribute
+     *
+     * @param inout the link attribute, input or output
+     * @return the file type
+     */
+    private static FileType parseType(String inout) {
+        /**
+         * Sets the file type 1 is input 2 is output
+         */
+        FileType type = FileType.NONE;
+        switch (inout) {
+            case "input":
+                type = FileType.INPUT;
+                break;
+            case "output":
+                type = FileType.OUTPUT;
+                break;
+            default:
+                Log.printLine("Parsing Error");
+                break;
+        }
+        return type;
+    }
+
+    /**
+     * Creates a task once all the files of its job are known
+     *
+     * @param nodeName the job id
+     * @param nodeType the job name
+     * @param runtime the runtime attribute, NaN if missing
+     * @param length the length
+     * @param mFileList the files used by the job
+     * @param arrivalTime the arrival time of the workflow
+     * @return the task
+     */
+    private Task addTask(String nodeName, String nodeType, double runtime, long length,
+            List<FileItem> mFileList, Double arrivalTime) {
+        Task task = new Task(this.jobIdStartsFrom, length);
+        this.jobIdStartsFrom++;
+        task.setType(intern(nodeType));
+        task.setUserId(userId);
+        mName2Task.put(nodeName, task);
+        //same as addRequiredFile for each file, without a scan per file
+        Set<String> requiredFiles = new LinkedHashSet<>();
+        for (FileItem file : mFileList) {
+            requiredFiles.add(file.getName());
+        }
+        task.getRequiredFiles().addAll(requiredFiles);
+        task.setFileList(mFileList);
+        task.setArrivalTime(arrivalTime);
+        //a task only recorded in the snapshot is not submitted
+        if (!recordOnly) {
+            if (arrivalTimeTaskList != null && arrivalTimeTaskList.containsKey(arrivalTime)) {
+                this.getArrivalTimeTaskList().get(arrivalTime).add(task);
+            } else {
+                List<Task> tempTasks = new ArrayList<>();
+                tempTasks.add(task);
+                this.getArrivalTimeTaskList().put(arrivalTime, tempTasks);
+            }
+        }
+        if (snapshot != null) {
+            snapshot.addJob(task, nodeName, nodeType, runtime);
+        }
+        return task;
+    }
+
+    /**
+     * Add dependencies info.
+     *
+     * @param childTask the child task
+     * @param parentName the id of the parent job
+     */
+    private void addEdge(Task childTask, String parentName) {
+        if (mName2Task.containsKey(parentName)) {
+            addDependency((Task) mName2Task.get(parentName), childTask);
+        }
+    }
+
+    /**
+     * Makes a task depend on another one
+     *
+     * @param parentTask the parent task
+     * @param childTask the child task
+     */
+    private void addDependency(Task parentTask, Task childTask) {
+        parentTask.addChild(childTask);
+        childTask.addParent(parentTask);
+        if (snapshot != null) {
+            snapshot.addDependency(parentTask, childTask);
+        }
+    }
+
+    /**
+     * Sets the depth of the tasks parsed once the whole file is read. A root
+     * task has depth 1 and any other task is one deeper than its deepest
+     * parent.
+     */
+    private void setDepths() {
+        DagAnalysis<Task> dag = new DagAnalysis<>(new ArrayList<>(mName2Task.values()), DagAnalysis.TASKS);
+        int[] levels = dag.getLevels();
+        for (int i = 0; i < dag.size(); i++) {
+            dag.getNode(i).setDepth(levels[i]);
+        }
+        /**
+         * Clean them so as to save memory. Parsing workflow may take much
+         * memory
+         */
+        this.mName2Task.clear();
+        this.mNames.clear();
+    }
+
+    /**
+     * Gets the shared copy of a string, so that a file name used by many
+     * jobs is only kept once.
+     *
+     * @param name the string, may be null
+     * @return the shared copy
+     */
+    private String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String shared = mNames.get(name);
+        if (shared == null) {
+            mNames.put(name, name);
+            shared = name;
+        }
+        return shared;
     }
 
     public Map<Double, List<Task>> getArrivalTimeTaskList() {
@@ -324,4 +952,27 @@ public final class WorkflowParser {
     public void setArrivalTimeTaskList(Map<Double, List<Task>> arrivalTimeTaskList) {
         this.arrivalTimeTaskList = arrivalTimeTaskList;
     }
+
+    /**
+     * Gets the workflow graphs by arrival time
+     *
+     * @return the workflow graphs
+     */
+    public Map<Double, List<WorkflowGraph>> getArrivalTimeGraphList() {
+        return arrivalTimeGraphList;
+    }
+
+    /**
+     * A DAX file and its arrival time
+     */
+    private static final class Arrival {
+
+        private final double time;
+        private final String path;
+
+        Arrival(double time, String path) {
+            this.time = time;
+            this.path = path;
+        }
+    }
 }
@@ -25,10 +25,13 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.workflowsim.dag.DagAnalysis;
 import org.workflowsim.planning.BasePlanningAlgorithm;
 import org.workflowsim.planning.DHEFTPlanningAlgorithm;
 import org.workflowsim.planning.HEFTPlanningAlgorithm;
 import org.workflowsim.planning.RandomPlanningAlgorithm;
+import org.workflowsim.utils.ClusteringParameters;
+import org.workflowsim.utils.ClusteringParameters.ClusteringMethod;
 import org.workflowsim.utils.Parameters;
 import org.workflowsim.utils.Parameters.PlanningAlgorithm;
 
@@ -57,6 +60,10 @@ public final class WorkflowPlanner extends SimEntity {
      */
     private int clusteringEngineId;
     private ClusteringEngine clusteringEngine;
+    /**
+     * Whether the workflows are run as WorkflowGraphs.
+     */
+    private boolean lazyJobs;
 
     /**
      * Created a new WorkflowPlanner object.
@@ -137,18 +144,34 @@ public final class WorkflowPlanner extends SimEntity {
     public void processEvent(SimEvent ev) {
         switch (ev.getTag()) {
             case WorkflowSimTags.START_SIMULATION:
+                this.lazyJobs = isLazyJobs();
+                if (isStreaming()) {
+                    if (this.lazyJobs) {
+                        processGraphs();
+                    }
+                    getWorkflowParser().startArrivals();
+                    if (getWorkflowParser().getNextArrivalTime() >= 0) {
+                        sendNow(getClusteringEngineId(), WorkflowSimTags.ARRIVALS_PENDING, Boolean.TRUE);
+                    }
+                    scheduleNextArrival();
+                    break;
+                }
                 getWorkflowParser().parse();
                 Iterator<Map.Entry<Double,List<Task>>> tempIter = getWorkflowParser().getArrivalTimeTaskList().entrySet().iterator();
                 while (tempIter.hasNext()) {
                     Map.Entry<Double,List<Task>> entry = tempIter.next();
-                    Object arrivalTime = entry.getKey();
-                    Object taskList = entry.getValue();
-                    getTaskList().addAll((List<Task>)taskList);
-                    processImpactFactors(getTaskList());
-                    send(getClusteringEngineId(),(double)arrivalTime,WorkflowSimTags.JOB_SUBMIT, taskList);
+                    double arrivalTime = entry.getKey();
+                    List<Task> taskList = entry.getValue();
+                    getTaskList().addAll(taskList);
+                    //the impact factors of a workflow only depend on its own tasks
+                    processImpactFactors(taskList);
+                    send(getClusteringEngineId(),arrivalTime,WorkflowSimTags.JOB_SUBMIT, taskList);
                 }
                 processPlanning();
                 break;
+            case WorkflowSimTags.WORKFLOW_ARRIVAL:
+                processArrival();
+                break;
             case CloudSimTags.END_OF_SIMULATION:
                 shutdownEntity();
                 break;
@@ -159,6 +182,99 @@ public final class WorkflowPlanner extends SimEntity {
         }
     }
 
+    /**
+     * Checks whether the workflows are run as WorkflowGraphs
+     *
+     * @return whether the jobs are created lazily
+     */
+    private boolean isLazyJobs() {
+        if (!Parameters.isLazyJobs()) {
+            return false;
+        }
+        ClusteringParameters params = Parameters.getClusteringParameters();
+        if (!Parameters.getPlanningAlgorithm().equals(PlanningAlgorithm.INVALID)
+                || (params != null && params.getClusteringMethod() != ClusteringMethod.NONE)) {
+            Log.printLine("Lazy jobs need no planning and no clustering, the tasks are created upfront");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the workflows are parsed one at a time, when they
+     * arrive. Without a planning algorithm, which needs all the tasks upfront,
+     * the workflows of DAX paths, of workflow sources and of lazy jobs are
+     * streamed. A single DAX file keeps its tasks and its stage-in job id as
+     * parsed upfront. Workflow sources are only used by streaming.
+     *
+     * @return whether the workflows are streamed
+     */
+    private boolean isStreaming() {
+        if (!Parameters.getPlanningAlgorithm().equals(PlanningAlgorithm.INVALID)) {
+            return false;
+        }
+        return this.lazyJobs || Parameters.getDaxPath() == null
+                || getWorkflowParser().hasWorkflowSources();
+    }
+
+    /**
+     * Submits the WorkflowGraphs added to the parser before the simulation
+     * started, each at its arrival time
+     */
+    private void processGraphs() {
+        for (Map.Entry<Double, List<WorkflowGraph>> entry : getWorkflowParser().getArrivalTimeGraphList().entrySet()) {
+            for (WorkflowGraph graph : entry.getValue()) {
+                send(getClusteringEngineId(), entry.getKey(), WorkflowSimTags.GRAPH_SUBMIT, graph);
+            }
+        }
+        getWorkflowParser().getArrivalTimeGraphList().clear();
+    }
+
+    /**
+     * Schedules the arrival of the next workflow of the stream, if any
+     */
+    private void scheduleNextArrival() {
+        double time = getWorkflowParser().getNextArrivalTime();
+        if (time >= 0) {
+            schedule(getId(), Math.max(0.0, time - CloudSim.clock()), WorkflowSimTags.WORKFLOW_ARRIVAL);
+        }
+    }
+
+    /**
+     * Parses or generates the workflow arriving now and submits it. Its tasks
+     * are not kept by the planner: they are clustered apart from the other
+     * workflows, or created by the WorkflowEngine if they are lazy jobs, and
+     * released once their jobs have completed.
+     */
+    private void processArrival() {
+        WorkflowParser workflowParser = getWorkflowParser();
+        if (workflowParser.parseNextArrival(this.lazyJobs)) {
+            if (this.lazyJobs) {
+                for (List<WorkflowGraph> list : workflowParser.getArrivalTimeGraphList().values()) {
+                    for (WorkflowGraph graph : list) {
+                        sendNow(getClusteringEngineId(), WorkflowSimTags.GRAPH_SUBMIT, graph);
+                    }
+                }
+                workflowParser.getArrivalTimeGraphList().clear();
+            } else {
+                for (List<Task> list : workflowParser.getArrivalTimeTaskList().values()) {
+                    processImpactFactors(list);
+                    sendNow(getClusteringEngineId(), WorkflowSimTags.WORKFLOW_SUBMIT, list);
+                }
+                workflowParser.getArrivalTimeTaskList().clear();
+            }
+        }
+        if (workflowParser.getNextArrivalTime() < 0) {
+            /**
+             * The WorkflowEngine is told through the ClusteringEngine, after
+             * the jobs of this workflow, so it does not end the simulation
+             * before they are added.
+             */
+            sendNow(getClusteringEngineId(), WorkflowSimTags.ARRIVALS_PENDING, Boolean.FALSE);
+        }
+        scheduleNextArrival();
+    }
+
     private void processPlanning() {
         if (Parameters.getPlanningAlgorithm().equals(PlanningAlgorithm.INVALID)) {
             return;
@@ -214,33 +330,11 @@ public final class WorkflowPlanner extends SimEntity {
      * @param taskList all the tasks
      */
     private void processImpactFactors(List<Task> taskList) {
-        List<Task> exits = new ArrayList<>();
-        for (Task task : taskList) {
-            if (task.getChildList().isEmpty()) {
-                exits.add(task);
-            }
-        }
-        double avg = 1.0 / exits.size();
-        for (Task task : exits) {
-            addImpact(task, avg);
-        }
-    }
-
-    /**
-     * Add impact factor for one particular task
-     *
-     * @param task, the task
-     * @param impact , the impact factor
-     */
-    private void addImpact(Task task, double impact) {
-
-        task.setImpact(task.getImpact() + impact);
-        int size = task.getParentList().size();
-        if (size > 0) {
-            double avg = impact / size;
-            for (Task parent : task.getParentList()) {
-                addImpact(parent, avg);
-            }
+        DagAnalysis<Task> dag = new DagAnalysis<>(taskList, DagAnalysis.TASKS);
+        double[] impacts = dag.getImpactFactors();
+        for (int i = 0; i < dag.size(); i++) {
+            Task task = dag.getNode(i);
+            task.setImpact(task.getImpact() + impacts[i]);
         }
     }
 
@@ -278,7 +372,7 @@ public final class WorkflowPlanner extends SimEntity {
      */
     @Override
     public void shutdownEntity() {
-        Log.printLine(Parameters.df.format(CloudSim.clock())+ getName() + " is shutting down...");
+        Log.printLine(Log.formatDecimal(CloudSim.clock())+ getName() + " is shutting down...");
     }
 
     /*
@@ -16,11 +16,14 @@
 package org.workflowsim;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.DatacenterBroker;
 import org.cloudbus.cloudsim.DatacenterCharacteristics;
 import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.VmRegistry;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEvent;
@@ -52,6 +55,38 @@ public class WorkflowScheduler extends DatacenterBroker {
      * The workflow engine id associated with this workflow algorithm.
      */
     private int workflowEngineId;
+    /**
+     * The scheduling algorithm. It is created at the first scheduling round
+     * and kept afterwards so that algorithms such as MinMin can maintain their
+     * queues incrementally.
+     */
+    private BaseSchedulingAlgorithm scheduler;
+    /**
+     * The number of the current scheduling round. Coalesced update events
+     * carry the round they were scheduled for and are dropped once that round
+     * has run.
+     */
+    private int updateRound = 0;
+    /**
+     * Whether a coalesced update event is waiting to fire.
+     */
+    private boolean updatePending = false;
+    /**
+     * The number of requests merged into the pending round.
+     */
+    private int updatePendingRequests = 0;
+    /**
+     * The number of scheduling requests (returned or submitted jobs).
+     */
+    private long updateRequests = 0;
+    /**
+     * The number of scheduling rounds that have run.
+     */
+    private long updateRounds = 0;
+    /**
+     * The VMs submitted to this scheduler, by user id and vm id.
+     */
+    private final VmRegistry vmRegistry = new VmRegistry();
 
     /**
      * Created a new WorkflowScheduler object.
@@ -66,6 +101,35 @@ public class WorkflowScheduler extends DatacenterBroker {
         super(name);
     }
 
+    /**
+     * Submits the list of VMs to be created, and registers them so that the
+     * acks are matched to their VM in O(1).
+     *
+     * @param list the list of VMs
+     */
+    @Override
+    public void submitVmList(List<? extends Vm> list) {
+        super.submitVmList(list);
+        for (Vm vm : list) {
+            vmRegistry.put(vm, null);
+        }
+    }
+
+    /**
+     * Gets a VM submitted to this scheduler
+     *
+     * @param vmId the vm id
+     * @return the vm, or null if it has not been submitted
+     */
+    private Vm getSubmittedVm(int vmId) {
+        Vm vm = vmRegistry.getVm(vmId, getId());
+        if (vm == null) {
+            // a VM of another user, or added to the VM list directly
+            vm = VmList.getById(getVmList(), vmId);
+        }
+        return vm;
+    }
+
     /**
      * Binds this scheduler to a datacenter
      *
@@ -192,11 +256,12 @@ public class WorkflowScheduler extends DatacenterBroker {
              * Fix a bug of cloudsim Don't add a null to getVmsCreatedList()
              * June 15, 2013
              */
-            if (VmList.getById(getVmList(), vmId) != null) {
-                getVmsCreatedList().add(VmList.getById(getVmList(), vmId));
+            Vm vm = getSubmittedVm(vmId);
+            if (vm != null) {
+                getVmsCreatedList().add(vm);
                 Log.printLine(CloudSim.clock() + ": " + getName() + ": VM #" + vmId
                         + " has been created in Datacenter #" + datacenterId + ", Host #"
-                        + VmList.getById(getVmsCreatedList(), vmId).getHost().getId());
+                        + vm.getHost().getId());
             }
         } else {
             Log.printLine(CloudSim.clock() + ": " + getName() + ": Creation of VM #" + vmId
@@ -238,7 +303,19 @@ public class WorkflowScheduler extends DatacenterBroker {
      */
     protected void processCloudletUpdate(SimEvent ev) {
 
-        BaseSchedulingAlgorithm scheduler = getScheduler(Parameters.getSchedulingAlgorithm());
+        if (ev.getData() instanceof Integer && (Integer) ev.getData() != updateRound) {
+            //this round has already run because enough requests were merged
+            return;
+        }
+        updateRound++;
+        updatePending = false;
+        updatePendingRequests = 0;
+        updateRounds++;
+
+        if (scheduler == null) {
+            scheduler = getScheduler(Parameters.getSchedulingAlgorithm());
+        }
+        scheduler.getScheduledList().clear();
         scheduler.setCloudletList(getCloudletList());
         scheduler.setVmList(getVmsCreatedList());
 
@@ -258,7 +335,7 @@ public class WorkflowScheduler extends DatacenterBroker {
             }
             schedule(getVmsToDatacentersMap().get(vmId), delay, CloudSimTags.CLOUDLET_SUBMIT, cloudlet);
         }
-        getCloudletList().removeAll(scheduledList);
+        getCloudletList().removeAll(new HashSet<>(scheduledList));
         getCloudletSubmittedList().addAll(scheduledList);
         cloudletsSubmitted += scheduledList.size();
     }
@@ -280,7 +357,10 @@ public class WorkflowScheduler extends DatacenterBroker {
          */
         FailureGenerator.generate(job);
 
-        getCloudletReceivedList().add(cloudlet);
+        //the jobs returned are only kept if there is no job log
+        if (Parameters.getJobLog() == null) {
+            getCloudletReceivedList().add(cloudlet);
+        }
         getCloudletSubmittedList().remove(cloudlet);
 
         CondorVM vm = (CondorVM) getVmsCreatedList().get(cloudlet.getVmId());
@@ -295,10 +375,64 @@ public class WorkflowScheduler extends DatacenterBroker {
 
         cloudletsSubmitted--;
         //not really update right now, should wait 1 s until many jobs have returned
-        schedule(this.getId(), 0.0, WorkflowSimTags.CLOUDLET_UPDATE);
+        if (Parameters.isUpdateCoalescing()) {
+            requestUpdate();
+        } else {
+            updateRequests++;
+            schedule(this.getId(), 0.0, WorkflowSimTags.CLOUDLET_UPDATE);
+        }
 
     }
 
+    /**
+     * Requests a scheduling round. Requests are merged until the update
+     * window expires or the batch size is reached.
+     */
+    private void requestUpdate() {
+        updateRequests++;
+        updatePendingRequests++;
+        int batchSize = Parameters.getUpdateBatchSize();
+        if (batchSize > 0 && updatePendingRequests >= batchSize) {
+            //the pending window event, if any, is dropped when it fires
+            sendNow(this.getId(), WorkflowSimTags.CLOUDLET_UPDATE, updateRound);
+            updatePending = true;
+            updatePendingRequests = 0;
+            return;
+        }
+        if (!updatePending) {
+            schedule(this.getId(), Parameters.getUpdateInterval(), WorkflowSimTags.CLOUDLET_UPDATE, updateRound);
+            updatePending = true;
+        }
+    }
+
+    /**
+     * Gets the number of scheduling requests, i.e. the number of rounds that
+     * would have run without coalescing
+     *
+     * @return the number of requests
+     */
+    public long getUpdateRequests() {
+        return updateRequests;
+    }
+
+    /**
+     * Gets the number of scheduling rounds that have run
+     *
+     * @return the number of rounds
+     */
+    public long getUpdateRounds() {
+        return updateRounds;
+    }
+
+    /**
+     * Gets the number of scheduling rounds saved by coalescing
+     *
+     * @return the number of rounds saved
+     */
+    public long getUpdateRoundsSaved() {
+        return updateRequests - updateRounds;
+    }
+
     /**
      * Start this entity (WorkflowScheduler)
      */
@@ -324,7 +458,11 @@ public class WorkflowScheduler extends DatacenterBroker {
     @Override
     public void shutdownEntity() {
         clearDatacenters();
-        Log.printLine(Parameters.df.format(CloudSim.clock())+ getName() + " is shutting down...");
+        if (Parameters.isUpdateCoalescing()) {
+            Log.printLine(getName() + ": " + getUpdateRounds() + " scheduling rounds for "
+                    + getUpdateRequests() + " requests, " + getUpdateRoundsSaved() + " rounds saved");
+        }
+        Log.printLine(Log.formatDecimal(CloudSim.clock())+ getName() + " is shutting down...");
     }
 
     /**
@@ -348,7 +486,12 @@ public class WorkflowScheduler extends DatacenterBroker {
         List<Job> list = (List) ev.getData();
         getCloudletList().addAll(list);
 
-        sendNow(this.getId(), WorkflowSimTags.CLOUDLET_UPDATE);
+        if (Parameters.isUpdateCoalescing()) {
+            requestUpdate();
+        } else {
+            updateRequests++;
+            sendNow(this.getId(), WorkflowSimTags.CLOUDLET_UPDATE);
+        }
         if (!processCloudletSubmitHasShown) {
             processCloudletSubmitHasShown = true;
         }
@@ -44,6 +44,24 @@ public class WorkflowSimTags {
     public static final int JOB_SUBMIT = BASE + 1;
     public static final int CLOUDLET_UPDATE = BASE + 5;
     public static final int CLOUDLET_CHECK = BASE + 6;
+    /**
+     * A workflow kept as a WorkflowGraph is submitted
+     */
+    public static final int GRAPH_SUBMIT = BASE + 7;
+    /**
+     * The tasks of a single workflow are submitted, they are clustered apart
+     * from the other workflows
+     */
+    public static final int WORKFLOW_SUBMIT = BASE + 8;
+    /**
+     * The next workflow of a stream of arrivals arrives
+     */
+    public static final int WORKFLOW_ARRIVAL = BASE + 9;
+    /**
+     * Whether more workflows of a stream of arrivals are going to arrive, sent
+     * after the workflows already submitted
+     */
+    public static final int ARRIVALS_PENDING = BASE + 10;
 
     /**
      * Private Constructor
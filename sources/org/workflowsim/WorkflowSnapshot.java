@@ -0,0 +1,395 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WorkflowSnapshot is a compact binary copy of a DAX file. It keeps what the
+ * WorkflowParser read (jobs with their runtime, the files they use with their
+ * link and size, the dependencies actually created) and the depths computed
+ * from them, so that WorkflowParser can rebuild the same tasks without parsing
+ * XML nor computing depths again. The raw values are kept rather than the
+ * tasks themselves, so the runtime scale and the ReplicaCatalog are applied
+ * when the snapshot is loaded, exactly as for a DAX.
+ *
+ * The file starts with the length and the modification time of the DAX it was
+ * made from, so a snapshot of an older DAX is not used. It is read through a
+ * memory mapped FileChannel.
+ *
+ * A complete snapshot is not modified any more, so WorkflowParser also keeps
+ * them in memory to share one parse of a DAX between the simulations of a
+ * sweep.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+final class WorkflowSnapshot {
+
+    /**
+     * The extension added to the DAX path.
+     */
+    public static final String EXTENSION = ".snapshot";
+    private static final int MAGIC = 0x57465353;
+    private static final int VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The strings used (job ids and names, file names, links). Null is -1.
+     */
+    private final List<String> strings;
+    private final Map<String, Integer> stringIndex;
+    private int jobNum;
+    private int[] jobName;
+    private int[] jobType;
+    private double[] jobRuntime;
+    private int[] jobDepth;
+    /**
+     * The uses of job i are [useStart[i], useStart[i + 1]).
+     */
+    private int[] useStart;
+    private int useNum;
+    private int[] useName;
+    private int[] useLink;
+    private double[] useSize;
+    private int edgeNum;
+    private int[] edgeParent;
+    private int[] edgeChild;
+    /**
+     * The tasks created while recording, to index the dependencies and read
+     * the depths. Null once the snapshot is complete.
+     */
+    private List<Task> tasks;
+    private Map<Task, Integer> taskIndex;
+
+    /**
+     * Creates an empty snapshot to record a DAX being parsed.
+     */
+    public WorkflowSnapshot() {
+        strings = new ArrayList<>();
+        stringIndex = new HashMap<>();
+        jobName = new int[16];
+        jobType = new int[16];
+        jobRuntime = new double[16];
+        useStart = new int[17];
+        useName = new int[16];
+        useLink = new int[16];
+        useSize = new double[16];
+        edgeParent = new int[16];
+        edgeChild = new int[16];
+        tasks = new ArrayList<>();
+        taskIndex = new IdentityHashMap<>();
+    }
+
+    /**
+     * Records a file used by the next job.
+     *
+     * @param fileName the file name
+     * @param link the link attribute
+     * @param size the size attribute, NaN if missing
+     */
+    public void addUse(String fileName, String link, double size) {
+        if (useNum == useName.length) {
+            useName = Arrays.copyOf(useName, useNum * 2);
+            useLink = Arrays.copyOf(useLink, useNum * 2);
+            useSize = Arrays.copyOf(useSize, useNum * 2);
+        }
+        useName[useNum] = indexOf(fileName);
+        useLink[useNum] = indexOf(link);
+        useSize[useNum] = size;
+        useNum++;
+    }
+
+    /**
+     * Records a job, the files recorded since the previous job are its uses.
+     *
+     * @param task the task created for the job
+     * @param nodeName the job id
+     * @param nodeType the job name
+     * @param runtime the runtime attribute, NaN if missing
+     */
+    public void addJob(Task task, String nodeName, String nodeType, double runtime) {
+        if (jobNum == jobName.length) {
+            jobName = Arrays.copyOf(jobName, jobNum * 2);
+            jobType = Arrays.copyOf(jobType, jobNum * 2);
+            jobRuntime = Arrays.copyOf(jobRuntime, jobNum * 2);
+            useStart = Arrays.copyOf(useStart, jobNum * 2 + 1);
+        }
+        jobName[jobNum] = indexOf(nodeName);
+        jobType[jobNum] = indexOf(nodeType);
+        jobRuntime[jobNum] = runtime;
+        useStart[jobNum + 1] = useNum;
+        taskIndex.put(task, jobNum);
+        tasks.add(task);
+        jobNum++;
+    }
+
+    /**
+     * Records a dependency
+     *
+     * @param parent the parent task
+     * @param child the child task
+     */
+    public void addDependency(Task parent, Task child) {
+        if (edgeNum == edgeParent.length) {
+            edgeParent = Arrays.copyOf(edgeParent, edgeNum * 2);
+            edgeChild = Arrays.copyOf(edgeChild, edgeNum * 2);
+        }
+        edgeParent[edgeNum] = taskIndex.get(parent);
+        edgeChild[edgeNum] = taskIndex.get(child);
+        edgeNum++;
+    }
+
+    /**
+     * Completes the snapshot once the DAX is parsed and the depths are set.
+     * The snapshot no longer refers to the tasks afterwards, it can be
+     * written or shared by several parsers.
+     */
+    public void complete() {
+        jobDepth = new int[jobNum];
+        for (int i = 0; i < jobNum; i++) {
+            jobDepth[i] = tasks.get(i).getDepth();
+        }
+        tasks = null;
+        taskIndex = null;
+    }
+
+    /**
+     * Writes a complete snapshot.
+     *
+     * @param file the snapshot file
+     * @param dax the DAX file it was made from
+     * @throws IOException
+     */
+    public void write(File file, File dax) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dax.length());
+            out.writeLong(dax.lastModified());
+
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(UTF8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(jobNum);
+            for (int i = 0; i < jobNum; i++) {
+                out.writeInt(jobName[i]);
+                out.writeInt(jobType[i]);
+                out.writeDouble(jobRuntime[i]);
+                out.writeInt(jobDepth[i]);
+                out.writeInt(useStart[i + 1] - useStart[i]);
+            }
+
+            out.writeInt(useNum);
+            for (int i = 0; i < useNum; i++) {
+                out.writeInt(useName[i]);
+                out.writeInt(useLink[i]);
+                out.writeDouble(useSize[i]);
+            }
+
+            out.writeInt(edgeNum);
+            for (int i = 0; i < edgeNum; i++) {
+                out.writeInt(edgeParent[i]);
+                out.writeInt(edgeChild[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot.
+     *
+     * @param file the snapshot file
+     * @param dax the DAX file, or null not to check it
+     * @return the snapshot, or null if it was not made from this version of
+     * the DAX
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static WorkflowSnapshot read(File file, File dax) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(file + " is not a workflow snapshot");
+            }
+            long daxLength = buffer.getLong();
+            long daxLastModified = buffer.getLong();
+            if (dax != null && (daxLength != dax.length() || daxLastModified != dax.lastModified())) {
+                return null;
+            }
+            WorkflowSnapshot snapshot = new WorkflowSnapshot();
+            snapshot.read(buffer);
+            return snapshot;
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException(file + " is truncated or corrupted", e);
+        }
+    }
+
+    private void read(ByteBuffer buffer) {
+        int stringNum = buffer.getInt();
+        for (int i = 0; i < stringNum; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings.add(new String(bytes, UTF8));
+        }
+
+        jobNum = buffer.getInt();
+        jobName = new int[jobNum];
+        jobType = new int[jobNum];
+        jobRuntime = new double[jobNum];
+        jobDepth = new int[jobNum];
+        useStart = new int[jobNum + 1];
+        for (int i = 0; i < jobNum; i++) {
+            jobName[i] = buffer.getInt();
+            jobType[i] = buffer.getInt();
+            jobRuntime[i] = buffer.getDouble();
+            jobDepth[i] = buffer.getInt();
+            useStart[i + 1] = useStart[i] + buffer.getInt();
+        }
+
+        useNum = buffer.getInt();
+        if (useNum != useStart[jobNum]) {
+            throw new IllegalArgumentException("Inconsistent number of files");
+        }
+        useName = new int[useNum];
+        useLink = new int[useNum];
+        useSize = new double[useNum];
+        for (int i = 0; i < useNum; i++) {
+            useName[i] = buffer.getInt();
+            useLink[i] = buffer.getInt();
+            useSize[i] = buffer.getDouble();
+        }
+
+        edgeNum = buffer.getInt();
+        edgeParent = new int[edgeNum];
+        edgeChild = new int[edgeNum];
+        for (int i = 0; i < edgeNum; i++) {
+            edgeParent[i] = checkJob(buffer.getInt());
+            edgeChild[i] = checkJob(buffer.getInt());
+        }
+
+        for (int i = 0; i < jobNum; i++) {
+            checkString(jobName[i]);
+            checkString(jobType[i]);
+        }
+        for (int i = 0; i < useNum; i++) {
+            checkString(useName[i]);
+            checkString(useLink[i]);
+        }
+        tasks = null;
+        taskIndex = null;
+    }
+
+    private int checkJob(int job) {
+        if (job < 0 || job >= jobNum) {
+            throw new IllegalArgumentException("Invalid job " + job);
+        }
+        return job;
+    }
+
+    private void checkString(int string) {
+        if (string < -1 || string >= strings.size()) {
+            throw new IllegalArgumentException("Invalid string " + string);
+        }
+    }
+
+    private int indexOf(String string) {
+        if (string == null) {
+            return -1;
+        }
+        Integer index = stringIndex.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndex.put(string, index);
+        }
+        return index;
+    }
+
+    private String getString(int index) {
+        return index < 0 ? null : strings.get(index);
+    }
+
+    public int getJobNum() {
+        return jobNum;
+    }
+
+    public String getJobName(int job) {
+        return getString(jobName[job]);
+    }
+
+    public String getJobType(int job) {
+        return getString(jobType[job]);
+    }
+
+    public double getJobRuntime(int job) {
+        return jobRuntime[job];
+    }
+
+    public int getJobDepth(int job) {
+        return jobDepth[job];
+    }
+
+    public int getUseStart(int job) {
+        return useStart[job];
+    }
+
+    public int getUseEnd(int job) {
+        return useStart[job + 1];
+    }
+
+    public String getUseName(int use) {
+        return getString(useName[use]);
+    }
+
+    public String getUseLink(int use) {
+        return getString(useLink[use]);
+    }
+
+    public double getUseSize(int use) {
+        return useSize[use];
+    }
+
+    public int getDependencyNum() {
+        return edgeNum;
+    }
+
+    public int getDependencyParent(int edge) {
+        return edgeParent[edge];
+    }
+
+    public int getDependencyChild(int edge) {
+        return edgeChild[edge];
+    }
+}
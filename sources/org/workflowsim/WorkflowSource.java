@@ -0,0 +1,43 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim;
+
+/**
+ * WorkflowSource generates the workflows of an online workload one at a time.
+ * A source added to WorkflowParser.addWorkflowSource() is asked for its next
+ * workflow only when that workflow arrives, so a stream of workflows never has
+ * to be kept in memory as a whole.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public interface WorkflowSource {
+
+    /**
+     * Gets the arrival time of the next workflow. The arrival times do not
+     * decrease.
+     *
+     * @return the arrival time, or a negative value if there is no workflow
+     * left
+     */
+    double getNextArrivalTime();
+
+    /**
+     * Generates the next workflow, the one arriving at getNextArrivalTime()
+     *
+     * @return the nodes, files and dependencies of the workflow
+     */
+    WorkflowGraph.Builder next();
+}
@@ -16,9 +16,13 @@
 package org.workflowsim.clustering;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.workflowsim.FileItem;
 import org.workflowsim.Job;
 import org.workflowsim.Task;
@@ -51,6 +55,10 @@ public class BasicClustering implements ClusteringInterface {
      * All the files.
      */
     private final List<FileItem> allFileList;
+    /**
+     * The input files in allFileList.
+     */
+    private final Set<FileItem> allInputFiles;
     /**
      * The root task.
      */
@@ -78,6 +86,7 @@ public class BasicClustering implements ClusteringInterface {
         this.taskList = new ArrayList<>();
         this.mTask2Job = new HashMap<>();
         this.allFileList = new ArrayList<>();
+        this.allInputFiles = Collections.newSetFromMap(new IdentityHashMap<FileItem, Boolean>());
         this.idIndex = 0;
         this.root = null;
     }
@@ -177,6 +186,9 @@ public class BasicClustering implements ClusteringInterface {
             }
             Job job = new Job(maxTaskId,length);
             job.setClassType(ClassType.COMPUTE.value);
+            // the files and required files already in the job
+            Set<FileItem> jobFiles = Collections.newSetFromMap(new IdentityHashMap<FileItem, Boolean>());
+            Set<String> jobRequiredFiles = new HashSet<>(job.getRequiredFiles());
             for (Task task : taskList) {
                 length += task.getCloudletLength();
                 userId = task.getUserId();
@@ -186,12 +198,12 @@ public class BasicClustering implements ClusteringInterface {
                 job.getTaskList().add(task);
                 getTask2Job().put(task, job);
                 for (FileItem file : fileList) {
-                    boolean hasFile = job.getFileList().contains(file);
+                    boolean hasFile = !jobFiles.add(file);
                     if (!hasFile) {
                         job.getFileList().add(file);
                         if (file.getType() == FileType.INPUT) {
                             //for stag-in jobs to be used
-                            if (!this.allFileList.contains(file)) {
+                            if (this.allInputFiles.add(file)) {
                                 this.allFileList.add(file);
                             }
                         } else if (file.getType() == FileType.OUTPUT) {
@@ -200,7 +212,7 @@ public class BasicClustering implements ClusteringInterface {
                     }
                 }
                 for (String fileName : task.getRequiredFiles()) {
-                    if (!job.getRequiredFiles().contains(fileName)) {
+                    if (jobRequiredFiles.add(fileName)) {
                         job.getRequiredFiles().add(fileName);
                     }
                 }
@@ -264,8 +276,16 @@ public class BasicClustering implements ClusteringInterface {
     public Task addRoot() {
 
         if (root == null) {
-            //bug maybe
-            root = new Task(taskList.size() + 1, 0/*,0,0*/);
+            /**
+             * The id after the largest task id, which is taskList.size() + 1
+             * for a single workflow. The tasks of a workflow streamed after
+             * others start after their ids, so the size could be a task id.
+             */
+            int rootId = 0;
+            for (Task node : taskList) {
+                rootId = Math.max(rootId, node.getCloudletId());
+            }
+            root = new Task(rootId + 1, 0/*,0,0*/);
             for (Task node : taskList) {
                 if (node.getParentList().isEmpty()) {
                     node.addParent(root);
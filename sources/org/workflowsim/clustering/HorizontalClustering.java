@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Random;
 import org.workflowsim.Job;
 import org.workflowsim.Task;
+import org.workflowsim.utils.Parameters;
 
 /**
  * HorizontalClustering merges task at the same horizontal level
@@ -105,9 +106,9 @@ public class HorizontalClustering extends BasicClustering {
         for (Map.Entry<Integer, List> pairs : mDepth2Task.entrySet()) {
             List list = pairs.getValue();
 
-            long seed = System.nanoTime();
+            long seed = Parameters.nextSeed();
             Collections.shuffle(list, new Random(seed));
-            seed = System.nanoTime();
+            seed = Parameters.nextSeed();
             Collections.shuffle(list, new Random(seed));
 
             int num = list.size();
@@ -157,9 +158,9 @@ public class HorizontalClustering extends BasicClustering {
         for (Map.Entry<Integer, List> pairs : mDepth2Task.entrySet()) {
             List list = pairs.getValue();
 
-            long seed = System.nanoTime();
+            long seed = Parameters.nextSeed();
             Collections.shuffle(list, new Random(seed));
-            seed = System.nanoTime();
+            seed = Parameters.nextSeed();
             Collections.shuffle(list, new Random(seed));
 
             int num = list.size();
@@ -35,6 +35,9 @@ import org.workflowsim.clustering.balancing.metrics.DistanceVariance;
 import org.workflowsim.clustering.balancing.metrics.HorizontalRuntimeVariance;
 import org.workflowsim.clustering.balancing.metrics.ImpactFactorVariance;
 import org.workflowsim.clustering.balancing.metrics.PipelineRuntimeVariance;
+import org.workflowsim.dag.Adjacency;
+import org.workflowsim.dag.DagAnalysis;
+import org.workflowsim.dag.ReachabilityIndex;
 import org.workflowsim.utils.Parameters;
 
 /**
@@ -56,9 +59,14 @@ public class BalancedClustering extends BasicClustering {
      */
     private final Map<Task, TaskSet> mTask2TaskSet;
     /**
-     * Map from taskSet to its depth.
+     * The adjacency of task sets.
      */
-    private final Map<TaskSet, Integer> mTaskSet2Depth;
+    private static final Adjacency<TaskSet> TASK_SETS = new Adjacency<TaskSet>() {
+        @Override
+        public List<TaskSet> getChildren(TaskSet node) {
+            return node.getChildList();
+        }
+    };
 
     /**
      * Initialize a BalancedClustering method
@@ -69,7 +77,6 @@ public class BalancedClustering extends BasicClustering {
         super();
         this.clusterNum = clusterNum;
         this.mTask2TaskSet = new HashMap<>();
-        mTaskSet2Depth = new HashMap<>();
     }
 
     /**
@@ -84,47 +91,39 @@ public class BalancedClustering extends BasicClustering {
     }
 
     /**
-     * Add impact factor to a TaskSet
+     * Gets the DAG of the current task sets
      *
-     * @param set TaskSet
-     * @param impact Impact Factor
+     * @return the analysis of the task sets, in the order of the task map
      */
-    private void addImpact(TaskSet set, double impact) {
-        /*
-         * follow the path from set
-         */
-        set.setImpactFafctor(set.getImpactFactor() + impact);
-        int size = set.getParentList().size();
-        if (size > 0) {
-            double avg = impact / size;
-            for (TaskSet parent : set.getParentList()) {
-                addImpact(parent, avg);
+    private DagAnalysis<TaskSet> getTaskSetDag() {
+        List<TaskSet> sets = new ArrayList<>();
+        for (TaskSet set : mTask2TaskSet.values()) {
+            if (!set.hasChecked) {
+                set.hasChecked = true;
+                sets.add(set);
             }
         }
+        cleanTaskSetChecked();
+        return new DagAnalysis<>(sets, TASK_SETS);
     }
 
     /**
      * Print out all the balancing metrics
      */
     public void printMetrics() {
-        Map<Integer, List<TaskSet>> map = getCurrentTaskSetAtLevels();
-        for (TaskSet set : mTask2TaskSet.values()) {
-            set.setImpactFafctor(0.0);
-        }
+        DagAnalysis<TaskSet> dag = getTaskSetDag();
+        Map<Integer, List<TaskSet>> map = dag.getNodesAtLevels();
 
-        int maxDepth = 0;
-        for (Entry<Integer, List<TaskSet>> entry : map.entrySet()) {
-            int depth = entry.getKey();
-            if (depth > maxDepth) {
-                maxDepth = depth;
+        /*
+         * the impact of the deepest task sets flows to their ancestors
+         */
+        List<TaskSet> exits = map.get(dag.getMaxLevel());
+        if (exits != null) {
+            double[] impacts = dag.getImpactFactors(exits);
+            for (int i = 0; i < dag.size(); i++) {
+                dag.getNode(i).setImpactFafctor(impacts[i]);
             }
         }
-        List<TaskSet> exits = map.get(maxDepth);
-        double avg = 1.0 / exits.size();
-        for (TaskSet set : exits) {
-            //set.setImpactFafctor(avg);
-            addImpact(set, avg);
-        }
 
         for (Entry<Integer, List<TaskSet>> entry : map.entrySet()) {
             int depth = entry.getKey();
@@ -159,87 +158,24 @@ public class BalancedClustering extends BasicClustering {
      * @return tasks list per level
      */
     public Map<Integer, List<TaskSet>> getCurrentTaskSetAtLevels() {
-        //makesure it is updated 
-
         //makesure Taskset.hasChecked is false
-        Map<Integer, List<TaskSet>> map = new HashMap<>();
-        Collection<TaskSet> sets = mTask2TaskSet.values();
-        for (TaskSet set : sets) {
-            if (!set.hasChecked) {
-                set.hasChecked = true;
-                int depth = getDepth(set);
-                if (!map.containsKey(depth)) {
-                    map.put(depth, new ArrayList<TaskSet>());
-                }
-                List list = map.get(depth);
-                list.add(set);
-
-            }
-        }
-        mTaskSet2Depth.clear();
-        //must do
-        cleanTaskSetChecked();
-        return map;
-    }
-
-    /**
-     * Gets the depth of a TaskSet
-     *
-     * @param set TaskSet
-     * @return depth
-     */
-    private int getDepth(TaskSet set) {
-        if (mTaskSet2Depth.containsKey(set)) {
-            return mTaskSet2Depth.get(set);
-        } else {
-            int depth = 0;
-            for (TaskSet parent : set.getParentList()) {
-                int curDepth = getDepth(parent);
-                if (curDepth > depth) {
-                    depth = curDepth;
-                }
-            }
-            depth++;
-            mTaskSet2Depth.put(set, depth);
-            return depth;
-
-        }
-
+        return getTaskSetDag().getNodesAtLevels();
     }
 
-    /**
-     * Check whether a task is an ancestor of another set
-     *
-     * @param ancestor ancestor
-     * @param set child
-     * @return
-     */
-    private boolean check(Task ancestor, Task set) {
-        if (ancestor == null || set == null) {
-            return false;
-        }
-        if (ancestor == set) {
-            return true;
-        }
-        for (Task parent : set.getParentList()) {
-            if (check(ancestor, parent)) {
-                return true;
-            } else {
-                //parent.hasChecked = true;
-            }
-        }
-        return false;
-    }
     /**
      * used for recover.
      */
     private final Map<Task, Task> mRecover = new HashMap<>();
 
     /**
-     * Add pairs that needs to remove to mRecover.
+     * Add pairs that needs to remove to mRecover. An edge from a task to a
+     * child is removed if another child is an ancestor of that child. The
+     * ancestors are looked up in a reachability index built once, removing
+     * such an edge does not change them.
      */
     private void remove() {
-
+        ReachabilityIndex<Task> reachability =
+                new ReachabilityIndex<>(new DagAnalysis<>(this.getTaskList(), DagAnalysis.TASKS));
         for (Task set : this.getTaskList()) {
             if (set.getChildList().size() >= 2) {
                 for (int i = 0; i < set.getChildList().size(); i++) {
@@ -248,7 +184,7 @@ public class BalancedClustering extends BasicClustering {
                         Task another = (Task) set.getChildList().get(j);
                         // avoid unnecessary checks
                         if (children.getDepth() > another.getDepth()) {
-                            if (check(another, children)) {
+                            if (reachability.isAncestor(another, children)) {
                                 //remove i
                                 set.getChildList().remove(children);
                                 children.getParentList().remove(set);
@@ -261,7 +197,7 @@ public class BalancedClustering extends BasicClustering {
                             }
                         }
                         if (another.getDepth() > children.getDepth()) {
-                            if (check(children, another)) {
+                            if (reachability.isAncestor(children, another)) {
                                 set.getChildList().remove(another);
                                 another.getParentList().remove(set);
                                 i--;
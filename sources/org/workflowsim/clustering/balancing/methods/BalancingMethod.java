@@ -98,6 +98,11 @@ public class BalancingMethod {
          */
         head.setImpactFafctor(head.getImpactFactor() + tail.getImpactFactor());
         for (TaskSet taskSet : tail.getParentList()) {
+            if (taskSet == head) {
+                // vertical merge, tail is a child of head
+                head.getChildList().remove(tail);
+                continue;
+            }
             taskSet.getChildList().remove(tail);
             if (!taskSet.getChildList().contains(head)) {
                 taskSet.getChildList().add(head);
@@ -108,6 +113,11 @@ public class BalancingMethod {
         }
 
         for (TaskSet taskSet : tail.getChildList()) {
+            if (taskSet == head) {
+                // vertical merge, head is a child of tail, it must not become
+                // its own parent
+                continue;
+            }
             taskSet.getParentList().remove(tail);
             if (!taskSet.getParentList().contains(head)) {
                 taskSet.getParentList().add(head);
@@ -19,10 +19,12 @@ package org.workflowsim.clustering.balancing.methods;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.workflowsim.Task;
 import org.workflowsim.clustering.TaskSet;
 
@@ -298,6 +300,11 @@ public class HorizontalDistanceBalancing extends HorizontalImpactBalancing {
      * taskB are at the same level because it is horizontal clustering does not
      * work with arbitary workflows
      *
+     * The task sets are merged while this method runs, so the distance is
+     * searched in the current task set graph and not looked up in a
+     * reachability index. Each frontier is kept in an identity set, so one
+     * step takes time linear in the edges leaving the frontiers.
+     *
      * @param taskA
      * @param taskB
      * @return
@@ -306,8 +313,8 @@ public class HorizontalDistanceBalancing extends HorizontalImpactBalancing {
         if (taskA == null || taskB == null || taskA == taskB) {
             return 0;
         }
-        LinkedList<TaskSet> listA = new LinkedList<>();
-        LinkedList<TaskSet> listB = new LinkedList<>();
+        Set<TaskSet> listA = newFrontier();
+        Set<TaskSet> listB = newFrontier();
         int distance = 0;
         listA.add(taskA);
         listB.add(taskB);
@@ -316,25 +323,8 @@ public class HorizontalDistanceBalancing extends HorizontalImpactBalancing {
             return Integer.MAX_VALUE;
         }
         do {
-
-            LinkedList<TaskSet> copyA = (LinkedList) listA.clone();
-            listA.clear();
-            for (TaskSet set : copyA) {
-                for (TaskSet child : set.getChildList()) {
-                    if (!listA.contains(child)) {
-                        listA.add(child);
-                    }
-                }
-            }
-            LinkedList<TaskSet> copyB = (LinkedList) listB.clone();
-            listB.clear();
-            for (TaskSet set : copyB) {
-                for (TaskSet child : set.getChildList()) {
-                    if (!listB.contains(child)) {
-                        listB.add(child);
-                    }
-                }
-            }
+            listA = getChildren(listA);
+            listB = getChildren(listB);
 
             for (TaskSet set : listA) {
                 if (listB.contains(set)) {
@@ -348,6 +338,29 @@ public class HorizontalDistanceBalancing extends HorizontalImpactBalancing {
 
         return distance * 2;
     }
+
+    /**
+     * Gets the children of the task sets of a frontier
+     *
+     * @param frontier the frontier
+     * @return the children, each once
+     */
+    private Set<TaskSet> getChildren(Set<TaskSet> frontier) {
+        Set<TaskSet> children = newFrontier();
+        for (TaskSet set : frontier) {
+            children.addAll(set.getChildList());
+        }
+        return children;
+    }
+
+    /**
+     * Creates an empty frontier
+     *
+     * @return an identity set
+     */
+    private static Set<TaskSet> newFrontier() {
+        return Collections.newSetFromMap(new IdentityHashMap<TaskSet, Boolean>());
+    }
 }
 /*
  * An abstracion of Distance
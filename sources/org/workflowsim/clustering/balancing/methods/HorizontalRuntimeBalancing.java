@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Random;
 import org.workflowsim.Task;
 import org.workflowsim.clustering.TaskSet;
+import org.workflowsim.utils.Parameters;
 
 /**
  * HorizontalRuntimeBalancing is a method that merges task so as to balance job runtime
@@ -52,9 +53,9 @@ public class HorizontalRuntimeBalancing extends BalancingMethod {
         Map<Integer, List<TaskSet>> map = getLevelMap();
         for (List<TaskSet> taskList : map.values()) {
             /**The reason why we don shuffle is very complicated. */
-            long seed = System.nanoTime();
+            long seed = Parameters.nextSeed();
             Collections.shuffle(taskList, new Random(seed));
-            seed = System.nanoTime();
+            seed = Parameters.nextSeed();
             Collections.shuffle(taskList, new Random(seed));
 
             if (taskList.size() > getClusterNum()) {
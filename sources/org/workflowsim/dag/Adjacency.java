@@ -0,0 +1,36 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim.dag;
+
+import java.util.List;
+
+/**
+ * Adjacency gives the children of the nodes of a DAG, so that a DagAnalysis
+ * can be built over any node type (tasks, task sets, jobs).
+ *
+ * @param <T> the node type
+ * @since WorkflowSim Toolkit 1.1
+ */
+public interface Adjacency<T> {
+
+    /**
+     * Gets the children of a node
+     *
+     * @param node the node
+     * @return the children, in order
+     */
+    List<? extends T> getChildren(T node);
+}
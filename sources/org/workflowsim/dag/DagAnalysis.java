@@ -0,0 +1,549 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim.dag;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.workflowsim.Task;
+
+/**
+ * DagAnalysis computes the structural properties of a DAG used by the parser,
+ * the planners and the clustering methods: the topological order, the level
+ * of each node, the impact factors, the upward and downward ranks and the
+ * critical path. Each of them is computed in O(V+E) by an iterative pass over
+ * the topological order, so deep workflows do not overflow the stack and wide
+ * ones are not walked once per path.
+ *
+ * The nodes are numbered by their position in the list given. The edges are
+ * kept in compressed arrays: the children of node i are
+ * childIndex[childStart[i]] to childIndex[childStart[i + 1] - 1], in the order
+ * of the adjacency, and the parents of node i are
+ * parentIndex[parentStart[i]] to parentIndex[parentStart[i + 1] - 1], in the
+ * order of the nodes. Edges to nodes that are not in the list are ignored.
+ *
+ * A DAG kept in arrays, such as a WorkflowGraph, can be analysed without node
+ * objects: its nodes are then only addressed by index.
+ *
+ * @param <T> the node type
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class DagAnalysis<T> {
+
+    /**
+     * The adjacency of tasks and jobs.
+     */
+    public static final Adjacency<Task> TASKS = new Adjacency<Task>() {
+        @Override
+        public List<Task> getChildren(Task node) {
+            return node.getChildList();
+        }
+    };
+    /**
+     * The nodes, null if they are only addressed by index.
+     */
+    private final List<T> nodes;
+    /**
+     * Maps from node to its index, null if there are no nodes.
+     */
+    private final Map<Object, Integer> index;
+    private int[] childStart;
+    private int[] childIndex;
+    private int[] parentStart;
+    private int[] parentIndex;
+    /**
+     * parentEdge[p] is the index in childIndex of the edge parentIndex[p].
+     */
+    private int[] parentEdge;
+    /**
+     * The node indexes in topological order.
+     */
+    private int[] order;
+    /**
+     * position[i] is the position of node i in order.
+     */
+    private int[] position;
+    /**
+     * The levels, computed when first asked.
+     */
+    private int[] levels;
+    private int maxLevel;
+
+    /**
+     * Builds the analysis of a DAG
+     *
+     * @param nodes the nodes, each once
+     * @param adjacency the children of the nodes
+     * @throws IllegalArgumentException if the graph contains a cycle
+     */
+    public DagAnalysis(List<? extends T> nodes, Adjacency<? super T> adjacency) {
+        int size = nodes.size();
+        this.nodes = new ArrayList<>(nodes);
+        this.index = new IdentityHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            index.put(this.nodes.get(i), i);
+        }
+
+        int[] start = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            int edges = 0;
+            for (Object child : adjacency.getChildren(this.nodes.get(i))) {
+                if (index.containsKey(child)) {
+                    edges++;
+                }
+            }
+            start[i + 1] = start[i] + edges;
+        }
+        int[] children = new int[start[size]];
+        for (int i = 0; i < size; i++) {
+            int e = start[i];
+            for (Object child : adjacency.getChildren(this.nodes.get(i))) {
+                Integer c = index.get(child);
+                if (c != null) {
+                    children[e++] = c;
+                }
+            }
+        }
+        init(size, start, children);
+    }
+
+    /**
+     * Builds the analysis of a DAG kept in arrays. The nodes are only
+     * addressed by index, getNode() and the methods returning nodes are not
+     * supported.
+     *
+     * @param size the number of nodes
+     * @param childStart the offsets of the children of each node in
+     * childIndex, of size size + 1, shared
+     * @param childIndex the child of each edge, shared
+     * @throws IllegalArgumentException if the graph contains a cycle
+     */
+    public DagAnalysis(int size, int[] childStart, int[] childIndex) {
+        this.nodes = null;
+        this.index = null;
+        init(size, childStart, childIndex);
+    }
+
+    /**
+     * Builds the parent arrays and the topological order from the child
+     * arrays.
+     */
+    private void init(int size, int[] childStart, int[] childIndex) {
+        this.childStart = childStart;
+        this.childIndex = childIndex;
+        int edgeNum = childStart[size];
+        parentStart = new int[size + 1];
+        for (int e = 0; e < edgeNum; e++) {
+            parentStart[childIndex[e] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            parentStart[i + 1] += parentStart[i];
+        }
+        parentIndex = new int[edgeNum];
+        parentEdge = new int[edgeNum];
+        int[] parentNext = new int[size];
+        System.arraycopy(parentStart, 0, parentNext, 0, size);
+        for (int i = 0; i < size; i++) {
+            for (int e = childStart[i]; e < childStart[i + 1]; e++) {
+                int p = parentNext[childIndex[e]]++;
+                parentIndex[p] = i;
+                parentEdge[p] = e;
+            }
+        }
+
+        // Kahn's algorithm, roots are taken in node order
+        int[] inDegree = new int[size];
+        for (int i = 0; i < size; i++) {
+            inDegree[i] = parentStart[i + 1] - parentStart[i];
+        }
+        order = new int[size];
+        int head = 0, tail = 0;
+        for (int i = 0; i < size; i++) {
+            if (inDegree[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int i = order[head++];
+            for (int e = childStart[i]; e < childStart[i + 1]; e++) {
+                if (--inDegree[childIndex[e]] == 0) {
+                    order[tail++] = childIndex[e];
+                }
+            }
+        }
+        if (tail < size) {
+            throw new IllegalArgumentException("The workflow contains a cycle");
+        }
+        position = new int[size];
+        for (int k = 0; k < size; k++) {
+            position[order[k]] = k;
+        }
+    }
+
+    /**
+     * Gets the number of nodes
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Gets a node
+     *
+     * @param i the index of the node
+     * @return the node
+     */
+    public T getNode(int i) {
+        return getNodes().get(i);
+    }
+
+    /**
+     * Gets the nodes
+     *
+     * @return the nodes
+     * @throws UnsupportedOperationException if the nodes are only addressed
+     * by index
+     */
+    private List<T> getNodes() {
+        if (nodes == null) {
+            throw new UnsupportedOperationException("The nodes are only addressed by index");
+        }
+        return nodes;
+    }
+
+    /**
+     * Gets the index of a node
+     *
+     * @param node the node
+     * @return the index, or -1 if the node is not in the DAG
+     */
+    public int indexOf(T node) {
+        Integer i = index == null ? null : index.get(node);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Gets the number of edges
+     *
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+        return childIndex.length;
+    }
+
+    /**
+     * Gets the offsets of the children of each node, of size size() + 1. The
+     * array is shared and must not be modified.
+     *
+     * @return the offsets in getChildIndex()
+     */
+    public int[] getChildStart() {
+        return childStart;
+    }
+
+    /**
+     * Gets the children of all the nodes, by edge. The array is shared and
+     * must not be modified.
+     *
+     * @return the child of each edge
+     */
+    public int[] getChildIndex() {
+        return childIndex;
+    }
+
+    /**
+     * Gets the offsets of the parents of each node, of size size() + 1. The
+     * array is shared and must not be modified.
+     *
+     * @return the offsets in getParentIndex()
+     */
+    public int[] getParentStart() {
+        return parentStart;
+    }
+
+    /**
+     * Gets the parents of all the nodes. The array is shared and must not be
+     * modified.
+     *
+     * @return the parent of each edge, in the parent order
+     */
+    public int[] getParentIndex() {
+        return parentIndex;
+    }
+
+    /**
+     * Gets the edge in getChildIndex() of each entry of getParentIndex(), so
+     * that a cost indexed by edge can be read from the child side. The array
+     * is shared and must not be modified.
+     *
+     * @return the edge of each parent entry
+     */
+    public int[] getParentEdge() {
+        return parentEdge;
+    }
+
+    /**
+     * Gets the node indexes in topological order. Among the nodes that are
+     * ready at the same time, the earlier in the node list comes first. The
+     * array is shared and must not be modified.
+     *
+     * @return the topological order
+     */
+    public int[] getTopologicalOrder() {
+        return order;
+    }
+
+    /**
+     * Gets the position of a node in the topological order
+     *
+     * @param i the index of the node
+     * @return the position
+     */
+    public int getTopologicalPosition(int i) {
+        return position[i];
+    }
+
+    /**
+     * Gets the nodes in topological order
+     *
+     * @return the nodes
+     */
+    public List<T> getTopologicalList() {
+        List<T> list = new ArrayList<>(order.length);
+        for (int i : order) {
+            list.add(getNode(i));
+        }
+        return list;
+    }
+
+    /**
+     * Gets the level of the nodes: 1 for a root, and one more than the
+     * deepest parent otherwise, i.e. the length of the longest path from a
+     * root. The array is shared and must not be modified.
+     *
+     * @return the levels
+     */
+    public int[] getLevels() {
+        if (levels == null) {
+            int[] depth = new int[order.length];
+            int max = 0;
+            for (int i : order) {
+                int level = 0;
+                for (int p = parentStart[i]; p < parentStart[i + 1]; p++) {
+                    level = Math.max(level, depth[parentIndex[p]]);
+                }
+                depth[i] = level + 1;
+                max = Math.max(max, depth[i]);
+            }
+            maxLevel = max;
+            levels = depth;
+        }
+        return levels;
+    }
+
+    /**
+     * Gets the deepest level
+     *
+     * @return the deepest level, 0 if the DAG is empty
+     */
+    public int getMaxLevel() {
+        getLevels();
+        return maxLevel;
+    }
+
+    /**
+     * Gets the nodes of each level, in node order
+     *
+     * @return the nodes per level
+     */
+    public Map<Integer, List<T>> getNodesAtLevels() {
+        int[] level = getLevels();
+        Map<Integer, List<T>> map = new HashMap<>();
+        for (int i = 0; i < level.length; i++) {
+            List<T> list = map.get(level[i]);
+            if (list == null) {
+                list = new ArrayList<>();
+                map.put(level[i], list);
+            }
+            list.add(getNode(i));
+        }
+        return map;
+    }
+
+    /**
+     * Gets the impact factors, with the nodes without children as exits
+     *
+     * @return the impact factor of each node
+     */
+    public double[] getImpactFactors() {
+        int exitNum = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (childStart[i] == childStart[i + 1]) {
+                exitNum++;
+            }
+        }
+        int[] exits = new int[exitNum];
+        exitNum = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (childStart[i] == childStart[i + 1]) {
+                exits[exitNum++] = i;
+            }
+        }
+        return getImpactFactors(exits);
+    }
+
+    /**
+     * Gets the impact factors. Each exit gets an equal share of 1, and the
+     * impact factor of a node is split evenly among its parents, so the
+     * impact factor of a node is the sum over its paths to the exits of the
+     * share of the exit divided by the number of parents along the path.
+     *
+     * @param exits the exits
+     * @return the impact factor of each node
+     */
+    public double[] getImpactFactors(Collection<? extends T> exits) {
+        int[] indexes = new int[exits.size()];
+        int n = 0;
+        for (T exit : exits) {
+            indexes[n++] = indexOf(exit);
+        }
+        return getImpactFactors(indexes);
+    }
+
+    /**
+     * Gets the impact factors
+     *
+     * @param exits the indexes of the exits
+     * @return the impact factor of each node
+     * @see #getImpactFactors(java.util.Collection)
+     */
+    public double[] getImpactFactors(int[] exits) {
+        double[] impact = new double[order.length];
+        if (exits.length == 0) {
+            return impact;
+        }
+        double share = 1.0 / exits.length;
+        for (int exit : exits) {
+            impact[exit] += share;
+        }
+        for (int k = order.length - 1; k >= 0; k--) {
+            int i = order[k];
+            int size = parentStart[i + 1] - parentStart[i];
+            if (size > 0 && impact[i] != 0.0) {
+                double avg = impact[i] / size;
+                for (int p = parentStart[i]; p < parentStart[i + 1]; p++) {
+                    impact[parentIndex[p]] += avg;
+                }
+            }
+        }
+        return impact;
+    }
+
+    /**
+     * Gets the upward ranks, as defined in the HEFT paper: the cost of a node
+     * plus the most expensive path from it to an exit.
+     *
+     * @param nodeCosts the cost of each node
+     * @param edgeCosts the cost of each edge, by index in getChildIndex(), or
+     * null for none
+     * @return the upward rank of each node
+     */
+    public double[] getUpwardRanks(double[] nodeCosts, double[] edgeCosts) {
+        double[] rank = new double[order.length];
+        for (int k = order.length - 1; k >= 0; k--) {
+            int i = order[k];
+            double max = 0.0;
+            for (int e = childStart[i]; e < childStart[i + 1]; e++) {
+                max = Math.max(max, edgeCost(edgeCosts, e) + rank[childIndex[e]]);
+            }
+            rank[i] = nodeCosts[i] + max;
+        }
+        return rank;
+    }
+
+    /**
+     * Gets the downward ranks: the most expensive path from a root to a node,
+     * without the cost of the node.
+     *
+     * @param nodeCosts the cost of each node
+     * @param edgeCosts the cost of each edge, by index in getChildIndex(), or
+     * null for none
+     * @return the downward rank of each node
+     */
+    public double[] getDownwardRanks(double[] nodeCosts, double[] edgeCosts) {
+        double[] rank = new double[order.length];
+        for (int i : order) {
+            double max = 0.0;
+            for (int p = parentStart[i]; p < parentStart[i + 1]; p++) {
+                int parent = parentIndex[p];
+                max = Math.max(max, rank[parent] + nodeCosts[parent]
+                        + edgeCost(edgeCosts, parentEdge[p]));
+            }
+            rank[i] = max;
+        }
+        return rank;
+    }
+
+    /**
+     * Gets the critical path, the most expensive path from a root to an exit.
+     * Ties are broken by the node and edge order.
+     *
+     * @param nodeCosts the cost of each node
+     * @param edgeCosts the cost of each edge, by index in getChildIndex(), or
+     * null for none
+     * @return the nodes of the path, from the root, empty if the DAG is empty
+     */
+    public List<T> getCriticalPath(double[] nodeCosts, double[] edgeCosts) {
+        if (order.length == 0) {
+            return Collections.emptyList();
+        }
+        double[] rank = getUpwardRanks(nodeCosts, edgeCosts);
+        int node = -1;
+        for (int i = 0; i < order.length; i++) {
+            if (parentStart[i] == parentStart[i + 1] && (node < 0 || rank[i] > rank[node])) {
+                node = i;
+            }
+        }
+        List<T> path = new ArrayList<>();
+        while (node >= 0) {
+            path.add(getNode(node));
+            int next = -1;
+            double max = 0.0;
+            for (int e = childStart[node]; e < childStart[node + 1]; e++) {
+                double cost = edgeCost(edgeCosts, e) + rank[childIndex[e]];
+                if (next < 0 || cost > max) {
+                    next = childIndex[e];
+                    max = cost;
+                }
+            }
+            node = next;
+        }
+        return path;
+    }
+
+    /**
+     * Gets the cost of an edge
+     */
+    private static double edgeCost(double[] edgeCosts, int e) {
+        return edgeCosts == null ? 0.0 : edgeCosts[e];
+    }
+}
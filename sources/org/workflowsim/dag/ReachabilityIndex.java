@@ -0,0 +1,123 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim.dag;
+
+/**
+ * ReachabilityIndex answers in O(1) whether a node of a DAG is an ancestor of
+ * another. The ancestors of each node are kept in a bitset over the
+ * topological positions, built in one pass over the topological order: the
+ * ancestors of a node are its parents and their ancestors. Since the ancestors
+ * of a node come before it in the topological order, the bitset of the node
+ * at position k only has k bits, so building the index takes O(V * E / 64)
+ * time and O(V * V / 128) bytes.
+ *
+ * The index is a snapshot of the DAG. Removing an edge that is implied by
+ * another path, as a transitive reduction does, does not change it.
+ *
+ * @param <T> the node type
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class ReachabilityIndex<T> {
+
+    /**
+     * The analysis of the DAG.
+     */
+    private final DagAnalysis<T> dag;
+    /**
+     * ancestors[i] has the bit of the topological position of each ancestor
+     * of node i.
+     */
+    private final long[][] ancestors;
+
+    /**
+     * Builds the index of a DAG
+     *
+     * @param dag the analysis of the DAG
+     */
+    public ReachabilityIndex(DagAnalysis<T> dag) {
+        this.dag = dag;
+        int[] order = dag.getTopologicalOrder();
+        int[] parentStart = dag.getParentStart();
+        int[] parentIndex = dag.getParentIndex();
+        ancestors = new long[order.length][];
+        for (int k = 0; k < order.length; k++) {
+            int i = order[k];
+            long[] bits = new long[(k + 63) >>> 6];
+            for (int p = parentStart[i]; p < parentStart[i + 1]; p++) {
+                int parent = parentIndex[p];
+                long[] inherited = ancestors[parent];
+                for (int w = 0; w < inherited.length; w++) {
+                    bits[w] |= inherited[w];
+                }
+                int position = dag.getTopologicalPosition(parent);
+                bits[position >>> 6] |= 1L << position;
+            }
+            ancestors[i] = bits;
+        }
+    }
+
+    /**
+     * Gets the analysis of the DAG indexed
+     *
+     * @return the analysis
+     */
+    public DagAnalysis<T> getDag() {
+        return dag;
+    }
+
+    /**
+     * Checks whether a node is an ancestor of another
+     *
+     * @param ancestor the index of the ancestor
+     * @param node the index of the node
+     * @return true if there is a path of at least one edge from ancestor to
+     * node
+     */
+    public boolean isAncestor(int ancestor, int node) {
+        int position = dag.getTopologicalPosition(ancestor);
+        long[] bits = ancestors[node];
+        return (position >>> 6) < bits.length
+                && (bits[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /**
+     * Checks whether a node is an ancestor of another
+     *
+     * @param ancestor the ancestor
+     * @param node the node
+     * @return true if there is a path of at least one edge from ancestor to
+     * node, false if either is not in the DAG
+     */
+    public boolean isAncestor(T ancestor, T node) {
+        int a = dag.indexOf(ancestor);
+        int n = dag.indexOf(node);
+        return a >= 0 && n >= 0 && isAncestor(a, n);
+    }
+
+    /**
+     * Gets the number of ancestors of a node
+     *
+     * @param node the index of the node
+     * @return the number of ancestors
+     */
+    public int getAncestorCount(int node) {
+        int count = 0;
+        for (long word : ancestors[node]) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -20,10 +20,14 @@ import org.apache.commons.math3.distribution.LogNormalDistribution;
 import org.apache.commons.math3.distribution.NormalDistribution;
 import org.apache.commons.math3.distribution.RealDistribution;
 import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.core.SimulationContext;
 import org.workflowsim.Job;
 import org.workflowsim.Task;
 import org.apache.commons.math3.distribution.WeibullDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
 import org.workflowsim.utils.DistributionGenerator;
+import org.workflowsim.utils.Parameters;
 
 /**
  * FailureGenerator creates a failure when a job returns
@@ -40,8 +44,25 @@ public class FailureGenerator {
      * is too high for this workflow
      */
     private static final int maxFailureSizeExtension = 50;
-    private static int failureSizeExtension = 0;
     private static final boolean hasChangeTime = false;
+
+    /**
+     * The state of the generator in a simulation context
+     */
+    private static final class State {
+
+        private int failureSizeExtension = 0;
+    }
+
+    /**
+     * The key of the state in the simulation contexts
+     */
+    private static final SimulationContext.Key<State> STATE = new SimulationContext.Key<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
     /**
      *
      * @param alpha
@@ -50,19 +71,23 @@ public class FailureGenerator {
      */
     protected static RealDistribution getDistribution(double alpha, double beta) {
         RealDistribution distribution = null;
+        RandomGenerator random = Parameters.getRandomGenerator();
+        if (random == null) {
+            random = new Well19937c();
+        }
         switch (FailureParameters.getFailureDistribution()) {
             case LOGNORMAL:
-                distribution = new LogNormalDistribution(1.0 / alpha, beta);
+                distribution = new LogNormalDistribution(random, 1.0 / alpha, beta);
                 break;
             case WEIBULL:
-                distribution = new WeibullDistribution(beta, 1.0 / alpha);
+                distribution = new WeibullDistribution(random, beta, 1.0 / alpha);
                 break;
             case GAMMA:
-                distribution = new GammaDistribution(beta, 1.0 / alpha);
+                distribution = new GammaDistribution(random, beta, 1.0 / alpha);
                 break;
             case NORMAL:
                 //beta is the std, 1.0/alpha is the mean
-                distribution = new NormalDistribution(1.0 / alpha, beta);
+                distribution = new NormalDistribution(random, 1.0 / alpha, beta);
                 break;
             default:
                 break;
@@ -118,32 +143,65 @@ public class FailureGenerator {
         double end = task.getTaskFinishTime();
         
         
-        double[] samples = generator.getCumulativeSamples();
-        
-        while (samples[samples.length - 1] < start) {
+        while (generator.getCumulativeSample(generator.getSampleCount() - 1) < start) {
             generator.extendSamples();
-            samples = generator.getCumulativeSamples();
-            failureSizeExtension++;
-            if (failureSizeExtension >= maxFailureSizeExtension) {
+            State state = SimulationContext.current().get(STATE);
+            state.failureSizeExtension++;
+            if (state.failureSizeExtension >= maxFailureSizeExtension) {
                 throw new Exception("Error rate is too high such that the simulator terminates");
 
             }
         }
 
-        for (int sampleId = 0; sampleId < samples.length; sampleId++) {
-            if (end < samples[sampleId]) {
-                //no failure
-                return false;
-            }
-            if (start <= samples[sampleId]) {
-                //has a failure
-                /** The idea is we need to update the cursor in generator**/
-                generator.getNextSample();
-                return true;
+        /**
+         * The first failure time after the start of the task, or after its
+         * end if that comes first
+         */
+        int sampleId;
+        if (generator.hasNegativeSamples()) {
+            sampleId = 0;
+            while (sampleId < generator.getSampleCount()
+                    && end >= generator.getCumulativeSample(sampleId)
+                    && start > generator.getCumulativeSample(sampleId)) {
+                sampleId++;
             }
+        } else {
+            sampleId = Math.min(searchCumulativeSamples(generator, start, false),
+                    searchCumulativeSamples(generator, end, true));
+        }
+        if (sampleId == generator.getSampleCount() || end < generator.getCumulativeSample(sampleId)) {
+            //no failure
+            return false;
         }
+        //has a failure
+        /** The idea is we need to update the cursor in generator**/
+        generator.getNextSample();
+        return true;
+    }
 
-        return false;
+    /**
+     * Searches the sorted cumulative samples of a generator
+     *
+     * @param generator the generator, without negative samples
+     * @param time the time
+     * @param after whether the sample has to be after the time, rather than
+     * at or after it
+     * @return the index of the first cumulative sample at or after the time,
+     * or getSampleCount() if there is none
+     */
+    private static int searchCumulativeSamples(DistributionGenerator generator, double time, boolean after) {
+        int low = 0;
+        int high = generator.getSampleCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            double sample = generator.getCumulativeSample(mid);
+            if (sample < time || (after && sample == time)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
     /**
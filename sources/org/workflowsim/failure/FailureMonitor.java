@@ -16,13 +16,22 @@
 package org.workflowsim.failure;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.workflowsim.failure.FailureParameters.FTCEstimator;
 
 /**
- * FailureMonitor collects failure information
+ * FailureMonitor collects failure information. It keeps the number of failed
+ * and monitored tasks of all the records, per depth and per vm, so that a
+ * failure rate is known in O(1) without going through the records. The rates
+ * are estimated over all the records, or over the last ones, or with a decay
+ * (see FailureParameters.setEstimator()). The records themselves are only
+ * kept if FailureParameters.isKeepRecords() is set. The rates are kept per
+ * simulation context
  *
  * @author Weiwei Chen
  * @since WorkflowSim Toolkit 1.0
@@ -31,21 +40,128 @@ import org.cloudbus.cloudsim.Log;
 public class FailureMonitor {
 
     /**
-     * VM ID to a Failure Record. *
+     * The records of a simulation context
      */
-    protected static Map<Integer, List<FailureRecord>> vm2record;
+    private static final class State {
+
+        /**
+         * The estimator and its parameter, read at init()
+         */
+        private FTCEstimator estimator;
+        private double estimatorParameter;
+        /**
+         * VM ID to its failure rate. *
+         */
+        private Map<Integer, FailureRate> vm2rate;
+        /**
+         * Type to its failure rate. *
+         */
+        private Map<Integer, FailureRate> type2rate;
+        /**
+         * The failure rate of all the records.
+         */
+        private FailureRate rate;
+        /**
+         * All the record list, null if the records are not kept.
+         */
+        private List<FailureRecord> recordList;
+
+        /**
+         * Gets the failure rate of a key, creating it if needed
+         */
+        private FailureRate getRate(Map<Integer, FailureRate> map, int key) {
+            FailureRate keyRate = map.get(key);
+            if (keyRate == null) {
+                keyRate = new FailureRate(estimator, estimatorParameter);
+                map.put(key, keyRate);
+            }
+            return keyRate;
+        }
+    }
+
     /**
-     * Type to a Failure Record. *
+     * FailureRate is the number of failed tasks and of monitored tasks of a
+     * set of records, as seen by the estimator.
      */
-    protected static Map<Integer, List<FailureRecord>> type2record;
+    private static final class FailureRate {
+
+        private final FTCEstimator estimator;
+        private final double decay;
+        private double failures;
+        private double tasks;
+        /**
+         * The last records for ESTIMATOR_WINDOW, in a circular buffer.
+         */
+        private final int[] windowFailures;
+        private final int[] windowTasks;
+        private int windowNext;
+
+        FailureRate(FTCEstimator estimator, double parameter) {
+            this.estimator = estimator;
+            this.decay = parameter;
+            int window = estimator == FTCEstimator.ESTIMATOR_WINDOW ? (int) parameter : 0;
+            this.windowFailures = new int[window];
+            this.windowTasks = new int[window];
+        }
+
+        /**
+         * Adds a record
+         *
+         * @param failed the number of failed tasks
+         * @param all the number of tasks
+         */
+        void add(int failed, int all) {
+            switch (estimator) {
+                case ESTIMATOR_WINDOW:
+                    failures += failed - windowFailures[windowNext];
+                    tasks += all - windowTasks[windowNext];
+                    windowFailures[windowNext] = failed;
+                    windowTasks[windowNext] = all;
+                    windowNext = (windowNext + 1) % windowFailures.length;
+                    break;
+                case ESTIMATOR_DECAY:
+                    failures = failures * decay + failed;
+                    tasks = tasks * decay + all;
+                    break;
+                default:
+                    failures += failed;
+                    tasks += all;
+                    break;
+            }
+        }
+
+        /**
+         * Gets the task failure rate
+         *
+         * @return the rate, 0 without failure
+         */
+        double get() {
+            if (failures == 0) {
+                return 0;
+            }
+            return failures / tasks;
+        }
+    }
+
     /**
-     * JobID to a Failure Record. *
+     * The key of the records in the simulation contexts
      */
-    protected static Map<Integer, FailureRecord> jobid2record;
+    private static final SimulationContext.Key<State> STATE = new SimulationContext.Key<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
     /**
-     * All the record list.
+     * Gets the records of the current simulation context
+     *
+     * @return the records
      */
-    protected static List<FailureRecord> recordList;
+    private static State state() {
+        return SimulationContext.current().get(STATE);
+    }
+
     /**
      * Id to a Job.
      */
@@ -55,10 +171,26 @@ public class FailureMonitor {
      * Initialize a FailureMonitor object.
      */
     public static void init() {
-        vm2record = new HashMap<>();
-        type2record = new HashMap<>();
-        jobid2record = new HashMap<>();
-        recordList = new ArrayList<>();
+        State state = state();
+        state.estimator = FailureParameters.getEstimator();
+        state.estimatorParameter = FailureParameters.getEstimatorParameter();
+        state.vm2rate = new HashMap<>();
+        state.type2rate = new HashMap<>();
+        state.rate = new FailureRate(state.estimator, state.estimatorParameter);
+        state.recordList = FailureParameters.isKeepRecords() ? new ArrayList<FailureRecord>() : null;
+    }
+
+    /**
+     * Gets the failure records, if they are kept
+     *
+     * @return the records, empty if they are not kept
+     */
+    public static List<FailureRecord> getFailureRecords() {
+        List<FailureRecord> recordList = state().recordList;
+        if (recordList == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(recordList);
     }
 
     /**
@@ -124,32 +256,26 @@ public class FailureMonitor {
             return;
         }
 
+        State state = state();
         switch (FailureParameters.getMonitorMode()) {
             case MONITOR_VM:
-
-                if (!vm2record.containsKey(record.vmId)) {
-                    vm2record.put(record.vmId, new ArrayList<FailureRecord>());
-                }
-                vm2record.get(record.vmId).add(record);
-
+                state.getRate(state.vm2rate, record.vmId).add(record.failedTasksNum, record.allTaskNum);
                 break;
             case MONITOR_JOB:
-
-                if (!type2record.containsKey(record.depth)) {
-                    type2record.put(record.depth, new ArrayList<FailureRecord>());
-                }
-                type2record.get(record.depth).add(record);
-
+                state.getRate(state.type2rate, record.depth).add(record.failedTasksNum, record.allTaskNum);
                 break;
             case MONITOR_NONE:
                 break;
         }
 
-        recordList.add(record);
+        state.rate.add(record.failedTasksNum, record.allTaskNum);
+        if (state.recordList != null) {
+            state.recordList.add(record);
+        }
     }
 
     /**
-     * Update the detected task failure rate based on record lists
+     * Gets the detected task failure rate, in O(1)
      *
      * @param workflowId, doesn't work in this version
      * @param type, the type of job or vm
@@ -157,50 +283,22 @@ public class FailureMonitor {
      */
     public static double analyze(int workflowId, int type) {
 
-        /**
-         * workflow level : all jobs together *
-         */
-        int sumFailures = 0;
-        int sumJobs = 0;
+        State state = state();
+        FailureRate rate = null;
         switch (FailureParameters.getMonitorMode()) {
             case MONITOR_ALL:
-
-                for (FailureRecord record : recordList) {
-                    sumFailures += record.failedTasksNum;
-                    sumJobs += record.allTaskNum;
-                }
-
+                /**
+                 * workflow level : all jobs together *
+                 */
+                rate = state.rate;
                 break;
-
             case MONITOR_JOB:
-
-                if (type2record.containsKey(type)) {
-                    for (FailureRecord record : type2record.get(type)) {
-
-                        sumFailures += record.failedTasksNum;
-                        sumJobs += record.allTaskNum;
-                    }
-                }
-
+                rate = state.type2rate.get(type);
                 break;
             case MONITOR_VM:
-
-                if (vm2record.containsKey(type)) {
-                    for (FailureRecord record : vm2record.get(type)) {
-
-                        sumFailures += record.failedTasksNum;
-                        sumJobs += record.allTaskNum;
-                    }
-                }
-
+                rate = state.vm2rate.get(type);
                 break;
         }
-
-
-        if (sumFailures == 0) {
-            return 0;
-        }
-        double alpha = (double) ((double) sumFailures / (double) sumJobs);
-        return alpha;
+        return rate == null ? 0 : rate.get();
     }
 }
@@ -18,6 +18,7 @@
 package org.workflowsim.failure;
 
 import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.SimulationContext;
 import org.workflowsim.utils.DistributionGenerator;
 import org.workflowsim.utils.DistributionGenerator.DistributionFamily;
 
@@ -27,15 +28,6 @@ import org.workflowsim.utils.DistributionGenerator.DistributionFamily;
  */
 public class FailureParameters {
 
-    /**
-     * Task Failure Rate 
-     * first index is vmId ;second index is task depth
-     * If FAILURE_JOB is specified first index is 0 only
-     * If FAILURE_VM is specified second index is 0 only
-     *
-     * @pre 0.0<= value <= 1.0
-     */
-    private static DistributionGenerator[][] generators;
     /**
      * Fault Tolerant Clustering algorithm
      */
@@ -61,27 +53,90 @@ public class FailureParameters {
         FAILURE_NONE, FAILURE_ALL, FAILURE_VM, FAILURE_JOB, FAILURE_VM_JOB
     }
 
-    /**
-     * Fault Tolerant Clustering method
+    /*
+     * FTC Monitor estimator of the task failure rate
+     * ESTIMATOR_ALL: all the tasks monitored so far
+     * ESTIMATOR_WINDOW: the last tasks monitored only
+     * ESTIMATOR_DECAY: all the tasks, the weight of a task decaying with
+     * each task monitored after it
      */
-    private static FTCluteringAlgorithm FTClusteringAlgorithm = FTCluteringAlgorithm.FTCLUSTERING_NOOP;
+    public enum FTCEstimator {
+
+        ESTIMATOR_ALL, ESTIMATOR_WINDOW, ESTIMATOR_DECAY
+    }
+
     /**
-     * Fault Tolerant Clustering monitor mode
+     * Invalid return value
      */
-    private static FTCMonitor monitorMode = FTCMonitor.MONITOR_NONE;
+    private static final int INVALID = -1;
+
     /**
-     * Fault Tolerant Clustering failure generation mode
+     * The failure parameters of a simulation context
      */
-    private static FTCFailure failureMode = FTCFailure.FAILURE_NONE;
-    
+    private static final class State {
+
+        /**
+         * Task Failure Rate 
+         * first index is vmId ;second index is task depth
+         * If FAILURE_JOB is specified first index is 0 only
+         * If FAILURE_VM is specified second index is 0 only
+         *
+         * @pre 0.0<= value <= 1.0
+         */
+        private DistributionGenerator[][] generators;
+        /**
+         * Fault Tolerant Clustering method
+         */
+        private FTCluteringAlgorithm FTClusteringAlgorithm = FTCluteringAlgorithm.FTCLUSTERING_NOOP;
+        /**
+         * Fault Tolerant Clustering monitor mode
+         */
+        private FTCMonitor monitorMode = FTCMonitor.MONITOR_NONE;
+        /**
+         * Fault Tolerant Clustering failure generation mode
+         */
+        private FTCFailure failureMode = FTCFailure.FAILURE_NONE;
+        
+        /**
+         * The distribution of the failure 
+         */
+        private DistributionFamily distribution = DistributionFamily.WEIBULL;
+
+        /**
+         * The estimator of the task failure rate monitored
+         */
+        private FTCEstimator estimator = FTCEstimator.ESTIMATOR_ALL;
+
+        /**
+         * The window size of ESTIMATOR_WINDOW or the decay factor of
+         * ESTIMATOR_DECAY
+         */
+        private double estimatorParameter = 0.0;
+
+        /**
+         * Whether FailureMonitor keeps the failure records
+         */
+        private boolean keepRecords = false;
+    }
+
     /**
-     * The distribution of the failure 
+     * The key of the failure parameters in the simulation contexts
      */
-    private static DistributionFamily distribution = DistributionFamily.WEIBULL;
+    private static final SimulationContext.Key<State> STATE = new SimulationContext.Key<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
     /**
-     * Invalid return value
+     * Gets the failure parameters of the current simulation context
+     *
+     * @return the failure parameters
      */
-    private static final int INVALID = -1;
+    private static State state() {
+        return SimulationContext.current().get(STATE);
+    }
 
     /**
      * 
@@ -94,10 +149,11 @@ public class FailureParameters {
      */
     public static void init(FTCluteringAlgorithm fMethod, FTCMonitor monitor, 
             FTCFailure failure, DistributionGenerator[][] failureGenerators) {
-        FTClusteringAlgorithm = fMethod;
-        monitorMode = monitor;
-        failureMode = failure;
-        generators = failureGenerators;
+        State state = state();
+        state.FTClusteringAlgorithm = fMethod;
+        state.monitorMode = monitor;
+        state.failureMode = failure;
+        state.generators = failureGenerators;
     }
 
     /**
@@ -112,7 +168,7 @@ public class FailureParameters {
     public static void init(FTCluteringAlgorithm fMethod, FTCMonitor monitor, 
             FTCFailure failure, DistributionGenerator[][] failureGenerators, 
             DistributionFamily dist) {
-        distribution = dist;
+        state().distribution = dist;
         init(fMethod, monitor, failure, failureGenerators);
     }
     /**
@@ -123,6 +179,7 @@ public class FailureParameters {
      * @post $none
      */
     public static DistributionGenerator[][] getFailureGenerators() {
+        DistributionGenerator[][] generators = state().generators;
         if(generators==null){
             Log.printLine("ERROR: alpha is not initialized");
         }
@@ -134,6 +191,7 @@ public class FailureParameters {
      * @return max
      */
     public static int getFailureGeneratorsMaxFirstIndex(){
+        DistributionGenerator[][] generators = state().generators;
         if(generators==null || generators.length == 0){
             Log.printLine("ERROR: alpha is not initialized");
             return INVALID;
@@ -148,6 +206,7 @@ public class FailureParameters {
     public static int getFailureGeneratorsMaxSecondIndex(){
         //Test whether it is valid
         getFailureGeneratorsMaxFirstIndex();
+        DistributionGenerator[][] generators = state().generators;
         if(generators[0]==null || generators[0].length == 0){
             Log.printLine("ERROR: alpha is not initialized");
             return INVALID;
@@ -163,7 +222,7 @@ public class FailureParameters {
      * @return task failure rate
      */
     public static DistributionGenerator getGenerator(int vmIndex, int taskDepth) {
-        return generators[vmIndex][taskDepth];
+        return state().generators[vmIndex][taskDepth];
     }
     
     /**
@@ -174,7 +233,7 @@ public class FailureParameters {
      * @post $none
      */
     public static FTCFailure getFailureGeneratorMode() {
-        return failureMode;
+        return state().failureMode;
     }
 
     /**
@@ -185,7 +244,7 @@ public class FailureParameters {
      * @post $none
      */
     public static FTCMonitor getMonitorMode() {
-        return monitorMode;
+        return state().monitorMode;
     }
 
     /**
@@ -196,14 +255,72 @@ public class FailureParameters {
      * @post $none
      */
     public static FTCluteringAlgorithm getFTCluteringAlgorithm() {
-        return FTClusteringAlgorithm;
+        return state().FTClusteringAlgorithm;
     }
     
+    /**
+     * Sets the estimator of the task failure rate used by FailureMonitor. It
+     * has to be set before FailureMonitor.init()
+     *
+     * @param estimator the estimator
+     * @param parameter the number of tasks in the window of
+     * ESTIMATOR_WINDOW, or the factor in (0, 1] applied to the previous tasks
+     * each time a task is monitored with ESTIMATOR_DECAY
+     */
+    public static void setEstimator(FTCEstimator estimator, double parameter) {
+        if (estimator == FTCEstimator.ESTIMATOR_WINDOW && parameter < 1) {
+            throw new IllegalArgumentException("The window must hold at least one task");
+        }
+        if (estimator == FTCEstimator.ESTIMATOR_DECAY && (parameter <= 0 || parameter > 1)) {
+            throw new IllegalArgumentException("The decay factor must be in (0, 1]");
+        }
+        State state = state();
+        state.estimator = estimator;
+        state.estimatorParameter = parameter;
+    }
+
+    /**
+     * Gets the estimator of the task failure rate
+     *
+     * @return the estimator
+     */
+    public static FTCEstimator getEstimator() {
+        return state().estimator;
+    }
+
+    /**
+     * Gets the window size or the decay factor of the estimator
+     *
+     * @return the parameter of the estimator
+     */
+    public static double getEstimatorParameter() {
+        return state().estimatorParameter;
+    }
+
+    /**
+     * Sets whether FailureMonitor keeps every failure record, one per task
+     * monitored. The failure rates do not need them.
+     *
+     * @param keep whether the records are kept
+     */
+    public static void setKeepRecords(boolean keep) {
+        state().keepRecords = keep;
+    }
+
+    /**
+     * Checks whether FailureMonitor keeps the failure records
+     *
+     * @return whether the records are kept
+     */
+    public static boolean isKeepRecords() {
+        return state().keepRecords;
+    }
+
     /**
      * Gets the failure distribution
      * @return distribution
      */
     public static DistributionFamily getFailureDistribution(){
-        return distribution;
+        return state().distribution;
     }
 }
@@ -16,7 +16,9 @@
 package org.workflowsim.planning;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.cloudbus.cloudsim.Vm;
 import org.workflowsim.FileItem;
 import org.workflowsim.Task;
@@ -57,20 +59,25 @@ public class DHEFTPlanningAlgorithm extends BasePlanningAlgorithm {
         
         int vmNum = getVmList().size();
         int taskNum = getTaskList().size();
-        double [] availableTime = new double[vmNum];
+        VmSlotCalendar [] schedules = new VmSlotCalendar[vmNum];
+        for(int i = 0; i < vmNum; i++){
+            schedules[i] = new VmSlotCalendar();
+        }
         //cloudlet id starts from 1
         double [][] earliestStartTime = new double[taskNum + 1][vmNum];
         double [][] earliestFinishTime = new double[taskNum + 1][vmNum];
         int [] allocation = new int[taskNum + 1];
         
         List<Task> taskList = new ArrayList(getTaskList());
+        //the tasks not scheduled yet, so that checking a parent is O(1)
+        Set<Task> remaining = new HashSet<>(taskList);
         List<Task> readyList = new ArrayList<>();
         while(!taskList.isEmpty()){
             readyList.clear();
             for(Task task : taskList){
                 boolean ready = true;
                 for(Task parent: task.getParentList()){
-                    if(taskList.contains(parent)){
+                    if(remaining.contains(parent)){
                         ready = false;
                         break;
                     }
@@ -79,7 +86,8 @@ public class DHEFTPlanningAlgorithm extends BasePlanningAlgorithm {
                     readyList.add(task);
                 }
             }
-            taskList.removeAll(readyList);
+            remaining.removeAll(readyList);
+            taskList.removeAll(new HashSet<>(readyList));
             //schedule readylist
             for(Task task: readyList){
                 long [] fileSizes = new long[task.getParentList().size()];
@@ -105,7 +113,7 @@ public class DHEFTPlanningAlgorithm extends BasePlanningAlgorithm {
                 
                 for(int vmIndex = 0; vmIndex < getVmList().size(); vmIndex++){
                     Vm vm = (Vm)getVmList().get(vmIndex);
-                    double startTime = availableTime[vm.getId()];
+                    double startTime = schedules[vmIndex].getAvailableTime();
                     parentIndex = 0;
                     for(Task parent: task.getParentList()){
                         int allocatedVmId = allocation[parent.getCloudletId()];
@@ -129,7 +137,7 @@ public class DHEFTPlanningAlgorithm extends BasePlanningAlgorithm {
                 
                 allocation[task.getCloudletId()] = minTimeIndex;//we do not really need it use task.getVmId
                 task.setVmId(minTimeIndex);
-                availableTime[minTimeIndex] = minTime;
+                schedules[minTimeIndex].reserve(earliestStartTime[task.getCloudletId()][minTimeIndex], minTime);
             }
         }
         
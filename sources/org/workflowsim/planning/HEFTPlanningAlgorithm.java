@@ -16,66 +16,127 @@
 package org.workflowsim.planning;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import org.cloudbus.cloudsim.Consts;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.workflowsim.CondorVM;
 import org.workflowsim.FileItem;
 import org.workflowsim.Task;
+import org.workflowsim.dag.DagAnalysis;
 import org.workflowsim.utils.Parameters;
 
 /**
  * The HEFT planning algorithm.
  *
+ * Tasks and vms are addressed by their index in the task list and the vm list.
+ * Computation costs are kept in a flat task x vm table and transfer costs are
+ * only stored for the edges of the workflow, so the memory used is
+ * O(tasks * vms + edges). The busy slots of each vm are kept in a
+ * VmSlotCalendar, so finding the earliest slot of a task in a vm takes
+ * O(log S) for S tasks already planned on it.
+ *
+ * If Parameters.getPlanningParallelism() is greater than 1, the cost tables
+ * are filled and the vms of each task are evaluated on a fork/join pool. The
+ * best vm is still chosen by a sequential scan in vm list order, so the plan is
+ * the same as the sequential one.
+ *
  * @author Pedro Paulo Vezzá Campos
  * @date Oct 12, 2013
  */
 public class HEFTPlanningAlgorithm extends BasePlanningAlgorithm {
 
-    private Map<Task, Map<CondorVM, Double>> computationCosts;
-    private Map<Task, Map<Task, Double>> transferCosts;
-    private Map<Task, Double> rank;
-    private Map<CondorVM, List<Event>> schedules;
-    private Map<Task, Double> earliestFinishTimes;
-    private double averageBandwidth;
-
-    private class Event {
-
-        public double start;
-        public double finish;
+    /**
+     * The phases that may run on the fork/join pool.
+     */
+    private static final int COMPUTATION_COSTS = 0;
+    private static final int TRANSFER_COSTS = 1;
+    private static final int FINISH_TIMES = 2;
+    /**
+     * The number of tasks or vms below which a range is not split any more.
+     */
+    private static final int THRESHOLD = 64;
 
-        public Event(double start, double finish) {
-            this.start = start;
-            this.finish = finish;
-        }
-    }
+    private int taskNum;
+    private int vmNum;
+    private List<Task> tasks;
+    private List<CondorVM> vms;
+    private DagAnalysis<Task> dag;
+    /**
+     * computationCosts[task * vmNum + vm] is the time to run task on vm.
+     */
+    private double[] computationCosts;
+    private double[] averageComputationCosts;
+    /**
+     * The edges of task i are stored in [childStart[i], childStart[i + 1]) of
+     * childIndex and childCost (resp. parent*), as numbered by the
+     * DagAnalysis of the task list.
+     */
+    private int[] childStart;
+    private int[] childIndex;
+    private double[] childCost;
+    private int[] parentStart;
+    private int[] parentIndex;
+    private double[] parentCost;
+    private int[] topologicalOrder;
+    private double[] rank;
+    private VmSlotCalendar[] schedules;
+    private double[] earliestFinishTimes;
+    private int[] allocation;
+    private double averageBandwidth;
+    /**
+     * The ready time and the finish time of the task being allocated in each
+     * vm.
+     */
+    private double[] readyTimes;
+    private double[] finishTimes;
+    private ForkJoinPool pool;
 
-    private class TaskRank implements Comparable<TaskRank> {
+    /**
+     * Runs one phase over a range of tasks or vms, splitting it until it is
+     * smaller than THRESHOLD.
+     */
+    private class RangeAction extends RecursiveAction {
 
-        public Task task;
-        public Double rank;
+        private static final long serialVersionUID = 1L;
+        private final int phase;
+        private final int task;
+        private final int from;
+        private final int to;
 
-        public TaskRank(Task task, Double rank) {
+        public RangeAction(int phase, int task, int from, int to) {
+            this.phase = phase;
             this.task = task;
-            this.rank = rank;
+            this.from = from;
+            this.to = to;
         }
 
         @Override
-        public int compareTo(TaskRank o) {
-            return o.rank.compareTo(rank);
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                runRange(phase, task, from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeAction(phase, task, from, mid),
+                        new RangeAction(phase, task, mid, to));
+            }
         }
     }
 
     public HEFTPlanningAlgorithm() {
-        computationCosts = new HashMap<>();
-        transferCosts = new HashMap<>();
-        rank = new HashMap<>();
-        earliestFinishTimes = new HashMap<>();
-        schedules = new HashMap<>();
+    }
+
+    /**
+     * Gets the name of this planner, used in the log.
+     *
+     * @return the name
+     */
+    protected String getName() {
+        return "HEFT";
     }
 
     /**
@@ -83,23 +144,85 @@ public class HEFTPlanningAlgorithm extends BasePlanningAlgorithm {
      */
     @Override
     public void run() {
-        Log.printLine("HEFT planner running with " + getTaskList().size()
+        Log.printLine(getName() + " planner running with " + getTaskList().size()
                 + " tasks.");
 
+        tasks = getTaskList();
+        taskNum = tasks.size();
+        vms = new ArrayList<>();
+        for (Object vmObject : getVmList()) {
+            vms.add((CondorVM) vmObject);
+        }
+        vmNum = vms.size();
+        dag = new DagAnalysis<>(tasks, DagAnalysis.TASKS);
+
         averageBandwidth = calculateAverageBandwidth();
 
-        for (Object vmObject : getVmList()) {
-            CondorVM vm = (CondorVM) vmObject;
-            schedules.put(vm, new ArrayList<Event>());
+        schedules = new VmSlotCalendar[vmNum];
+        for (int i = 0; i < vmNum; i++) {
+            schedules[i] = new VmSlotCalendar();
         }
 
-        // Prioritization phase
-        calculateComputationCosts();
-        calculateTransferCosts();
-        calculateRanks();
+        int parallelism = Parameters.getPlanningParallelism();
+        if (parallelism > 1) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        try {
+            // Prioritization phase
+            calculateComputationCosts();
+            calculateTransferCosts();
+            calculateRanks();
+
+            // Selection phase
+            allocateTasks();
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
 
-        // Selection phase
-        allocateTasks();
+        // Release the tables, the planner may be kept by the caller
+        dag = null;
+        computationCosts = null;
+        childIndex = parentIndex = null;
+        childCost = parentCost = null;
+        schedules = null;
+        readyTimes = finishTimes = null;
+    }
+
+    /**
+     * Runs a phase over [0, size), on the pool if there is one and the range
+     * is worth splitting.
+     *
+     * @param phase the phase
+     * @param task the task being allocated, for FINISH_TIMES
+     * @param size the number of tasks or vms
+     */
+    private void invoke(int phase, int task, int size) {
+        if (pool == null || size <= THRESHOLD) {
+            runRange(phase, task, 0, size);
+        } else {
+            pool.invoke(new RangeAction(phase, task, 0, size));
+        }
+    }
+
+    /**
+     * Runs a phase over [from, to). Each index only writes its own entries of
+     * the tables, so ranges may run concurrently.
+     */
+    private void runRange(int phase, int task, int from, int to) {
+        switch (phase) {
+            case COMPUTATION_COSTS:
+                calculateComputationCosts(from, to);
+                break;
+            case TRANSFER_COSTS:
+                calculateTransferCosts(from, to);
+                break;
+            case FINISH_TIMES:
+                calculateFinishTimes(task, from, to);
+                break;
+        }
     }
 
     /**
@@ -109,52 +232,74 @@ public class HEFTPlanningAlgorithm extends BasePlanningAlgorithm {
      */
     private double calculateAverageBandwidth() {
         double avg = 0.0;
-        for (Object vmObject : getVmList()) {
-            CondorVM vm = (CondorVM) vmObject;
+        for (CondorVM vm : vms) {
             avg += vm.getBw();
         }
-        return avg / getVmList().size();
+        return avg / vmNum;
     }
 
     /**
-     * Populates the computationCosts field with the time in seconds to compute
-     * a task in a vm.
+     * Populates the computationCosts table with the time in seconds to compute
+     * a task in a vm, and averageComputationCosts with its mean over the vms.
      */
     private void calculateComputationCosts() {
-        for (Task task : getTaskList()) {
-            Map<CondorVM, Double> costsVm = new HashMap<>();
-            for (Object vmObject : getVmList()) {
-                CondorVM vm = (CondorVM) vmObject;
+        computationCosts = new double[taskNum * vmNum];
+        averageComputationCosts = new double[taskNum];
+        invoke(COMPUTATION_COSTS, -1, taskNum);
+    }
+
+    /**
+     * Fills the computation costs of the tasks in [from, to).
+     */
+    private void calculateComputationCosts(int from, int to) {
+        for (int i = from; i < to; i++) {
+            Task task = tasks.get(i);
+            double sum = 0.0;
+            for (int j = 0; j < vmNum; j++) {
+                CondorVM vm = vms.get(j);
+                double cost;
                 if (vm.getNumberOfPes() < task.getNumberOfPes()) {
-                    costsVm.put(vm, Double.MAX_VALUE);
+                    cost = Double.MAX_VALUE;
                 } else {
-                    costsVm.put(vm,
-                            task.getCloudletTotalLength() / vm.getMips());
+                    cost = task.getCloudletTotalLength() / vm.getMips();
                 }
+                computationCosts[i * vmNum + j] = cost;
+                sum += cost;
             }
-            computationCosts.put(task, costsVm);
+            averageComputationCosts[i] = sum / vmNum;
         }
     }
 
     /**
-     * Populates the transferCosts map with the time in seconds to transfer all
-     * files from each parent to each child
+     * Populates the edge arrays with the time in seconds to transfer all files
+     * from each parent to each child. Children that are not in the task list
+     * are ignored.
      */
     private void calculateTransferCosts() {
-        // Initializing the matrix
-        for (Task task1 : getTaskList()) {
-            Map<Task, Double> taskTransferCosts = new HashMap<>();
-            for (Task task2 : getTaskList()) {
-                taskTransferCosts.put(task2, 0.0);
-            }
-            transferCosts.put(task1, taskTransferCosts);
+        childStart = dag.getChildStart();
+        childIndex = dag.getChildIndex();
+        parentStart = dag.getParentStart();
+        parentIndex = dag.getParentIndex();
+
+        int edgeNum = dag.getEdgeCount();
+        childCost = new double[edgeNum];
+        invoke(TRANSFER_COSTS, -1, taskNum);
+
+        int[] parentEdge = dag.getParentEdge();
+        parentCost = new double[edgeNum];
+        for (int p = 0; p < edgeNum; p++) {
+            parentCost[p] = childCost[parentEdge[p]];
         }
+    }
 
-        // Calculating the actual values
-        for (Task parent : getTaskList()) {
-            for (Task child : parent.getChildList()) {
-                transferCosts.get(parent).put(child,
-                        calculateTransferCost(parent, child));
+    /**
+     * Fills the transfer costs of the edges leaving the tasks in [from, to).
+     */
+    private void calculateTransferCosts(int from, int to) {
+        for (int i = from; i < to; i++) {
+            Task parent = tasks.get(i);
+            for (int e = childStart[i]; e < childStart[i + 1]; e++) {
+                childCost[e] = calculateTransferCost(parent, tasks.get(childIndex[e]));
             }
         }
     }
@@ -194,104 +339,120 @@ public class HEFTPlanningAlgorithm extends BasePlanningAlgorithm {
     }
 
     /**
-     * Invokes calculateRank for each task to be scheduled
+     * Populates rank with the upward rank of each task as defined in the HEFT
+     * paper, and topologicalOrder with the position of each task in the
+     * topological order of the workflow.
      */
     private void calculateRanks() {
-        for (Task task : getTaskList()) {
-            calculateRank(task);
+        rank = dag.getUpwardRanks(averageComputationCosts, childCost);
+        topologicalOrder = new int[taskNum];
+        for (int i = 0; i < taskNum; i++) {
+            topologicalOrder[i] = dag.getTopologicalPosition(i);
         }
     }
 
     /**
-     * Populates rank.get(task) with the rank of task as defined in the HEFT
-     * paper.
-     *
-     * @param task The task have the rank calculates
-     * @return The rank
+     * Allocates all tasks to be scheduled in non-ascending order of rank. Tasks
+     * with the same rank are taken in topological order.
      */
-    private double calculateRank(Task task) {
-        if (rank.containsKey(task)) {
-            return rank.get(task);
-        }
-
-        double averageComputationCost = 0.0;
-
-        for (Double cost : computationCosts.get(task).values()) {
-            averageComputationCost += cost;
+    private void allocateTasks() {
+        Integer[] byRank = new Integer[taskNum];
+        for (int i = 0; i < taskNum; i++) {
+            byRank[i] = i;
         }
-
-        averageComputationCost /= computationCosts.get(task).size();
-
-        double max = 0.0;
-        for (Task child : task.getChildList()) {
-            double childCost = transferCosts.get(task).get(child)
-                    + calculateRank(child);
-            max = Math.max(max, childCost);
+        Arrays.sort(byRank, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int c = Double.compare(rank[b], rank[a]);
+                if (c != 0) {
+                    return c;
+                }
+                return Integer.compare(topologicalOrder[a], topologicalOrder[b]);
+            }
+        });
+
+        earliestFinishTimes = new double[taskNum];
+        allocation = new int[taskNum];
+        readyTimes = new double[vmNum];
+        finishTimes = new double[vmNum];
+        for (Integer task : byRank) {
+            allocateTask(task);
         }
-
-        rank.put(task, averageComputationCost + max);
-
-        return rank.get(task);
     }
 
     /**
-     * Allocates all tasks to be scheduled in non-ascending order of schedule.
+     * Schedules the task given in one of the VMs minimizing the earliest finish
+     * time
+     *
+     * @param taskId The index of the task to be scheduled
+     * @pre All parent tasks are already scheduled
      */
-    private void allocateTasks() {
-        List<TaskRank> taskRank = new ArrayList<>();
-        for (Task task : rank.keySet()) {
-            taskRank.add(new TaskRank(task, rank.get(task)));
+    private void allocateTask(int taskId) {
+        int chosenVM = -1;
+        double earliestFinishTime = Double.MAX_VALUE;
+        double bestReadyTime = 0.0;
+
+        invoke(FINISH_TIMES, taskId, vmNum);
+
+        // Ties go to the first vm in the list
+        for (int vm = 0; vm < vmNum; vm++) {
+            if (finishTimes[vm] < earliestFinishTime) {
+                bestReadyTime = readyTimes[vm];
+                earliestFinishTime = finishTimes[vm];
+                chosenVM = vm;
+            }
         }
 
-        // Sorting in non-ascending order of rank
-        Collections.sort(taskRank);
-        for (TaskRank rank : taskRank) {
-            allocateTask(rank.task);
+        Task task = tasks.get(taskId);
+        findFinishTime(taskId, chosenVM, bestReadyTime, true);
+        earliestFinishTimes[taskId] = getFinishTime(task, earliestFinishTime);
+        allocation[taskId] = chosenVM;
+
+        task.setVmId(vms.get(chosenVM).getId());
+        if (Log.isLoggable(Log.Level.INFO)) {
+            Log.printLine(Log.formatDecimal(CloudSim.clock()) + " :Planning " + task.getCloudletId() + " with  "
+                    + task.getCloudletLength() + "  &arrivaleTime: " + Log.formatDecimal(task.getArrivalTime())
+                    + " to VM " + task.getVmId());
         }
 
     }
 
     /**
-     * Schedules the task given in one of the VMs minimizing the earliest finish
-     * time
+     * Fills readyTimes and finishTimes for the vms in [from, to). The schedules
+     * are only read.
      *
-     * @param task The task to be scheduled
-     * @pre All parent tasks are already scheduled
+     * @param taskId The index of the task to be scheduled
+     * @param from the first vm
+     * @param to the last vm (excluded)
      */
-    private void allocateTask(Task task) {
-        CondorVM chosenVM = null;
-        double earliestFinishTime = Double.MAX_VALUE;
-        double bestReadyTime = 0.0;
-        double finishTime;
-
-        for (Object vmObject : getVmList()) {
-            CondorVM vm = (CondorVM) vmObject;
+    private void calculateFinishTimes(int taskId, int from, int to) {
+        for (int vm = from; vm < to; vm++) {
             double minReadyTime = 0.0;
 
-            for (Task parent : task.getParentList()) {
-                double readyTime = earliestFinishTimes.get(parent);
-                if (parent.getVmId() != vm.getId()) {
-                    readyTime += transferCosts.get(parent).get(task);
+            for (int e = parentStart[taskId]; e < parentStart[taskId + 1]; e++) {
+                int parent = parentIndex[e];
+                double readyTime = earliestFinishTimes[parent];
+                if (allocation[parent] != vm) {
+                    readyTime += parentCost[e];
                 }
                 minReadyTime = Math.max(minReadyTime, readyTime);
             }
 
-            finishTime = findFinishTime(task, vm, minReadyTime, false);
-
-            if (finishTime < earliestFinishTime) {
-                bestReadyTime = minReadyTime;
-                earliestFinishTime = finishTime;
-                chosenVM = vm;
-            }
+            readyTimes[vm] = minReadyTime;
+            finishTimes[vm] = findFinishTime(taskId, vm, minReadyTime, false);
         }
+    }
 
-        findFinishTime(task, chosenVM, bestReadyTime, true);
-        earliestFinishTimes.put(task, earliestFinishTime);
-
-        task.setVmId(chosenVM.getId());
-        Log.printLine(Parameters.df.format(CloudSim.clock())+" :Planning " + task.getCloudletId() + " with  "
-                + task.getCloudletLength()+"  &arrivaleTime: "+ Parameters.df.format(task.getArrivalTime()) + " to VM " + task.getVmId());
-
+    /**
+     * Gets the finish time recorded for a task once it is allocated, which is
+     * the time its children wait for.
+     *
+     * @param task the task allocated
+     * @param earliestFinishTime its earliest finish time in the chosen vm
+     * @return the finish time to record
+     */
+    protected double getFinishTime(Task task, double earliestFinishTime) {
+        return earliestFinishTime;
     }
 
     /**
@@ -299,84 +460,21 @@ public class HEFTPlanningAlgorithm extends BasePlanningAlgorithm {
      * given task in the vm with the constraint of not scheduling it before
      * readyTime. If occupySlot is true, reserves the time slot in the schedule.
      *
-     * @param task The task to have the time slot reserved
-     * @param vm The vm that will execute the task
+     * @param task The index of the task to have the time slot reserved
+     * @param vm The index of the vm that will execute the task
      * @param readyTime The first moment that the task is available to be
      * scheduled
      * @param occupySlot If true, reserves the time slot in the schedule.
      * @return The minimal finish time of the task in the vmn
      */
-    private double findFinishTime(Task task, CondorVM vm, double readyTime,
+    private double findFinishTime(int task, int vm, double readyTime,
             boolean occupySlot) {
-        List<Event> sched = schedules.get(vm);
-        double computationCost = computationCosts.get(task).get(vm);
-        double start, finish;
-        int pos;
-
-        if (sched.isEmpty()) {
-            if (occupySlot) {
-                sched.add(new Event(readyTime, readyTime + computationCost));
-            }
-            return readyTime + computationCost;
-        }
-
-        if (sched.size() == 1) {
-            if (readyTime >= sched.get(0).finish) {
-                pos = 1;
-                start = readyTime;
-            } else if (readyTime + computationCost <= sched.get(0).start) {
-                pos = 0;
-                start = readyTime;
-            } else {
-                pos = 1;
-                start = sched.get(0).finish;
-            }
-
-            if (occupySlot) {
-                sched.add(pos, new Event(start, start + computationCost));
-            }
-            return start + computationCost;
-        }
-
-        // Trivial case: Start after the latest task scheduled
-        start = Math.max(readyTime, sched.get(sched.size() - 1).finish);
-        finish = start + computationCost;
-        int i = sched.size() - 1;
-        int j = sched.size() - 2;
-        pos = i + 1;
-        while (j >= 0) {
-            Event current = sched.get(i);
-            Event previous = sched.get(j);
-
-            if (readyTime > previous.finish) {
-                if (readyTime + computationCost <= current.start) {
-                    start = readyTime;
-                    finish = readyTime + computationCost;
-                }
-
-                break;
-            }
-            if (previous.finish + computationCost <= current.start) {
-                start = previous.finish;
-                finish = previous.finish + computationCost;
-                pos = i;
-            }
-            i--;
-            j--;
-        }
-
-        if (readyTime + computationCost <= sched.get(0).start) {
-            pos = 0;
-            start = readyTime;
-
-            if (occupySlot) {
-                sched.add(pos, new Event(start, start + computationCost));
-            }
-            return start + computationCost;
-        }
+        VmSlotCalendar sched = schedules[vm];
+        double computationCost = computationCosts[task * vmNum + vm];
+        double start = sched.findStart(readyTime, computationCost);
         if (occupySlot) {
-            sched.add(pos, new Event(start, finish));
+            sched.reserve(start, start + computationCost);
         }
-        return finish;
+        return start + computationCost;
     }
 }
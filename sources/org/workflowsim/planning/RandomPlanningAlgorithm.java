@@ -36,7 +36,7 @@ public class RandomPlanningAlgorithm extends BasePlanningAlgorithm {
     @Override
     public void run() {
 
-        Random random = new Random(System.currentTimeMillis());
+        Random random = new Random(Parameters.nextSeed());
         for (Iterator it = getTaskList().iterator(); it.hasNext();) {
             Task task = (Task) it.next();
             double duration = task.getCloudletLength() / 1000;
@@ -0,0 +1,246 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim.planning;
+
+/**
+ * VmSlotCalendar keeps the busy time slots of a vm for insertion based
+ * planners (HEFT and the like). It answers "the earliest start not before
+ * readyTime with an idle gap long enough for a duration" and reserves slots in
+ * O(log S) expected time, S being the number of slots.
+ *
+ * The slots are kept in a treap ordered by start time. Each slot remembers the
+ * finish time of the slot before it, and each subtree the largest idle gap in
+ * it, so subtrees without a large enough gap are skipped by the search.
+ * Slots must not overlap. The calendar is not thread safe, but concurrent
+ * calls to findStart are fine as long as nobody reserves a slot.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class VmSlotCalendar {
+
+    private static class Slot {
+
+        public final double start;
+        public final double finish;
+        public final int priority;
+        /**
+         * The finish time of the previous slot, -infinity for the first one.
+         */
+        public double previousFinish;
+        /**
+         * The largest idle gap before a slot of this subtree.
+         */
+        public double maxGap;
+        /**
+         * The largest finish time of this subtree.
+         */
+        public double maxFinish;
+        public Slot left;
+        public Slot right;
+
+        public Slot(double start, double finish, int priority) {
+            this.start = start;
+            this.finish = finish;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * The root of the treap.
+     */
+    private Slot root;
+    /**
+     * The number of slots.
+     */
+    private int size;
+    /**
+     * The state of the generator of priorities, fixed so that the shape of the
+     * tree is reproducible.
+     */
+    private int seed = 0x2545F491;
+
+    public VmSlotCalendar() {
+    }
+
+    /**
+     * Finds the earliest time not before readyTime at which the vm is idle for
+     * duration.
+     *
+     * @param readyTime the first moment the task may start
+     * @param duration the time the task takes
+     * @return the earliest start time
+     */
+    public double findStart(double readyTime, double duration) {
+        if (root == null) {
+            return readyTime;
+        }
+        // Gaps are compared as start - previousFinish, slots are checked as
+        // previousFinish + duration <= start. The slack keeps the pruning from
+        // rejecting a gap that fits because of rounding.
+        double slack = 4 * Math.ulp(Math.max(root.maxFinish, readyTime) + duration);
+        Slot next = findFirstFit(root, readyTime, duration, duration - slack);
+        if (next != null) {
+            return Math.max(next.previousFinish, readyTime);
+        }
+        return Math.max(readyTime, root.maxFinish);
+    }
+
+    /**
+     * Finds the earliest finish time of a task on this vm, see findStart.
+     *
+     * @param readyTime the first moment the task may start
+     * @param duration the time the task takes
+     * @return the earliest finish time
+     */
+    public double findFinishTime(double readyTime, double duration) {
+        return findStart(readyTime, duration) + duration;
+    }
+
+    /**
+     * Reserves a slot.
+     *
+     * @param start the start of the slot
+     * @param finish the finish of the slot
+     * @pre the slot does not overlap any slot reserved before
+     */
+    public void reserve(double start, double finish) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        root = insert(root, new Slot(start, finish, seed), null, null);
+        size++;
+    }
+
+    /**
+     * Gets the time at which the vm is idle for good.
+     *
+     * @return the largest finish time, 0 if no slot is reserved
+     */
+    public double getAvailableTime() {
+        return root == null ? 0.0 : root.maxFinish;
+    }
+
+    /**
+     * Gets the number of slots reserved
+     *
+     * @return the number of slots
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether no slot is reserved
+     *
+     * @return true if there is no slot
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all the slots
+     */
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Finds the first slot, in time order, preceded by a gap that can hold
+     * duration after readyTime.
+     */
+    private Slot findFirstFit(Slot node, double readyTime, double duration, double minGap) {
+        if (node == null || node.maxGap < minGap) {
+            return null;
+        }
+        // A gap that ends before readyTime cannot be used, nor the ones on
+        // its left
+        if (node.start >= readyTime) {
+            Slot found = findFirstFit(node.left, readyTime, duration, minGap);
+            if (found != null) {
+                return found;
+            }
+            if (Math.max(node.previousFinish, readyTime) + duration <= node.start) {
+                return node;
+            }
+        }
+        return findFirstFit(node.right, readyTime, duration, minGap);
+    }
+
+    /**
+     * Inserts a slot as a leaf and rotates it up. The previous and the next
+     * slots of a new leaf are both on its path, so they are known when the
+     * leaf is reached and updated on the way back.
+     */
+    private Slot insert(Slot node, Slot slot, Slot previous, Slot next) {
+        if (node == null) {
+            slot.previousFinish = previous == null ? Double.NEGATIVE_INFINITY : previous.finish;
+            if (next != null) {
+                next.previousFinish = slot.finish;
+            }
+            update(slot);
+            return slot;
+        }
+        if (slot.start < node.start
+                || (slot.start == node.start && slot.finish < node.finish)) {
+            node.left = insert(node.left, slot, previous, node);
+            if (node.left.priority > node.priority) {
+                return rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, slot, node, next);
+            if (node.right.priority > node.priority) {
+                return rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Slot rotateRight(Slot node) {
+        Slot left = node.left;
+        node.left = left.right;
+        update(node);
+        left.right = node;
+        update(left);
+        return left;
+    }
+
+    private Slot rotateLeft(Slot node) {
+        Slot right = node.right;
+        node.right = right.left;
+        update(node);
+        right.left = node;
+        update(right);
+        return right;
+    }
+
+    private void update(Slot node) {
+        double maxGap = node.start - node.previousFinish;
+        double maxFinish = node.finish;
+        if (node.left != null) {
+            maxGap = Math.max(maxGap, node.left.maxGap);
+            maxFinish = Math.max(maxFinish, node.left.maxFinish);
+        }
+        if (node.right != null) {
+            maxGap = Math.max(maxGap, node.right.maxGap);
+            maxFinish = Math.max(maxFinish, node.right.maxFinish);
+        }
+        node.maxGap = maxGap;
+        node.maxFinish = maxFinish;
+    }
+}
@@ -76,7 +76,7 @@ public abstract class BaseSchedulingAlgorithm implements SchedulingAlgorithmInte
      * @return the job list
      */
     @Override
-    public List getCloudletList() {
+    public List<? extends Cloudlet> getCloudletList() {
         return this.cloudletList;
     }
 
@@ -86,7 +86,7 @@ public abstract class BaseSchedulingAlgorithm implements SchedulingAlgorithmInte
      * @return the vm list
      */
     @Override
-    public List getVmList() {
+    public List<? extends Vm> getVmList() {
         return this.vmList;
     }
 
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim.scheduling;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import org.cloudbus.cloudsim.Cloudlet;
+
+/**
+ * A heap of the cloudlets waiting in a scheduler, ordered by length. Cloudlets
+ * with the same length are returned in the order they have been added, which
+ * is also their order in the cloudlet list of the scheduler.
+ *
+ * The heap is kept across scheduling rounds, as are the MinMin and MaxMin
+ * algorithms that own one: a WorkflowScheduler creates its algorithm at its
+ * first round and reuses it for all the following ones. Between two rounds
+ * the scheduler removes the cloudlets polled from its cloudlet list and
+ * appends the new ones, so the list starts with the cloudlets still in the
+ * heap, in their order, and update() only adds the cloudlets after them. The
+ * heap keeps its cloudlets by identity to check this, and is rebuilt from the
+ * whole list if the list has been changed in any other way.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class CloudletHeap {
+
+    /**
+     * A cloudlet with its insertion order.
+     */
+    private class Entry implements Comparable<Entry> {
+
+        private final Cloudlet cloudlet;
+        private final long length;
+        private final long order;
+
+        public Entry(Cloudlet cloudlet, long order) {
+            this.cloudlet = cloudlet;
+            this.length = cloudlet.getCloudletLength();
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = longestFirst ? Long.compare(other.length, length)
+                    : Long.compare(length, other.length);
+            if (result == 0) {
+                result = Long.compare(order, other.order);
+            }
+            return result;
+        }
+    }
+    private final boolean longestFirst;
+    private final PriorityQueue<Entry> heap;
+    /**
+     * The cloudlets in the heap.
+     */
+    private final Set<Cloudlet> cloudlets;
+    private long counter;
+
+    /**
+     * Creates an empty heap.
+     *
+     * @param longestFirst true to poll the longest cloudlet first, false to
+     * poll the shortest one first
+     */
+    public CloudletHeap(boolean longestFirst) {
+        this.longestFirst = longestFirst;
+        this.heap = new PriorityQueue<>();
+        this.cloudlets = Collections.newSetFromMap(new IdentityHashMap<Cloudlet, Boolean>());
+        this.counter = 0;
+    }
+
+    /**
+     * Adds the cloudlets appended to the cloudlet list since the last round.
+     * The list must start with the cloudlets still in the heap, that is the
+     * list of the last round without the cloudlets polled since; otherwise
+     * the heap is rebuilt from the whole list.
+     *
+     * @param cloudletList the cloudlet list of the scheduler
+     */
+    public void update(List<? extends Cloudlet> cloudletList) {
+        int size = cloudletList.size();
+        int kept = cloudlets.size();
+        boolean expected = size >= kept;
+        for (int i = 0; expected && i < kept; i++) {
+            expected = cloudlets.contains(cloudletList.get(i));
+        }
+        if (!expected) {
+            heap.clear();
+            cloudlets.clear();
+            kept = 0;
+        }
+        for (int i = kept; i < size; i++) {
+            Cloudlet cloudlet = cloudletList.get(i);
+            heap.add(new Entry(cloudlet, counter++));
+            cloudlets.add(cloudlet);
+        }
+    }
+
+    /**
+     * Checks whether there is a cloudlet left
+     *
+     * @return true if the heap is empty
+     */
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    /**
+     * Removes the first cloudlet
+     *
+     * @return the cloudlet or null if the heap is empty
+     */
+    public Cloudlet poll() {
+        Entry entry = heap.poll();
+        if (entry == null) {
+            return null;
+        }
+        cloudlets.remove(entry.cloudlet);
+        return entry.cloudlet;
+    }
+}
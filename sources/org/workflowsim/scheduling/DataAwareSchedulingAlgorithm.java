@@ -20,8 +20,10 @@ import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.workflowsim.CondorVM;
+import org.workflowsim.FileIndex;
 import org.workflowsim.FileItem;
 import org.workflowsim.Job;
+import org.workflowsim.Task;
 import org.workflowsim.WorkflowSimTags;
 import org.workflowsim.utils.ReplicaCatalog;
 
@@ -69,8 +71,10 @@ public class DataAwareSchedulingAlgorithm extends BaseSchedulingAlgorithm {
                 closestVm.setState(WorkflowSimTags.VM_STATUS_BUSY);
                 cloudlet.setVmId(closestVm.getId());
                 getScheduledList().add(cloudlet);
-                Log.printLine(CloudSim.clock()+":Schedules " + cloudlet.getCloudletId() + " with "
-                        + cloudlet.getCloudletLength() + " to VM " + cloudlet.getVmId());
+                if (Log.isLoggable(Log.Level.INFO)) {
+                    Log.printLine(Log.Level.INFO, "{}:Schedules {} with {} to VM {}", CloudSim.clock(),
+                            cloudlet.getCloudletId(), cloudlet.getCloudletLength(), cloudlet.getVmId());
+                }
 
             }
         }
@@ -85,25 +89,9 @@ public class DataAwareSchedulingAlgorithm extends BaseSchedulingAlgorithm {
      */
 
     protected double dataTransferTime(List<FileItem> requiredFiles, Cloudlet cl, int vmId)  {
-        double time = 0.0;
-
-        for (FileItem file : requiredFiles) {
-            //The input file is not an output File 
-            if (file.isRealInputFile(requiredFiles)) {
-                List<String> siteList = ReplicaCatalog.getStorageList(file.getName());
-
-                boolean hasFile = false;
-                for (String site : siteList) {
-                    if(site.equals(Integer.toString(vmId))){
-                        hasFile = true;
-                        break;
-                    }
-                }
-                if(!hasFile){
-                    time += file.getSize() ;
-                }
-            }
-        }
-        return time;
+        //The input file is not an output File 
+        FileIndex index = cl instanceof Task && requiredFiles == ((Task) cl).getFileList()
+                ? ((Task) cl).getFileIndex() : new FileIndex(requiredFiles);
+        return ReplicaCatalog.getBytesMissing(index, vmId);
     }
 }
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim.scheduling;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import org.cloudbus.cloudsim.Vm;
+import org.workflowsim.CondorVM;
+import org.workflowsim.WorkflowSimTags;
+
+/**
+ * A max-heap of the idle vms of a scheduling round, ordered by their current
+ * requested mips. Vms with the same mips are returned in the order of the vm
+ * list, so polling the heap picks the same vm as scanning the list for the
+ * fastest idle vm. The mips of each vm is read once when the heap is built
+ * since it may change between two rounds.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class IdleVmHeap {
+
+    /**
+     * An idle vm with its mips and position in the vm list.
+     */
+    private static class Entry implements Comparable<Entry> {
+
+        private final CondorVM vm;
+        private final double mips;
+        private final int index;
+
+        public Entry(CondorVM vm, int index) {
+            this.vm = vm;
+            this.mips = vm.getCurrentRequestedTotalMips();
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = Double.compare(other.mips, mips);
+            if (result == 0) {
+                result = Integer.compare(index, other.index);
+            }
+            return result;
+        }
+    }
+    private final PriorityQueue<Entry> heap;
+
+    /**
+     * Builds the heap from the idle vms of a vm list.
+     *
+     * @param vmList the vm list
+     */
+    public IdleVmHeap(List<? extends Vm> vmList) {
+        this.heap = new PriorityQueue<>(Math.max(1, vmList.size()));
+        for (int i = 0; i < vmList.size(); i++) {
+            CondorVM vm = (CondorVM) vmList.get(i);
+            if (vm.getState() == WorkflowSimTags.VM_STATUS_IDLE) {
+                heap.add(new Entry(vm, i));
+            }
+        }
+    }
+
+    /**
+     * Checks whether there is an idle vm left
+     *
+     * @return true if the heap is empty
+     */
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    /**
+     * Removes the fastest idle vm and marks it busy
+     *
+     * @return the vm or null if there is no idle vm left
+     */
+    public CondorVM poll() {
+        Entry entry = heap.poll();
+        if (entry == null) {
+            return null;
+        }
+        entry.vm.setState(WorkflowSimTags.VM_STATUS_BUSY);
+        return entry.vm;
+    }
+}
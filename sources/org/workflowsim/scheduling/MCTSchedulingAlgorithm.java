@@ -18,7 +18,6 @@ package org.workflowsim.scheduling;
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.Log;
 import org.workflowsim.CondorVM;
-import org.workflowsim.WorkflowSimTags;
 
 /**
  * MCT algorithm
@@ -37,36 +36,21 @@ public class MCTSchedulingAlgorithm extends BaseSchedulingAlgorithm {
     public void run() {
 
         int size = getCloudletList().size();
+        IdleVmHeap idleVmHeap = new IdleVmHeap(getVmList());
 
         for (int i = 0; i < size; i++) {
             Cloudlet cloudlet = (Cloudlet) getCloudletList().get(i);
-            int vmSize = getVmList().size();
-            CondorVM firstIdleVm = null;
-
-            for (int j = 0; j < vmSize; j++) {
-                CondorVM vm = (CondorVM) getVmList().get(j);
-                if (vm.getState() == WorkflowSimTags.VM_STATUS_IDLE) {
-                    firstIdleVm = vm;
-                    break;
-                }
-            }
+            CondorVM firstIdleVm = idleVmHeap.poll();
             if (firstIdleVm == null) {
                 break;
             }
-
-            for (int j = 0; j < vmSize; j++) {
-                CondorVM vm = (CondorVM) getVmList().get(j);
-                if ((vm.getState() == WorkflowSimTags.VM_STATUS_IDLE)
-                        && (vm.getCurrentRequestedTotalMips() > firstIdleVm.getCurrentRequestedTotalMips())) {
-                    firstIdleVm = vm;
-                }
-            }
-            firstIdleVm.setState(WorkflowSimTags.VM_STATUS_BUSY);
             cloudlet.setVmId(firstIdleVm.getId());
             getScheduledList().add(cloudlet);
-            Log.printLine("Schedules " + cloudlet.getCloudletId() + " with "
-                    + cloudlet.getCloudletLength() + " to VM " + firstIdleVm.getId()
-                    + " with " + firstIdleVm.getCurrentRequestedTotalMips());
+            if (Log.isLoggable(Log.Level.INFO)) {
+                Log.printLine("Schedules " + cloudlet.getCloudletId() + " with "
+                        + cloudlet.getCloudletLength() + " to VM " + firstIdleVm.getId()
+                        + " with " + firstIdleVm.getCurrentRequestedTotalMips());
+            }
         }
     }
 }
@@ -15,12 +15,9 @@
  */
 package org.workflowsim.scheduling;
 
-import java.util.ArrayList;
-import java.util.List;
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.Log;
 import org.workflowsim.CondorVM;
-import org.workflowsim.WorkflowSimTags;
 
 /**
  * MaxMin algorithm.
@@ -38,72 +35,27 @@ public class MaxMinSchedulingAlgorithm extends BaseSchedulingAlgorithm {
         super();
     }
     /**
-     * the check point list.
+     * The waiting cloudlets, longest first. It is kept across scheduling
+     * rounds, since the WorkflowScheduler reuses this algorithm, and updated
+     * from the cloudlet list at the start of each one, see CloudletHeap.
      */
-    private final List<Boolean> hasChecked = new ArrayList<>();
+    private final CloudletHeap cloudletHeap = new CloudletHeap(true);
 
     @Override
     public void run() {
         //Log.printLine("Schedulin Cycle");
-        int size = getCloudletList().size();
-        hasChecked.clear();
-        for (int t = 0; t < size; t++) {
-            hasChecked.add(false);
-        }
-        for (int i = 0; i < size; i++) {
-            int maxIndex = 0;
-            Cloudlet maxCloudlet = null;
-            for (int j = 0; j < size; j++) {
-                Cloudlet cloudlet = (Cloudlet) getCloudletList().get(j);
-                if (!hasChecked.get(j)) {
-                    maxCloudlet = cloudlet;
-                    maxIndex = j;
-                    break;
-                }
-            }
-            if (maxCloudlet == null) {
-                break;
-            }
-
-            for (int j = 0; j < size; j++) {
-                Cloudlet cloudlet = (Cloudlet) getCloudletList().get(j);
-                if (hasChecked.get(j)) {
-                    continue;
-                }
-                long length = cloudlet.getCloudletLength();
-                if (length > maxCloudlet.getCloudletLength()) {
-                    maxCloudlet = cloudlet;
-                    maxIndex = j;
-                }
-            }
-            hasChecked.set(maxIndex, true);
-
-            int vmSize = getVmList().size();
-            CondorVM firstIdleVm = null;//(CondorVM)getVmList().get(0);
-            for (int j = 0; j < vmSize; j++) {
-                CondorVM vm = (CondorVM) getVmList().get(j);
-                if (vm.getState() == WorkflowSimTags.VM_STATUS_IDLE) {
-                    firstIdleVm = vm;
-                    break;
-                }
-            }
-            if (firstIdleVm == null) {
-                break;
-            }
-            for (int j = 0; j < vmSize; j++) {
-                CondorVM vm = (CondorVM) getVmList().get(j);
-                if ((vm.getState() == WorkflowSimTags.VM_STATUS_IDLE)
-                        && vm.getCurrentRequestedTotalMips() > firstIdleVm.getCurrentRequestedTotalMips()) {
-                    firstIdleVm = vm;
-
-                }
-            }
-            firstIdleVm.setState(WorkflowSimTags.VM_STATUS_BUSY);
+        cloudletHeap.update(getCloudletList());
+        IdleVmHeap idleVmHeap = new IdleVmHeap(getVmList());
+        while (!cloudletHeap.isEmpty() && !idleVmHeap.isEmpty()) {
+            Cloudlet maxCloudlet = cloudletHeap.poll();
+            CondorVM firstIdleVm = idleVmHeap.poll();
             maxCloudlet.setVmId(firstIdleVm.getId());
             getScheduledList().add(maxCloudlet);
-            Log.printLine("Schedules " + maxCloudlet.getCloudletId() + " with "
-                    + maxCloudlet.getCloudletLength() + " to VM " + firstIdleVm.getId()
-                    + " with " + firstIdleVm.getCurrentRequestedTotalMips());
+            if (Log.isLoggable(Log.Level.INFO)) {
+                Log.printLine("Schedules " + maxCloudlet.getCloudletId() + " with "
+                        + maxCloudlet.getCloudletLength() + " to VM " + firstIdleVm.getId()
+                        + " with " + firstIdleVm.getCurrentRequestedTotalMips());
+            }
 
         }
     }
@@ -15,13 +15,10 @@
  */
 package org.workflowsim.scheduling;
 
-import java.util.ArrayList;
-import java.util.List;
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.workflowsim.CondorVM;
-import org.workflowsim.WorkflowSimTags;
 
 /**
  * MinMin algorithm.
@@ -35,69 +32,27 @@ public class MinMinSchedulingAlgorithm extends BaseSchedulingAlgorithm {
     public MinMinSchedulingAlgorithm() {
         super();
     }
-    private final List<Boolean> hasChecked = new ArrayList<>();
+    /**
+     * The waiting cloudlets, shortest first. It is kept across scheduling
+     * rounds, since the WorkflowScheduler reuses this algorithm, and updated
+     * from the cloudlet list at the start of each one, see CloudletHeap.
+     */
+    private final CloudletHeap cloudletHeap = new CloudletHeap(false);
 
     @Override
     public void run() {
 
-        int size = getCloudletList().size();
-        hasChecked.clear();
-        for (int t = 0; t < size; t++) {
-            hasChecked.add(false);
-        }
-        for (int i = 0; i < size; i++) {
-            int minIndex = 0;
-            Cloudlet minCloudlet = null;
-            for (int j = 0; j < size; j++) {
-                Cloudlet cloudlet = (Cloudlet) getCloudletList().get(j);
-                if (!hasChecked.get(j)) {
-                    minCloudlet = cloudlet;
-                    minIndex = j;
-                    break;
-                }
-            }
-            if (minCloudlet == null) {
-                break;
-            }
-
-
-            for (int j = 0; j < size; j++) {
-                Cloudlet cloudlet = (Cloudlet) getCloudletList().get(j);
-                if (hasChecked.get(j)) {
-                    continue;
-                }
-                long length = cloudlet.getCloudletLength();
-                if (length < minCloudlet.getCloudletLength()) {
-                    minCloudlet = cloudlet;
-                    minIndex = j;
-                }
-            }
-            hasChecked.set(minIndex, true);
-
-            int vmSize = getVmList().size();
-            CondorVM firstIdleVm = null;//(CondorVM)getVmList().get(0);
-            for (int j = 0; j < vmSize; j++) {
-                CondorVM vm = (CondorVM) getVmList().get(j);
-                if (vm.getState() == WorkflowSimTags.VM_STATUS_IDLE) {
-                    firstIdleVm = vm;
-                    break;
-                }
-            }
-            if (firstIdleVm == null) {
-                break;
-            }
-            for (int j = 0; j < vmSize; j++) {
-                CondorVM vm = (CondorVM) getVmList().get(j);
-                if ((vm.getState() == WorkflowSimTags.VM_STATUS_IDLE)
-                        && vm.getCurrentRequestedTotalMips() > firstIdleVm.getCurrentRequestedTotalMips()) {
-                    firstIdleVm = vm;
-                }
-            }
-            firstIdleVm.setState(WorkflowSimTags.VM_STATUS_BUSY);
+        cloudletHeap.update(getCloudletList());
+        IdleVmHeap idleVmHeap = new IdleVmHeap(getVmList());
+        while (!cloudletHeap.isEmpty() && !idleVmHeap.isEmpty()) {
+            Cloudlet minCloudlet = cloudletHeap.poll();
+            CondorVM firstIdleVm = idleVmHeap.poll();
             minCloudlet.setVmId(firstIdleVm.getId());
             getScheduledList().add(minCloudlet);
-            Log.printLine(CloudSim.clock()+":Schedules " + minCloudlet.getCloudletId() + " with "
-                    + minCloudlet.getCloudletLength() + " to VM " + minCloudlet.getVmId());
+            if (Log.isLoggable(Log.Level.INFO)) {
+                Log.printLine(Log.Level.INFO, "{}:Schedules {} with {} to VM {}", CloudSim.clock(),
+                        minCloudlet.getCloudletId(), minCloudlet.getCloudletLength(), minCloudlet.getVmId());
+            }
 
         }
     }
@@ -73,8 +73,11 @@ public class StaticSchedulingAlgorithm extends BaseSchedulingAlgorithm {
             if (vm.getState() == WorkflowSimTags.VM_STATUS_IDLE) {
                 vm.setState(WorkflowSimTags.VM_STATUS_BUSY);
                 getScheduledList().add(cloudlet);
-                Log.printLine(Parameters.df.format(CloudSim.clock())+" :Schedules " + cloudlet.getCloudletId() + " with  "
-                        + cloudlet.getCloudletLength()+"  &arrivaleTime: "+ Parameters.df.format(cloudlet.getArrivalTime()) + " to VM " + cloudlet.getVmId());
+                if (Log.isLoggable(Log.Level.INFO)) {
+                    Log.printLine(Log.formatDecimal(CloudSim.clock()) + " :Schedules " + cloudlet.getCloudletId() + " with  "
+                            + cloudlet.getCloudletLength() + "  &arrivaleTime: " + Log.formatDecimal(cloudlet.getArrivalTime())
+                            + " to VM " + cloudlet.getVmId());
+                }
             }
         }
     }
@@ -23,6 +23,8 @@ import org.apache.commons.math3.distribution.LogNormalDistribution;
 import org.apache.commons.math3.distribution.NormalDistribution;
 import org.apache.commons.math3.distribution.RealDistribution;
 import org.apache.commons.math3.distribution.WeibullDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
 
 /**
  * This is a OverheadDistributionGenrator for one typic overhead per level.
@@ -39,9 +41,28 @@ public class DistributionGenerator {
     protected double scale_prior;
     protected double shape_prior;
     protected double likelihood_prior;
-    protected double[] samples;
-    protected double[] cumulativeSamples;
+    /**
+     * The samples and their cumulative sums are kept in blocks of
+     * SAMPLE_SIZE values, so that sample i is at sampleBlocks[i /
+     * SAMPLE_SIZE][i % SAMPLE_SIZE]. A block is only generated when the
+     * samples before it have been used, and appending it neither copies the
+     * previous samples nor recomputes their cumulative sums.
+     */
+    private double[][] sampleBlocks;
+    private double[][] cumulativeBlocks;
+    protected int sampleCount;
+    /**
+     * Whether a sample is negative, in which case the cumulative samples are
+     * not sorted.
+     */
+    private boolean negativeSamples;
     protected int cursor;
+    /**
+     * The sum of the samples before the cursor, and the sum of their power
+     * likelihood_prior for a Weibull distribution.
+     */
+    private double cursorSum;
+    private double cursorPowerSum;
     protected final int SAMPLE_SIZE = 1500 ; //DistributionGenerator will automatically increase the size
     
 
@@ -63,8 +84,7 @@ public class DistributionGenerator {
         this.scale_prior = scale;
         this.shape_prior = shape;
         RealDistribution distribution = getDistribution(scale, shape);
-        samples = distribution.sample(SAMPLE_SIZE);
-        updateCumulativeSamples();
+        setSamples(distribution.sample(SAMPLE_SIZE));
         cursor = 0;
     }
 
@@ -76,40 +96,138 @@ public class DistributionGenerator {
     }
 
     /**
-     * Gets the sample data
+     * Gets a copy of the sample data
      *
      * @return samples
      */
     public double[] getSamples() {
-        return samples;
+        return copyBlocks(sampleBlocks);
     }
 
     /**
-     * Gets the cumulative Samples
+     * Gets a copy of the cumulative Samples
      *
      * @return cumulativeSamples
      */
     public double[] getCumulativeSamples() {
-        return cumulativeSamples;
+        return copyBlocks(cumulativeBlocks);
+    }
+
+    /**
+     * Copies the first sampleCount values of blocks into an array
+     *
+     * @param blocks the blocks
+     * @return the array
+     */
+    private double[] copyBlocks(double[][] blocks) {
+        double[] result = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i += SAMPLE_SIZE) {
+            System.arraycopy(blocks[i / SAMPLE_SIZE], 0, result, i, Math.min(SAMPLE_SIZE, sampleCount - i));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of samples
+     *
+     * @return the number of samples
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Gets a sample
+     *
+     * @param index the index, below getSampleCount()
+     * @return the sample
+     */
+    public double getSample(int index) {
+        return sampleBlocks[index / SAMPLE_SIZE][index % SAMPLE_SIZE];
+    }
+
+    /**
+     * Gets the sum of the samples up to an index
+     *
+     * @param index the index, below getSampleCount()
+     * @return the cumulative sample
+     */
+    public double getCumulativeSample(int index) {
+        return cumulativeBlocks[index / SAMPLE_SIZE][index % SAMPLE_SIZE];
+    }
+
+    /**
+     * Checks whether a sample is negative, i.e. whether the cumulative
+     * samples may not be sorted
+     *
+     * @return whether a sample is negative
+     */
+    public boolean hasNegativeSamples() {
+        return negativeSamples;
     }
 
     /**
      * Extends the sample size
      */
     public void extendSamples() {
-        double[] new_samples = getDistribution(scale, shape).sample(SAMPLE_SIZE);
-        samples = concat(samples, new_samples);
-        updateCumulativeSamples();
+        appendSamples(getDistribution(scale, shape).sample(SAMPLE_SIZE));
+    }
+
+    /**
+     * Replaces the samples. The statistics of the samples before the cursor
+     * are computed again.
+     *
+     * @param newSamples the new samples
+     */
+    protected void setSamples(double[] newSamples) {
+        sampleBlocks = new double[4][];
+        cumulativeBlocks = new double[4][];
+        sampleCount = 0;
+        negativeSamples = false;
+        appendSamples(newSamples);
+        cursorSum = 0.0;
+        cursorPowerSum = 0.0;
+        for (int i = 0; i < Math.min(cursor, sampleCount); i++) {
+            addToStatistics(getSample(i));
+        }
+    }
+
+    /**
+     * Appends samples and computes their cumulative sums, in time linear in
+     * the number of samples appended
+     *
+     * @param newSamples the samples appended
+     */
+    protected void appendSamples(double[] newSamples) {
+        for (double sample : newSamples) {
+            int block = sampleCount / SAMPLE_SIZE;
+            int offset = sampleCount % SAMPLE_SIZE;
+            if (offset == 0) {
+                if (block == sampleBlocks.length) {
+                    sampleBlocks = Arrays.copyOf(sampleBlocks, block * 2);
+                    cumulativeBlocks = Arrays.copyOf(cumulativeBlocks, block * 2);
+                }
+                sampleBlocks[block] = new double[SAMPLE_SIZE];
+                cumulativeBlocks[block] = new double[SAMPLE_SIZE];
+            }
+            sampleBlocks[block][offset] = sample;
+            cumulativeBlocks[block][offset] = sampleCount == 0
+                    ? sample : getCumulativeSample(sampleCount - 1) + sample;
+            negativeSamples |= sample < 0;
+            sampleCount++;
+        }
     }
 
     /**
      * Update cumulativeSamples from samples
      */
     public void updateCumulativeSamples() {
-        cumulativeSamples = new double[samples.length];
-        cumulativeSamples[0] = samples[0];
-        for (int i = 1; i < samples.length; i++) {
-            cumulativeSamples[i] = cumulativeSamples[i - 1] + samples[i];
+        negativeSamples = false;
+        for (int i = 0; i < sampleCount; i++) {
+            double sample = getSample(i);
+            cumulativeBlocks[i / SAMPLE_SIZE][i % SAMPLE_SIZE] = i == 0
+                    ? sample : getCumulativeSample(i - 1) + sample;
+            negativeSamples |= sample < 0;
         }
     }
 
@@ -128,11 +246,7 @@ public class DistributionGenerator {
      * @return average
      */
     public double getMean() {
-        double sum = 0.0;
-        for (int i = 0; i < cursor; i++) {
-            sum += samples[i];
-        }
-        return sum / cursor;
+        return cursorSum / cursor;
     }
 
     /**
@@ -151,25 +265,13 @@ public class DistributionGenerator {
      */
     public double getMLEMean() {
         double a = shape_prior, b = scale_prior;
-        double sum = 0.0;
-
-        for (int i = 0; i < cursor; i++) {
-            switch (dist) {
-                case GAMMA:
-                    sum += samples[i];
-                    break;
-                case WEIBULL:
-                    sum += Math.pow(samples[i], likelihood_prior);
-                    break;
-            }
-        }
         double result = 0.0;
         switch (dist) {
             case GAMMA:
-                result = (b + sum) / (a + cursor * likelihood_prior - 1);
+                result = (b + cursorSum) / (a + cursor * likelihood_prior - 1);
                 break;
             case WEIBULL:
-                result = (b + sum) / (a + cursor + 1);
+                result = (b + cursorPowerSum) / (a + cursor + 1);
                 break;
             default:
                 break;
@@ -187,8 +289,7 @@ public class DistributionGenerator {
         this.scale = scale;
         this.shape = shape;
         RealDistribution distribution = getDistribution(scale, shape);
-        samples = distribution.sample(SAMPLE_SIZE);
-        updateCumulativeSamples();
+        setSamples(distribution.sample(SAMPLE_SIZE));
         //cursor = 0;
     }
 
@@ -211,16 +312,27 @@ public class DistributionGenerator {
      * @return delay
      */
     public double getNextSample() {
-        while (cursor >= samples.length) {
-            double[] new_samples = getDistribution(scale, shape).sample(SAMPLE_SIZE);
-            samples = concat(samples, new_samples);
-            updateCumulativeSamples();
+        while (cursor >= sampleCount) {
+            appendSamples(getDistribution(scale, shape).sample(SAMPLE_SIZE));
         }
-        double delay = samples[cursor];
+        double delay = getSample(cursor);
         cursor++;
+        addToStatistics(delay);
         return delay;
     }
 
+    /**
+     * Adds a sample passed by the cursor to the running statistics
+     *
+     * @param sample the sample
+     */
+    private void addToStatistics(double sample) {
+        cursorSum += sample;
+        if (dist == DistributionFamily.WEIBULL) {
+            cursorPowerSum += Math.pow(sample, likelihood_prior);
+        }
+    }
+
     /**
      * Gets the RealDistribution with two parameters
      *
@@ -230,19 +342,23 @@ public class DistributionGenerator {
      */
     public RealDistribution getDistribution(double scale, double shape) {
         RealDistribution distribution = null;
+        RandomGenerator random = Parameters.getRandomGenerator();
+        if (random == null) {
+            random = new Well19937c();
+        }
         switch (this.dist) {
             case LOGNORMAL:
-                distribution = new LogNormalDistribution(scale, shape);
+                distribution = new LogNormalDistribution(random, scale, shape);
                 break;
             case WEIBULL:
-                distribution = new WeibullDistribution(shape, scale);
+                distribution = new WeibullDistribution(random, shape, scale);
                 break;
             case GAMMA:
-                distribution = new GammaDistribution(shape, scale);
+                distribution = new GammaDistribution(random, shape, scale);
                 break;
             case NORMAL:
                 //shape is the std, scale is the mean
-                distribution = new NormalDistribution(scale, shape);
+                distribution = new NormalDistribution(random, scale, shape);
                 break;
             default:
                 break;
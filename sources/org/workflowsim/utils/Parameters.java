@@ -17,11 +17,14 @@ package org.workflowsim.utils;
 
 import java.text.DecimalFormat;
 import java.util.List;
+import org.apache.commons.math3.random.RandomGenerator;
 import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.SimulationContext;
 
 /**
  * This class includes most parameters a user can specify in a configuration
- * file
+ * file. The parameters are kept per simulation context, see
+ * {@link SimulationContext}
  *
  * @author Weiwei Chen
  * @since WorkflowSim Toolkit 1.0
@@ -84,6 +87,15 @@ public class Parameters {
         }
     }
     
+    /**
+     * The parser used to read DAX files
+     * JDOM: builds the whole document in memory, then walks it
+     * STAX: reads the document as a stream
+     */
+    public enum DaxParser{
+        JDOM, STAX
+    }
+    
     /** 
      * Source Host (submit host)
      */
@@ -92,46 +104,14 @@ public class Parameters {
     public static final int BASE = 0;
 
 
-    public static DecimalFormat df = new DecimalFormat("#.00");
-    /**
-     * Scheduling mode
-     */
-    private static SchedulingAlgorithm schedulingAlgorithm;
-    
-    /**
-     * Planning mode
-     */
-    private static PlanningAlgorithm planningAlgorithm;
-    
     /**
-     * Reducer mode
-     */
-    private static String reduceMethod;
-    /**
-     * Number of vms available
-     */
-    private static int vmNum;
-    /**
-     * The physical path to DAX file
-     */
-    private static String daxPath;
-    
-    /**
-     * The physical path to DAX files
-     */
-    private static List<String> daxPaths;
-    /**
-     * The physical path to runtime file In the runtime file, please use format
-     * as below ID1 1.0 ID2 2.0 ... This is optional, if you have specified task
-     * runtime in DAX then you don't need to specify this file
-     */
-    private static String runtimePath;
-    /**
-     * The physical path to datasize file In the datasize file, please use
-     * format as below DATA1 1000 DATA2 2000 ... This is optional, if you have
-     * specified datasize in DAX then you don't need to specify this file
+     * The format of the times in the log.
+     *
+     * @deprecated DecimalFormat is not thread-safe and this one is shared by
+     * all the simulations, use Log.formatDecimal() instead
      */
-    private static String datasizePath;
+    @Deprecated
+    public static DecimalFormat df = new DecimalFormat("#.00");
     /**
      * Version number
      */
@@ -140,51 +120,165 @@ public class Parameters {
      * Note information
      */
     private static final String note = " supports planning algorithm at Nov 9, 2013";
-    /**
-     * Overhead parameters
-     */
-    private static OverheadParameters oParams;
-    /**
-     * Clustering parameters
-     */
-    private static ClusteringParameters cParams;
-    /**
-     * Deadline of a workflow
-     */
-    private static long deadline;
-    
-    /**
-     * the bandwidth from one vm to one vm
-     */
-    private static double[][] bandwidths;
-    
-    
-    /**
-     * The maximum depth. It is inited manually and used in FailureGenerator
-     */
-    private static int maxDepth;
-    
     /**
      * Invalid String
      */
     private static final String INVALID = "Invalid";
-    
+
     /**
-     * The scale of runtime. Multiple runtime by this
+     * The parameters of a simulation context
      */
-    private static double runtime_scale = 1.0;
+    private static final class State {
 
+        /**
+         * Scheduling mode
+         */
+        private SchedulingAlgorithm schedulingAlgorithm;
 
-    /**
-     * The default cost model is based on datacenter, similar to CloudSim
-     */
-    private static CostModel costModel = CostModel.DATACENTER;
+        /**
+         * Planning mode
+         */
+        private PlanningAlgorithm planningAlgorithm;
+
+        /**
+         * Reducer mode
+         */
+        private String reduceMethod;
+
+        /**
+         * Number of vms available
+         */
+        private int vmNum;
+
+        /**
+         * The physical path to DAX file
+         */
+        private String daxPath;
+
+        /**
+         * The physical path to DAX files
+         */
+        private List<String> daxPaths;
+
+        /**
+         * The physical path to runtime file In the runtime file, please use format
+         * as below ID1 1.0 ID2 2.0 ... This is optional, if you have specified task
+         * runtime in DAX then you don't need to specify this file
+         */
+        private String runtimePath;
+
+        /**
+         * The physical path to datasize file In the datasize file, please use
+         * format as below DATA1 1000 DATA2 2000 ... This is optional, if you have
+         * specified datasize in DAX then you don't need to specify this file
+         */
+        private String datasizePath;
+
+        /**
+         * Overhead parameters
+         */
+        private OverheadParameters oParams;
+
+        /**
+         * Clustering parameters
+         */
+        private ClusteringParameters cParams;
+
+        /**
+         * Deadline of a workflow
+         */
+        private long deadline;
+
+        /**
+         * the bandwidth from one vm to one vm
+         */
+        private double[][] bandwidths;
+
+        /**
+         * The maximum depth. It is inited manually and used in FailureGenerator
+         */
+        private int maxDepth;
+
+        /**
+         * The scale of runtime. Multiple runtime by this
+         */
+        private double runtime_scale = 1.0;
+
+        /**
+         * The time window (in seconds) during which the scheduling requests of a
+         * WorkflowScheduler are merged into one scheduling round. A negative value
+         * disables coalescing: every returned or submitted job triggers a round.
+         */
+        private double updateInterval = -1;
+
+        /**
+         * The maximum number of scheduling requests merged into one round before
+         * the window expires. 0 means no limit.
+         */
+        private int updateBatchSize = 0;
+
+        /**
+         * The number of threads used by the HEFT planner to fill its cost tables
+         * and to evaluate the vms of a task. 1 means sequential planning.
+         */
+        private int planningParallelism = 1;
+
+        /**
+         * The default cost model is based on datacenter, similar to CloudSim
+         */
+        private CostModel costModel = CostModel.DATACENTER;
+
+        /**
+         * The default DAX parser streams the file
+         */
+        private DaxParser daxParser = DaxParser.STAX;
+
+        /**
+         * Whether a binary snapshot of each DAX is written next to it (dax path +
+         * ".snapshot") and loaded instead of the DAX in the next runs
+         */
+        private boolean daxSnapshot = false;
+
+        /**
+         * Whether the DAX files parsed are kept in memory and shared with the
+         * other simulations of the JVM that enable it
+         */
+        private boolean daxCache = false;
 
+        /**
+         * Whether the workflows are kept as WorkflowGraphs and their jobs
+         * created only when they are released
+         */
+        private boolean lazyJobs = false;
+
+        /**
+         * The file the records of the jobs returned are written to, null if
+         * the jobs themselves are kept in memory
+         */
+        private String jobLog;
+
+        /**
+         * The random generator of the distributions, null if each
+         * distribution has its own generator
+         */
+        private RandomGenerator randomGenerator;
+
+        /**
+         * arrival Time model
+         */
+        private DistributionGenerator arrivalTimeModel;
+    }
 
     /**
-     * arrival Time model
+     * The key of the parameters in the simulation contexts
      */
-    private static DistributionGenerator arrivalTimeModel;
+    private static final SimulationContext.Key<State> STATE = new SimulationContext.Key<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
     /**
      * A static function so that you can specify them in any place
      *
@@ -205,18 +299,19 @@ public class Parameters {
             SchedulingAlgorithm scheduler, PlanningAlgorithm planner, String rMethod,
             long dl) {
 
-        cParams = cp;
-        vmNum = vm;
-        daxPath = dax;
-        runtimePath = runtime;
-        datasizePath = datasize;
+        State state = state();
+        state.cParams = cp;
+        state.vmNum = vm;
+        state.daxPath = dax;
+        state.runtimePath = runtime;
+        state.datasizePath = datasize;
 
-        oParams = op;
-        schedulingAlgorithm = scheduler;
-        planningAlgorithm = planner;
-        reduceMethod = rMethod;
-        deadline = dl;
-        maxDepth = 0;
+        state.oParams = op;
+        state.schedulingAlgorithm = scheduler;
+        state.planningAlgorithm = planner;
+        state.reduceMethod = rMethod;
+        state.deadline = dl;
+        state.maxDepth = 0;
     }
     
     /**
@@ -239,18 +334,28 @@ public class Parameters {
             SchedulingAlgorithm scheduler, PlanningAlgorithm planner, String rMethod,
             long dl) {
 
-        cParams = cp;
-        vmNum = vm;
-        daxPaths = dax;
-        runtimePath = runtime;
-        datasizePath = datasize;
+        State state = state();
+        state.cParams = cp;
+        state.vmNum = vm;
+        state.daxPaths = dax;
+        state.runtimePath = runtime;
+        state.datasizePath = datasize;
+
+        state.oParams = op;
+        state.schedulingAlgorithm = scheduler;
+        state.planningAlgorithm = planner;
+        state.reduceMethod = rMethod;
+        state.deadline = dl;
+        state.maxDepth = 0;
+    }
 
-        oParams = op;
-        schedulingAlgorithm = scheduler;
-        planningAlgorithm = planner;
-        reduceMethod = rMethod;
-        deadline = dl;
-        maxDepth = 0;
+    /**
+     * Gets the parameters of the current simulation context
+     *
+     * @return the parameters
+     */
+    private static State state() {
+        return SimulationContext.current().get(STATE);
     }
 
     /**
@@ -261,7 +366,7 @@ public class Parameters {
      * @post $none
      */
     public static OverheadParameters getOverheadParams() {
-        return oParams;
+        return state().oParams;
     }
 
     
@@ -274,6 +379,7 @@ public class Parameters {
      * @post $none
      */
     public static String getReduceMethod() {
+        String reduceMethod = state().reduceMethod;
         if(reduceMethod!=null){
             return reduceMethod;
         }else{
@@ -291,7 +397,7 @@ public class Parameters {
      * @post $none
      */
     public static String getDaxPath() {
-        return daxPath;
+        return state().daxPath;
     }
 
     /**
@@ -302,7 +408,7 @@ public class Parameters {
      * @post $none
      */
     public static String getRuntimePath() {
-        return runtimePath;
+        return state().runtimePath;
     }
 
     /**
@@ -313,7 +419,7 @@ public class Parameters {
      * @post $none
      */
     public static String getDatasizePath() {
-        return datasizePath;
+        return state().datasizePath;
     }
 
     
@@ -325,7 +431,7 @@ public class Parameters {
      * @post $none
      */
     public static int getVmNum() {
-        return vmNum;
+        return state().vmNum;
     }
 
     
@@ -335,7 +441,7 @@ public class Parameters {
      * @return costModel
      */
     public static CostModel getCostModel(){
-        return costModel;
+        return state().costModel;
     }
     
     /**
@@ -344,7 +450,7 @@ public class Parameters {
      * @param num
      */
     public static void setVmNum(int num) {
-        vmNum = num;
+        state().vmNum = num;
     }
 
     /**
@@ -353,7 +459,7 @@ public class Parameters {
      * @return the clustering parameters
      */
     public static ClusteringParameters getClusteringParameters() {
-        return cParams;
+        return state().cParams;
     }
 
     /**
@@ -362,7 +468,7 @@ public class Parameters {
      * @return the scheduling method
      */
     public static SchedulingAlgorithm getSchedulingAlgorithm() {
-        return schedulingAlgorithm;
+        return state().schedulingAlgorithm;
     }
     
     /**
@@ -371,7 +477,7 @@ public class Parameters {
      * 
      */
     public static PlanningAlgorithm getPlanningAlgorithm() {
-        return planningAlgorithm;
+        return state().planningAlgorithm;
     }
     /**
      * Gets the version
@@ -389,7 +495,7 @@ public class Parameters {
      * Gets the deadline
      */
     public static long getDeadline(){
-    	return deadline;
+    	return state().deadline;
     }
     
     /**
@@ -397,7 +503,7 @@ public class Parameters {
      * @return the maxDepth
      */
     public static int getMaxDepth(){
-        return maxDepth;
+        return state().maxDepth;
     }
     
     /**
@@ -405,7 +511,7 @@ public class Parameters {
      * @param depth the maxDepth
      */
     public static void setMaxDepth(int depth){
-        maxDepth = depth;
+        state().maxDepth = depth;
     }
     
     /**
@@ -413,7 +519,7 @@ public class Parameters {
      * @param scale 
      */
     public static void setRuntimeScale(double scale){
-        runtime_scale = scale;
+        state().runtime_scale = scale;
     }
     
     /**
@@ -421,15 +527,206 @@ public class Parameters {
      * @param model
      */
     public static void setCostModel(CostModel model){
-        costModel = model;
+        state().costModel = model;
+    }
+    
+    /**
+     * Gets the DAX parser
+     * 
+     * @return daxParser
+     */
+    public static DaxParser getDaxParser(){
+        return state().daxParser;
+    }
+    
+    /**
+     * Sets the DAX parser
+     * @param parser
+     */
+    public static void setDaxParser(DaxParser parser){
+        state().daxParser = parser;
     }
     
+    /**
+     * Checks whether DAX snapshots are used
+     * 
+     * @return daxSnapshot
+     */
+    public static boolean isDaxSnapshot(){
+        return state().daxSnapshot;
+    }
+    
+    /**
+     * Sets whether DAX snapshots are used. A snapshot is only loaded if the
+     * DAX has not changed since it was written.
+     * @param snapshot
+     */
+    public static void setDaxSnapshot(boolean snapshot){
+        state().daxSnapshot = snapshot;
+    }
+    
+    /**
+     * Checks whether the DAX cache is used
+     * 
+     * @return daxCache
+     */
+    public static boolean isDaxCache(){
+        return state().daxCache;
+    }
+    
+    /**
+     * Sets whether the DAX cache is used. A DAX parsed by a simulation that
+     * enables the cache is kept in memory, the next simulations that enable
+     * it rebuild their tasks from that copy instead of parsing the DAX again.
+     * See WorkflowParser.clearCache() to release it.
+     * @param cache
+     */
+    public static void setDaxCache(boolean cache){
+        state().daxCache = cache;
+    }
+    
+    /**
+     * Checks whether the jobs are created lazily
+     * 
+     * @return lazyJobs
+     */
+    public static boolean isLazyJobs(){
+        return state().lazyJobs;
+    }
+    
+    /**
+     * Sets whether the workflows are kept in the compact form of
+     * WorkflowGraph, the task and the job of a node being created only when
+     * all its parents have completed. It is only supported without planning
+     * and without clustering, the tasks are created upfront otherwise.
+     * @param lazy
+     */
+    public static void setLazyJobs(boolean lazy){
+        state().lazyJobs = lazy;
+    }
+    
+    /**
+     * Gets the file the records of the jobs returned are written to
+     * 
+     * @return the path, null if the jobs are kept in memory
+     */
+    public static String getJobLog(){
+        return state().jobLog;
+    }
+    
+    /**
+     * Sets the file the records of the jobs returned are written to, as a
+     * JobLog. The jobs are then dropped once returned, rather than kept in
+     * the job submitted and received lists of the WorkflowEngine and in the
+     * received lists of the schedulers, which stay empty. Without a job log
+     * these lists are the in-memory results. The tasks of workflows that
+     * are neither streamed nor created lazily are still kept, see JobLog.
+     * @param path the path of the log, null to keep the jobs in memory
+     */
+    public static void setJobLog(String path){
+        state().jobLog = path;
+    }
+    
+    /**
+     * Gets the random generator of the distributions
+     * 
+     * @return the generator, null if each distribution has its own generator
+     */
+    public static RandomGenerator getRandomGenerator(){
+        return state().randomGenerator;
+    }
+    
+    /**
+     * Sets the random generator used by the distributions created afterwards,
+     * so that the samples of a simulation can be reproduced from a seed
+     * @param generator the generator, null to give each distribution its own
+     * generator
+     */
+    public static void setRandomGenerator(RandomGenerator generator){
+        state().randomGenerator = generator;
+    }
+    
+    /**
+     * Gets a seed for a java.util.Random, drawn from the random generator if
+     * there is one
+     * 
+     * @return the seed
+     */
+    public static long nextSeed(){
+        RandomGenerator generator = state().randomGenerator;
+        if (generator == null) {
+            return System.nanoTime();
+        }
+        return generator.nextLong();
+    }
+    
+    /**
+     * Sets how scheduling requests are coalesced into scheduling rounds
+     *
+     * @param interval the time window in seconds, a negative value disables
+     * coalescing
+     * @param batchSize the maximum number of requests per round, 0 means no
+     * limit
+     */
+    public static void setUpdateCoalescing(double interval, int batchSize) {
+        State state = state();
+        state.updateInterval = interval;
+        state.updateBatchSize = batchSize;
+    }
+
+    /**
+     * Gets the time window used to coalesce scheduling requests
+     *
+     * @return the window in seconds, negative if coalescing is disabled
+     */
+    public static double getUpdateInterval() {
+        return state().updateInterval;
+    }
+
+    /**
+     * Gets the maximum number of scheduling requests merged into one round
+     *
+     * @return the batch size, 0 means no limit
+     */
+    public static int getUpdateBatchSize() {
+        return state().updateBatchSize;
+    }
+
+    /**
+     * Checks whether scheduling requests are coalesced
+     *
+     * @return true if coalescing is enabled
+     */
+    public static boolean isUpdateCoalescing() {
+        return state().updateInterval >= 0;
+    }
+
+    /**
+     * Sets the number of threads used by the HEFT planner. The plan is the
+     * same whatever the parallelism is.
+     *
+     * @param parallelism the number of threads, 1 (or less) for sequential
+     * planning
+     */
+    public static void setPlanningParallelism(int parallelism) {
+        state().planningParallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Gets the number of threads used by the HEFT planner
+     *
+     * @return the number of threads, 1 for sequential planning
+     */
+    public static int getPlanningParallelism() {
+        return state().planningParallelism;
+    }
+
     /**
      * Gets the runtime scale
      * @return 
      */
     public static double getRuntimeScale(){
-        return runtime_scale;
+        return state().runtime_scale;
     }
     
     /**
@@ -437,14 +734,14 @@ public class Parameters {
      * @return 
      */
     public static List<String> getDAXPaths() {
-        return daxPaths;
+        return state().daxPaths;
     }
 
     public static DistributionGenerator getArrivalTimeModel() {
-        return arrivalTimeModel;
+        return state().arrivalTimeModel;
     }
 
     public static void setArrivalTimeModel(DistributionGenerator arrivalTimeModel) {
-        Parameters.arrivalTimeModel = arrivalTimeModel;
+        state().arrivalTimeModel = arrivalTimeModel;
     }
 }
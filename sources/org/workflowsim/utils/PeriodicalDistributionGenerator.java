@@ -45,9 +45,7 @@ public class PeriodicalDistributionGenerator extends DistributionGenerator{
         this.signal = signal;
         //generate samples periodically
         double currentTime = 0.0;
-        samples = generatePeriodicalSamples(currentTime);
-                
-        updateCumulativeSamples();
+        setSamples(generatePeriodicalSamples(currentTime));
         cursor = 0;
        
     }
@@ -67,8 +65,7 @@ public class PeriodicalDistributionGenerator extends DistributionGenerator{
         super(dist, scale, shape, a, b, c);
         this.signal = signal;
         double currentTime = 0.0;
-        samples = generatePeriodicalSamples(currentTime);
-        updateCumulativeSamples();
+        setSamples(generatePeriodicalSamples(currentTime));
         cursor = 0;
     }
     /**
@@ -76,10 +73,8 @@ public class PeriodicalDistributionGenerator extends DistributionGenerator{
      */
     @Override
     public void extendSamples() {
-        double currentTime = cumulativeSamples[cumulativeSamples.length - 1];
-        double[] new_samples = generatePeriodicalSamples(currentTime);
-        samples = concat(samples, new_samples);
-        updateCumulativeSamples();
+        double currentTime = getCumulativeSample(getSampleCount() - 1);
+        appendSamples(generatePeriodicalSamples(currentTime));
     }
     
     /**
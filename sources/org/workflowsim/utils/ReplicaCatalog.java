@@ -18,13 +18,24 @@
 package org.workflowsim.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.workflowsim.FileIndex;
 import org.workflowsim.FileItem;
 
 /**
- * ReplicaCatalog stores all the data information and where (site) there are
+ * ReplicaCatalog stores all the data information and where (site) there are.
+ * There is one catalog per simulation context
+ *
+ * File names and sites are interned to dense ids. The sites of a file are
+ * kept in the order they were added and in a bitset, so that checking whether
+ * a site (or a VM, whose site is its id) has a replica is O(1) and builds no
+ * string.
  *
  * @author Weiwei Chen
  * @since WorkflowSim Toolkit 1.0
@@ -38,18 +49,98 @@ public class ReplicaCatalog {
     public enum FileSystem {
         SHARED, LOCAL
     }
+
     /**
-     * Map from file name to a file object
+     * The sites a file is stored at.
      */
-    private static Map<String, FileItem> fileName2File;
+    private static final class Replicas {
+
+        /**
+         * The sites, in the order they were added
+         */
+        private int[] sites = new int[2];
+        /**
+         * The number of sites
+         */
+        private int count;
+        /**
+         * The same sites, by id
+         */
+        private final BitSet siteSet = new BitSet();
+
+        private void add(int site) {
+            if (!siteSet.get(site)) {
+                siteSet.set(site);
+                if (count == sites.length) {
+                    sites = Arrays.copyOf(sites, count << 1);
+                }
+                sites[count++] = site;
+            }
+        }
+    }
+
     /**
-     * The selection of file.system
+     * The catalog of a simulation context
      */
-    private static FileSystem fileSystem;
+    private static final class State {
+
+        /**
+         * Map from file name to a file object
+         */
+        private Map<String, FileItem> fileName2File;
+        /**
+         * The selection of file.system
+         */
+        private FileSystem fileSystem;
+        /**
+         * Map from file name to file id
+         */
+        private Map<String, Integer> fileIds;
+        /**
+         * The replicas of each file, by file id
+         */
+        private List<Replicas> replicas;
+        /**
+         * Map from site name to site id
+         */
+        private Map<String, Integer> siteIds;
+        /**
+         * The site names, by site id
+         */
+        private List<String> siteNames;
+        /**
+         * The site id of each VM plus one, by vm id (0 if not interned yet)
+         */
+        private int[] vmSites;
+        /**
+         * The site id of the VMs whose id is too large for vmSites when
+         * their site is interned, by vm id
+         */
+        private Map<Integer, Integer> sparseVmSites;
+        /**
+         * The vm id of each site, by site id (-1 if the site is not a VM)
+         */
+        private int[] siteVms;
+    }
+
     /**
-     * Map from file to a list of data storage
+     * The key of the catalog in the simulation contexts
      */
-    private static Map<String, List<String>> dataReplicaCatalog;
+    private static final SimulationContext.Key<State> STATE = new SimulationContext.Key<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
+    /**
+     * Gets the catalog of the current simulation context
+     *
+     * @return the catalog
+     */
+    private static State state() {
+        return SimulationContext.current().get(STATE);
+    }
 
     /**
      * Initialize a ReplicaCatalog
@@ -57,9 +148,16 @@ public class ReplicaCatalog {
      * @param fs the type of file system
      */
     public static void init(FileSystem fs) {
-        fileSystem = fs;
-        dataReplicaCatalog = new HashMap<>();
-        fileName2File = new HashMap<>();
+        State state = state();
+        state.fileSystem = fs;
+        state.fileName2File = new HashMap<>();
+        state.fileIds = new HashMap<>();
+        state.replicas = new ArrayList<>();
+        state.siteIds = new HashMap<>();
+        state.siteNames = new ArrayList<>();
+        state.vmSites = new int[16];
+        state.sparseVmSites = new HashMap<>();
+        state.siteVms = new int[16];
     }
 
     /**
@@ -68,7 +166,7 @@ public class ReplicaCatalog {
      * @return file system
      */
     public static FileSystem getFileSystem() {
-        return fileSystem;
+        return state().fileSystem;
     }
 
     /**
@@ -78,7 +176,7 @@ public class ReplicaCatalog {
      * @return file object
      */
     public static FileItem getFile(String fileName) {
-        return fileName2File.get(fileName);
+        return state().fileName2File.get(fileName);
     }
 
     /**
@@ -88,7 +186,7 @@ public class ReplicaCatalog {
      * @param file , the file object
      */
     public static void setFile(String fileName, FileItem file) {
-        fileName2File.put(fileName, file);
+        state().fileName2File.put(fileName, file);
     }
 
     /**
@@ -98,17 +196,203 @@ public class ReplicaCatalog {
      * @return boolean, whether the file exist
      */
     public static boolean containsFile(String fileName) {
-        return fileName2File.containsKey(fileName);
+        return state().fileName2File.containsKey(fileName);
+    }
+
+    /**
+     * Gets the id of a file, interning its name
+     *
+     * @param fileName the file name
+     * @return the file id
+     */
+    public static int getFileId(String fileName) {
+        State state = state();
+        Integer id = state.fileIds.get(fileName);
+        if (id == null) {
+            id = state.replicas.size();
+            state.fileIds.put(fileName, id);
+            state.replicas.add(new Replicas());
+        }
+        return id;
+    }
+
+    /**
+     * Gets the id of a site, interning its name
+     *
+     * @param site the site name
+     * @return the site id
+     */
+    public static int getSiteId(String site) {
+        return getSiteId(state(), site);
+    }
+
+    private static int getSiteId(State state, String site) {
+        Integer id = state.siteIds.get(site);
+        if (id == null) {
+            id = state.siteNames.size();
+            state.siteIds.put(site, id);
+            state.siteNames.add(site);
+            if (id == state.siteVms.length) {
+                state.siteVms = Arrays.copyOf(state.siteVms, id << 1);
+            }
+            state.siteVms[id] = -1;
+            // a site named after a vm id is the local storage of that VM
+            int vmId = parseVmId(site);
+            if (vmId >= 0) {
+                state.siteVms[id] = vmId;
+                setVmSite(state, vmId, id);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Gets the id of the site of a VM, the storage named after its id
+     *
+     * @param vmId the vm id
+     * @return the site id
+     */
+    public static int getVmSiteId(int vmId) {
+        State state = state();
+        if (vmId < 0) {
+            return getSiteId(state, Integer.toString(vmId));
+        }
+        int site = getVmSite(state, vmId);
+        if (site < 0) {
+            site = getSiteId(state, Integer.toString(vmId));
+        }
+        return site;
+    }
+
+    /**
+     * Gets the VM a site belongs to
+     *
+     * @param siteId the site id
+     * @return the vm id, or -1 if the site is not the storage of a VM
+     */
+    public static int getSiteVm(int siteId) {
+        return state().siteVms[siteId];
+    }
+
+    /**
+     * Gets the name of a site
+     *
+     * @param siteId the site id
+     * @return the site name
+     */
+    public static String getSiteName(int siteId) {
+        return state().siteNames.get(siteId);
     }
 
     /**
      * Gets the list of storages a file exists
      *
      * @param file the file object
-     * @return list of storages
+     * @return list of storages, in the order they were added, or null if the
+     * file is not stored anywhere
      */
     public static List<String> getStorageList(String file) {
-        return dataReplicaCatalog.get(file);
+        State state = state();
+        Integer id = state.fileIds.get(file);
+        if (id == null || state.replicas.get(id).count == 0) {
+            return null;
+        }
+        Replicas replicas = state.replicas.get(id);
+        List<String> list = new ArrayList<>(replicas.count);
+        for (int i = 0; i < replicas.count; i++) {
+            list.add(state.siteNames.get(replicas.sites[i]));
+        }
+        return list;
+    }
+
+    /**
+     * Gets the number of sites a file is stored at
+     *
+     * @param fileId the file id
+     * @return the number of sites
+     */
+    public static int getReplicaCount(int fileId) {
+        return state().replicas.get(fileId).count;
+    }
+
+    /**
+     * Gets a site a file is stored at
+     *
+     * @param fileId the file id
+     * @param index the index of the site, in the order the sites were added
+     * @return the site id
+     */
+    public static int getReplicaSite(int fileId, int index) {
+        Replicas replicas = state().replicas.get(fileId);
+        if (index >= replicas.count) {
+            throw new IndexOutOfBoundsException("Replica " + index + " of " + replicas.count);
+        }
+        return replicas.sites[index];
+    }
+
+    /**
+     * Checks whether a file is stored at a site
+     *
+     * @param fileId the file id
+     * @param siteId the site id
+     * @return whether the site has a replica
+     */
+    public static boolean hasReplica(int fileId, int siteId) {
+        return state().replicas.get(fileId).siteSet.get(siteId);
+    }
+
+    /**
+     * Checks whether a file is stored at the local storage of a VM
+     *
+     * @param file the file name
+     * @param vmId the vm id
+     * @return whether the VM has a replica
+     */
+    public static boolean hasReplica(String file, int vmId) {
+        State state = state();
+        Integer id = state.fileIds.get(file);
+        return id != null && state.replicas.get(id).siteSet.get(getVmSiteId(vmId));
+    }
+
+    /**
+     * Sums the size of the files not stored at the local storage of a VM
+     *
+     * @param files the files
+     * @param vmId the vm id
+     * @return the size of the files missing on the VM
+     */
+    public static double getBytesMissing(Collection<FileItem> files, int vmId) {
+        State state = state();
+        int site = getVmSiteId(vmId);
+        double size = 0.0;
+        for (FileItem file : files) {
+            Integer id = state.fileIds.get(file.getName());
+            if (id == null || !state.replicas.get(id).siteSet.get(site)) {
+                size += file.getSize();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Sums the size of the real input files of an index that are not stored
+     * at the local storage of a VM
+     *
+     * @param index the file index, built in this simulation context
+     * @param vmId the vm id
+     * @return the size of the input files missing on the VM
+     */
+    public static double getBytesMissing(FileIndex index, int vmId) {
+        State state = state();
+        int site = getVmSiteId(vmId);
+        List<FileItem> files = index.getInputFiles();
+        double size = 0.0;
+        for (int i = 0; i < files.size(); i++) {
+            if (!state.replicas.get(index.getInputFileId(i)).siteSet.get(site)) {
+                size += files.get(i).getSize();
+            }
+        }
+        return size;
     }
 
     /**
@@ -118,12 +402,96 @@ public class ReplicaCatalog {
      * @param storage , the storage associated with this file
      */
     public static void addFileToStorage(String file, String storage) {
-        if (!dataReplicaCatalog.containsKey(file)) {
-            dataReplicaCatalog.put(file, new ArrayList<String>());
+        State state = state();
+        state.replicas.get(getFileId(file)).add(getSiteId(state, storage));
+    }
+
+    /**
+     * Adds a file to a storage
+     *
+     * @param fileId the file id
+     * @param storage the storage name
+     */
+    public static void addFileToStorage(int fileId, String storage) {
+        State state = state();
+        state.replicas.get(fileId).add(getSiteId(state, storage));
+    }
+
+    /**
+     * Adds a file to the local storage of a VM
+     *
+     * @param file the file name
+     * @param vmId the vm id
+     */
+    public static void addFileToVm(String file, int vmId) {
+        State state = state();
+        state.replicas.get(getFileId(file)).add(getVmSiteId(vmId));
+    }
+
+    /**
+     * Adds a file to the local storage of a VM
+     *
+     * @param fileId the file id
+     * @param vmId the vm id
+     */
+    public static void addFileToVm(int fileId, int vmId) {
+        state().replicas.get(fileId).add(getVmSiteId(vmId));
+    }
+
+    /**
+     * Gets the site interned for a VM
+     *
+     * @return the site id, or -1 if the site of the VM is not interned yet
+     */
+    private static int getVmSite(State state, int vmId) {
+        if (vmId < state.vmSites.length && state.vmSites[vmId] > 0) {
+            return state.vmSites[vmId] - 1;
+        }
+        if (state.sparseVmSites.isEmpty()) {
+            return -1;
+        }
+        Integer site = state.sparseVmSites.get(vmId);
+        return site == null ? -1 : site;
+    }
+
+    /**
+     * Records the site of a VM. The VM table at most doubles for a vm id,
+     * so that a site named after a large number, which is not the id of a
+     * registered VM, does not allocate a table of that size; such ids are
+     * kept in a map instead.
+     */
+    private static void setVmSite(State state, int vmId, int site) {
+        int length = state.vmSites.length;
+        if (vmId < length) {
+            state.vmSites[vmId] = site + 1;
+        } else if (vmId < length << 1) {
+            state.vmSites = Arrays.copyOf(state.vmSites, length << 1);
+            state.vmSites[vmId] = site + 1;
+        } else {
+            state.sparseVmSites.put(vmId, site);
+        }
+    }
+
+    /**
+     * Parses the vm id a site is named after, as Integer.toString() writes it
+     *
+     * @param site the site name
+     * @return the vm id, or -1 if the site is not a canonical non negative
+     * integer
+     */
+    private static int parseVmId(String site) {
+        int length = site.length();
+        if (length == 0 || length > 9 || (length > 1 && site.charAt(0) == '0')) {
+            return -1;
         }
-        List<String> list = getStorageList(file);
-        if (!list.contains(storage)) {
-            list.add(storage);
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = site.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
         }
+        return value;
     }
 }
@@ -0,0 +1,421 @@
+/**
+ * Copyright 2012-2013 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.workflowsim.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.math3.random.Well19937c;
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.workflowsim.Job;
+import org.workflowsim.Task;
+
+/**
+ * SweepRunner runs the replicas of a parameter sweep concurrently on a
+ * bounded pool of threads.
+ *
+ * A sweep is a list of points, each point giving a value to the parameters
+ * varied (see grid()). For each point the Experiment is run a number of
+ * times. Each replica is an independent simulation: it runs in its own
+ * SimulationContext, so the Parameters, OverheadParameters,
+ * FailureParameters and ReplicaCatalog it sets do not interfere with the
+ * other replicas, and its distributions draw from its own random generator,
+ * seeded from the seed of the sweep, the point and the replica. The DAX
+ * cache is enabled in every replica, so a DAX is parsed once and shared by
+ * all of them.
+ *
+ * The makespan, the cost and the failures of the replicas are aggregated per
+ * point as they finish, the job lists are not kept.
+ *
+ * @since WorkflowSim Toolkit 1.1
+ */
+public class SweepRunner {
+
+    /**
+     * One replica of an experiment.
+     */
+    public interface Experiment {
+
+        /**
+         * Initializes the parameters from a point, creates the entities and
+         * runs the simulation. It is called in a new simulation context, with
+         * the random generator of the replica set in Parameters.
+         *
+         * @param point the values of the parameters
+         * @param replica the index of the replica
+         * @return the jobs received by the workflow engine
+         * @throws Exception if the simulation fails
+         */
+        List<Job> run(Map<String, Object> point, int replica) throws Exception;
+    }
+
+    /**
+     * Running mean, standard deviation, minimum and maximum of a series.
+     */
+    public static class Statistics {
+
+        private int count;
+        private double mean;
+        private double m2;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        /**
+         * Adds a value (Welford's algorithm)
+         *
+         * @param value the value
+         */
+        public void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? Double.NaN : mean;
+        }
+
+        /**
+         * Gets the sample standard deviation
+         *
+         * @return the standard deviation, 0 for less than two values
+         */
+        public double getStandardDeviation() {
+            return count < 2 ? 0.0 : Math.sqrt(m2 / (count - 1));
+        }
+
+        public double getMin() {
+            return count == 0 ? Double.NaN : min;
+        }
+
+        public double getMax() {
+            return count == 0 ? Double.NaN : max;
+        }
+
+        @Override
+        public String toString() {
+            return getMean() + " (sd " + getStandardDeviation() + ", " + getMin() + " - " + getMax() + ")";
+        }
+    }
+
+    /**
+     * The results of the replicas of one point.
+     */
+    public static class Summary {
+
+        private final Map<String, Object> point;
+        private final Statistics makespan = new Statistics();
+        private final Statistics cost = new Statistics();
+        private final Statistics failedJobs = new Statistics();
+        private final Statistics failedTasks = new Statistics();
+        private int errors;
+
+        private Summary(Map<String, Object> point) {
+            this.point = point;
+        }
+
+        public Map<String, Object> getPoint() {
+            return point;
+        }
+
+        /**
+         * Gets the makespan, the latest finish time of a job
+         *
+         * @return the makespan of the replicas
+         */
+        public Statistics getMakespan() {
+            return makespan;
+        }
+
+        /**
+         * Gets the cost, the sum of the processing cost of the jobs
+         *
+         * @return the cost of the replicas
+         */
+        public Statistics getCost() {
+            return cost;
+        }
+
+        /**
+         * Gets the number of jobs that failed
+         *
+         * @return the failed jobs of the replicas
+         */
+        public Statistics getFailedJobs() {
+            return failedJobs;
+        }
+
+        /**
+         * Gets the number of tasks that failed
+         *
+         * @return the failed tasks of the replicas
+         */
+        public Statistics getFailedTasks() {
+            return failedTasks;
+        }
+
+        /**
+         * Gets the number of replicas that threw an exception
+         *
+         * @return the number of errors
+         */
+        public int getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return point + " makespan " + makespan + " cost " + cost
+                    + " failed jobs " + failedJobs + " failed tasks " + failedTasks
+                    + (errors > 0 ? " errors " + errors : "");
+        }
+    }
+
+    /**
+     * The outcome of one replica.
+     */
+    private static class Outcome {
+
+        private final int point;
+        private double makespan;
+        private double cost;
+        private int failedJobs;
+        private int failedTasks;
+
+        private Outcome(int point, List<Job> jobs) {
+            this.point = point;
+            for (Job job : jobs) {
+                makespan = Math.max(makespan, job.getFinishTime());
+                cost += job.getProcessingCost();
+                if (job.getCloudletStatus() == Cloudlet.FAILED) {
+                    failedJobs++;
+                }
+                for (Task task : job.getTaskList()) {
+                    if (task.getCloudletStatus() == Cloudlet.FAILED) {
+                        failedTasks++;
+                    }
+                }
+            }
+        }
+    }
+
+    private final int threads;
+    private int replicas = 1;
+    private long seed = 0;
+    private boolean logEnabled = false;
+
+    /**
+     * Creates a SweepRunner using one thread per processor
+     */
+    public SweepRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a SweepRunner
+     *
+     * @param threads the maximum number of replicas run at the same time
+     */
+    public SweepRunner(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets the number of replicas of each point
+     *
+     * @param replicas the number of replicas
+     */
+    public void setReplicas(int replicas) {
+        this.replicas = Math.max(1, replicas);
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Sets the seed the random generators of the replicas are derived from
+     *
+     * @param seed the seed of the sweep
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets whether the replicas log. The log is disabled by default.
+     *
+     * @param enabled true to keep the log of the replicas
+     */
+    public void setLogEnabled(boolean enabled) {
+        this.logEnabled = enabled;
+    }
+
+    /**
+     * Builds the points of a grid, the cartesian product of the values of
+     * each parameter. The last parameter varies fastest.
+     *
+     * @param values the values of each parameter
+     * @return the points
+     */
+    public static List<Map<String, Object>> grid(Map<String, ? extends List<?>> values) {
+        List<Map<String, Object>> points = new ArrayList<>();
+        points.add(new LinkedHashMap<String, Object>());
+        for (Map.Entry<String, ? extends List<?>> entry : values.entrySet()) {
+            List<Map<String, Object>> next = new ArrayList<>(points.size() * entry.getValue().size());
+            for (Map<String, Object> point : points) {
+                for (Object value : entry.getValue()) {
+                    Map<String, Object> extended = new LinkedHashMap<>(point);
+                    extended.put(entry.getKey(), value);
+                    next.add(extended);
+                }
+            }
+            points = next;
+        }
+        return points;
+    }
+
+    /**
+     * Gets the seed of the random generator of a replica
+     *
+     * @param point the index of the point
+     * @param replica the index of the replica
+     * @return the seed
+     */
+    public long getSeed(int point, int replica) {
+        // splitmix64 finalizer, so that close indexes give unrelated seeds
+        long z = seed + 0x9E3779B97F4A7C15L * ((long) point * replicas + replica + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Runs the replicas of all the points and waits for them
+     *
+     * @param points the points of the sweep
+     * @param experiment the experiment
+     * @return the summary of each point, in the order of the points
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public List<Summary> run(List<Map<String, Object>> points, final Experiment experiment)
+            throws InterruptedException {
+        List<Summary> summaries = new ArrayList<>(points.size());
+        for (Map<String, Object> point : points) {
+            summaries.add(new Summary(Collections.unmodifiableMap(point)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<Outcome> completion = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < points.size(); i++) {
+                for (int replica = 0; replica < replicas; replica++) {
+                    completion.submit(newReplica(experiment, summaries.get(i).getPoint(), i, replica));
+                }
+            }
+
+            int total = points.size() * replicas;
+            for (int done = 0; done < total; done++) {
+                try {
+                    Outcome outcome = completion.take().get();
+                    Summary summary = summaries.get(outcome.point);
+                    summary.makespan.add(outcome.makespan);
+                    summary.cost.add(outcome.cost);
+                    summary.failedJobs.add(outcome.failedJobs);
+                    summary.failedTasks.add(outcome.failedTasks);
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof ReplicaException)) {
+                        throw new IllegalStateException("A replica could not complete", e.getCause());
+                    }
+                    ReplicaException failure = (ReplicaException) e.getCause();
+                    summaries.get(failure.point).errors++;
+                    Log.printLine("Replica " + failure.replica + " of " + points.get(failure.point)
+                            + " failed: " + failure.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return summaries;
+    }
+
+    /**
+     * Creates the task running a replica in a new simulation context
+     */
+    private Callable<Outcome> newReplica(final Experiment experiment,
+            final Map<String, Object> point, final int pointIndex, final int replica) {
+        final long replicaSeed = getSeed(pointIndex, replica);
+        return new Callable<Outcome>() {
+            @Override
+            public Outcome call() throws Exception {
+                try {
+                    return new SimulationContext().call(new Callable<Outcome>() {
+                        @Override
+                        public Outcome call() throws Exception {
+                            Log.setDisabled(!logEnabled);
+                            Parameters.setRandomGenerator(new Well19937c(replicaSeed));
+                            Parameters.setDaxCache(true);
+                            List<Job> jobs = experiment.run(point, replica);
+                            if (jobs == null) {
+                                throw new IllegalStateException("The experiment returned no jobs");
+                            }
+                            return new Outcome(pointIndex, jobs);
+                        }
+                    });
+                } catch (Exception e) {
+                    throw new ReplicaException(pointIndex, replica, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps the exception of a replica with its indexes.
+     */
+    private static class ReplicaException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+        private final int point;
+        private final int replica;
+
+        private ReplicaException(int point, int replica, Exception cause) {
+            super(cause);
+            this.point = point;
+            this.replica = replica;
+        }
+    }
+}